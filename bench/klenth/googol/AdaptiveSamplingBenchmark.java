@@ -0,0 +1,205 @@
+package klenth.googol;
+
+import klenth.googol.graph.AdaptiveSampler;
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.XFunction;
+import klenth.googol.math.MathContext;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Traces functions with the adaptive sampler and with the one-sample-per-column tracer it replaced, and measures each
+// against a reference sampled 64 times per column: the 99th percentile distance, in pixels, from the reference to the
+// traced path (curve that's missing) and from the traced path to the reference (lines that aren't on the curve, like
+// those drawn across an asymptote).
+public class AdaptiveSamplingBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "y = sin(x)",
+            "y = tan(x)",
+            "y = 1 / x",
+            "y = sqrt(x)",
+            "y = floor(x)",
+            "y = x^3",
+            "y = sin(1 / x)",
+            "y = exp(x)",
+            "y = sqrt(1 - x^2)",
+            "y = 1000 x"
+    );
+
+    private static final int REFERENCE_DENSITY = 64;
+    // reference samples further apart than this vertically aren't joined, taking them for a discontinuity; y = 1000 x
+    // climbs 16 pixels per sample
+    private static final double REFERENCE_JUMP = 20;
+    // points of the path are taken this many pixels apart
+    private static final double PATH_STEP = 0.25;
+
+    public static void main(String... args) throws Exception {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 800, height = 600, rounds = 200;
+        final double xMin = -10, xMax = 10, yMin = -7.5, yMax = 7.5;
+
+        var mathContext = MathContext.standard();
+        var sampler = new AdaptiveSampler();
+        var path = new GeneralPath();
+
+        System.out.printf("%-16s %8s %8s %8s %7s %12s %12s %10s\n",
+                "", "samples", "breaks", "µs", "", "p99 missing", "p99 stray", "max stray");
+        for (var equation : corpus) {
+            if (!(CompiledGraph.compile(equation, mathContext).graph() instanceof XFunction function)) {
+                System.out.printf("%s\n  not a function of x\n", equation);
+                continue;
+            }
+            var reference = new Reference(function, xMin, xMax, yMin, yMax, width, height);
+
+            for (int r = 0; r < rounds; ++r) {
+                traceUniform(function, xMin, xMax, yMin, yMax, width, height, path);
+                sampler.trace(function, xMin, xMax, yMin, yMax, width, height, AdaptiveSampler.DEFAULT_BUDGET, path);
+            }
+
+            long start = System.nanoTime();
+            long samples = 0;
+            for (int r = 0; r < rounds; ++r)
+                samples = traceUniform(function, xMin, xMax, yMin, yMax, width, height, path);
+            double time = (System.nanoTime() - start) / 1e3 / rounds;
+            System.out.printf("%-16s %8d %8s %8.1f %7s %s\n", equation, samples, "", time, "uniform",
+                    reference.measure(path));
+
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; ++r)
+                samples = sampler.trace(function, xMin, xMax, yMin, yMax, width, height, AdaptiveSampler.DEFAULT_BUDGET, path);
+            time = (System.nanoTime() - start) / 1e3 / rounds;
+            System.out.printf("%-16s %8d %8d %8.1f %7s %s\n", "", samples, sampler.getBreakCount(), time, "adapt",
+                    reference.measure(path));
+        }
+    }
+
+    // The tracer before AdaptiveSampler: a sample at the left edge of each column, broken only where consecutive
+    // samples are off opposite edges of the view
+    private static long traceUniform(XFunction function, double xMin, double xMax, double yMin, double yMax, int width, int height, Path2D path) {
+        double[] xs = new double[width], ys = new double[width];
+        for (int i = 0; i < width; ++i)
+            xs[i] = ((double) i) / width * (xMax - xMin) + xMin;
+        function.evaluate(xs, ys, 0, width);
+
+        path.reset();
+        double lastY = Double.NaN;
+        for (int i = 0; i < width; ++i) {
+            double sx = (xs[i] - xMin) / (xMax - xMin) * width, sy = (yMax - ys[i]) / (yMax - yMin) * height;
+            if (i == 0 || lastY > yMax && ys[i] < yMin || lastY < yMin && ys[i] > yMax)
+                path.moveTo(sx, sy);
+            else
+                path.lineTo(sx, sy);
+            lastY = ys[i];
+        }
+        return width;
+    }
+
+    // Line segments in screen coordinates, bucketed by the columns they cross, for finding the one nearest a point
+    private static class Segments {
+        private final int width, height;
+        private final List<List<double[]>> columns = new ArrayList<>();
+
+        Segments(int width, int height) {
+            this.width = width;
+            this.height = height;
+            for (int i = 0; i < width; ++i)
+                columns.add(new ArrayList<>());
+        }
+
+        void add(double x1, double y1, double x2, double y2) {
+            if (!Double.isFinite(x1 + y1 + x2 + y2) || y1 < 0 && y2 < 0 || y1 > height && y2 > height)
+                return;
+            var segment = new double[] { x1, y1, x2, y2 };
+            int from = Math.max(0, (int)Math.floor(Math.min(x1, x2))), to = Math.min(width - 1, (int)Math.floor(Math.max(x1, x2)));
+            for (int i = from; i <= to; ++i)
+                columns.get(i).add(segment);
+        }
+
+        // Distance to the nearest segment within a couple of columns, or the height of the view if there's none
+        double distance(double x, double y) {
+            double best = height;
+            int column = (int)Math.floor(x);
+            for (int i = Math.max(0, column - 2); i <= Math.min(width - 1, column + 2); ++i)
+                for (var s : columns.get(i))
+                    best = Math.min(best, distance(x, y, s[0], s[1], s[2], s[3]));
+            return best;
+        }
+
+        private static double distance(double x, double y, double x1, double y1, double x2, double y2) {
+            double dx = x2 - x1, dy = y2 - y1, lengthSquared = dx * dx + dy * dy;
+            double t = (lengthSquared == 0) ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+            return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+        }
+
+        // Points every PATH_STEP pixels along the segments, those on the screen only
+        List<double[]> points() {
+            var points = new ArrayList<double[]>();
+            var seen = new IdentityHashMap<double[], Boolean>();
+            for (var column : columns) {
+                for (var s : column) {
+                    if (seen.put(s, Boolean.TRUE) != null)
+                        continue;
+                    double length = Math.hypot(s[2] - s[0], s[3] - s[1]);
+                    int steps = (int)Math.min(1_000_000, Math.ceil(length / PATH_STEP));
+                    for (int k = 0; k <= steps; ++k) {
+                        double t = (steps == 0) ? 0 : (double)k / steps;
+                        double x = s[0] + t * (s[2] - s[0]), y = s[1] + t * (s[3] - s[1]);
+                        if (x >= 0 && x <= width && y >= 0 && y <= height)
+                            points.add(new double[] { x, y });
+                    }
+                }
+            }
+            return points;
+        }
+    }
+
+    private static class Reference {
+        private final Segments segments;
+        private final List<double[]> points;
+        private final int width, height;
+
+        Reference(XFunction function, double xMin, double xMax, double yMin, double yMax, int width, int height) {
+            this.width = width;
+            this.height = height;
+            segments = new Segments(width, height);
+            int n = width * REFERENCE_DENSITY + 1;
+            double lastX = Double.NaN, lastY = Double.NaN;
+            for (int k = 0; k < n; ++k) {
+                double x = xMin + (xMax - xMin) * k / (n - 1), y = function.evaluate(x);
+                double sx = (x - xMin) / (xMax - xMin) * width, sy = (yMax - y) / (yMax - yMin) * height;
+                if (Double.isFinite(sy) && Double.isFinite(lastY) && Math.abs(sy - lastY) <= REFERENCE_JUMP)
+                    segments.add(lastX, lastY, sx, sy);
+                lastX = sx;
+                lastY = Double.isFinite(sy) ? sy : Double.NaN;
+            }
+            points = segments.points();
+        }
+
+        String measure(Path2D path) {
+            var traced = new Segments(width, height);
+            double[] coords = new double[6];
+            double lastX = Double.NaN, lastY = Double.NaN;
+            for (var iterator = path.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+                int type = iterator.currentSegment(coords);
+                if (type == PathIterator.SEG_LINETO)
+                    traced.add(lastX, lastY, coords[0], coords[1]);
+                lastX = coords[0];
+                lastY = coords[1];
+            }
+
+            double[] missing = points.stream().mapToDouble(p -> traced.distance(p[0], p[1])).sorted().toArray();
+            double[] stray = traced.points().stream().mapToDouble(p -> segments.distance(p[0], p[1])).sorted().toArray();
+            return String.format("%12.3f %12.3f %10.1f", percentile(missing, 0.99), percentile(stray, 0.99),
+                    (stray.length == 0) ? 0 : stray[stray.length - 1]);
+        }
+
+        private static double percentile(double[] sorted, double p) {
+            return (sorted.length == 0) ? 0 : sorted[(int)Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+        }
+    }
+}
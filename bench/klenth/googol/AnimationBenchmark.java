@@ -0,0 +1,75 @@
+package klenth.googol;
+
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.gui.GraphCanvas;
+import klenth.googol.math.MathContext;
+import klenth.googol.math.Parameters;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Animates a canvas, without showing it, for a few seconds and reports the frame rate and render times the animator
+// achieved. Then compares the last frame, as the canvas paints it, with the same graphs rendered the ordinary way for
+// the same value of t.
+// Run with -Djava.awt.headless=true if there's no display.
+public class AnimationBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "y = sin(x + t)",
+            "x^2 + y^2 < 4 + 2 sin(t)",
+            "x^2 - y^2 = cos(t)",
+            "y = x^2 / 4"
+    );
+
+    public static void main(String... args) throws Exception {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 800, height = 600, seconds = 3;
+
+        var mathContext = MathContext.standard(new Parameters(Map.of("t", 0.0)));
+
+        var canvas = new GraphCanvas();
+        canvas.setSize(width, height);
+        // painting has to render everything before it returns, for the paints to be compared
+        canvas.setProgressive(false);
+        for (var equation : corpus)
+            canvas.getGraphSet().addGraph(CompiledGraph.compile(equation, mathContext));
+
+        var animator = canvas.getAnimator();
+        var animated = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var rendered = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var done = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        double[] lastTime = new double[1];
+        var renderedTiles = new CanvasBench.Tiles[1];
+
+        SwingUtilities.invokeAndWait(() -> {
+            animator.addListener((source, frameNumber, time) -> {
+                if (frameNumber % 60 == 0)
+                    System.out.printf("  t = %5.2f  %s\n", time, source.getStatistics());
+                if (System.nanoTime() < deadline)
+                    return;
+
+                // the canvas has to be painted by hand, since it isn't showing. No frame is being rendered while one is
+                // being shown, so t stays where this frame left it.
+                System.out.printf("%s\n", source.getStatistics());
+                CanvasBench.paint(canvas, animated);
+                lastTime[0] = time;
+                source.stop();
+                renderedTiles[0] = CanvasBench.paint(canvas, rendered);
+                done.countDown();
+            });
+            animator.start(mathContext.getParameters(), "t");
+        });
+        done.await();
+
+        // curves are drawn whole in a frame but tile by tile otherwise, which antialiases a little differently where the
+        // stroke crosses a tile edge
+        System.out.printf("last frame at t = %.3f: %s (ordinary paint: %s)\n", lastTime[0],
+                CanvasBench.compare(animated, rendered), renderedTiles[0]);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,85 @@
+package klenth.googol;
+
+import klenth.googol.gui.GraphCanvas;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+// Painting a canvas that isn't showing, and comparing images pixel by pixel, for the benchmarks that check one way of
+// drawing against another. Each paint reports the tile lookups it made: two paints composited from the same layers, or
+// drawn from the same cached tiles, agree without showing anything, and the lookups are how to tell.
+final class CanvasBench {
+
+    // The tile cache lookups made by one or more paints
+    record Tiles(long reused, long rendered) {
+        static final Tiles NONE = new Tiles(0, 0);
+
+        Tiles plus(Tiles other) {
+            return new Tiles(reused + other.reused, rendered + other.rendered);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d tiles reused, %d rendered", reused, rendered);
+        }
+    }
+
+    // maxChannel is the largest difference in any one color channel, out of 255
+    record Difference(long pixels, int maxChannel) {
+        static final Difference NONE = new Difference(0, 0);
+
+        Difference plus(Difference other) {
+            return new Difference(pixels + other.pixels, Math.max(maxChannel, other.maxChannel));
+        }
+
+        @Override
+        public String toString() {
+            return (pixels == 0) ? "0 pixels differ" : String.format("%d pixels differ, by at most %d/255", pixels, maxChannel);
+        }
+    }
+
+    private CanvasBench() {
+        throw new IllegalStateException();
+    }
+
+    static Tiles paint(GraphCanvas canvas, BufferedImage image) {
+        return paint(canvas, image, null);
+    }
+
+    // Paints the part of the canvas inside clip, or all of it if clip is null
+    static Tiles paint(GraphCanvas canvas, BufferedImage image, Rectangle clip) {
+        var before = canvas.getTileStatistics();
+        var g = image.createGraphics();
+        if (clip != null)
+            g.setClip(clip);
+        canvas.paint(g);
+        g.dispose();
+        var after = canvas.getTileStatistics();
+        return new Tiles(after.hits() - before.hits(), after.misses() - before.misses());
+    }
+
+    static Difference compare(BufferedImage a, BufferedImage b) {
+        return compare(a, b, new Rectangle(a.getWidth(), a.getHeight()));
+    }
+
+    // Compares the pixels inside region
+    static Difference compare(BufferedImage a, BufferedImage b, Rectangle region) {
+        if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight())
+            throw new IllegalArgumentException(String.format("Images differ in size: %dx%d and %dx%d",
+                    a.getWidth(), a.getHeight(), b.getWidth(), b.getHeight()));
+        var area = region.intersection(new Rectangle(a.getWidth(), a.getHeight()));
+        long pixels = 0;
+        int maxChannel = 0;
+        for (int j = area.y; j < area.y + area.height; ++j) {
+            for (int i = area.x; i < area.x + area.width; ++i) {
+                int p = a.getRGB(i, j), q = b.getRGB(i, j);
+                if (p == q)
+                    continue;
+                ++pixels;
+                for (int shift = 0; shift < 24; shift += 8)
+                    maxChannel = Math.max(maxChannel, Math.abs((p >> shift & 0xff) - (q >> shift & 0xff)));
+            }
+        }
+        return new Difference(pixels, maxChannel);
+    }
+}
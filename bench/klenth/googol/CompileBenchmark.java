@@ -0,0 +1,65 @@
+package klenth.googol;
+
+import edu.westminstercollege.cs.jade.SyntaxException;
+import klenth.googol.codegen.CompileStatistics;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.MathContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class CompileBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "x^2 + 3x - 4",
+            "sin(x) + cos(2x)",
+            "sqrt(x^2 + y^2) - 3",
+            "|x| + |y| - 2",
+            "exp(-x^2/2) / sqrt(2π)",
+            "min(x, y, 1) * max(x - y, 0)",
+            "tan(x y) - sin(x)^2 + sin(x) cos(x)",
+            "round(3x) / 3 - floor(y) + ceil(x y)",
+            "(x - 1)(x + 2)(x - 3)(x + 4)(x - 5) / 120",
+            "atan(y / x) - acos(x / 5) + asin(y / 5)"
+    );
+
+    public static void main(String... args) throws IOException, SyntaxException {
+        var corpus = (args.length > 0) ? Files.readAllLines(Path.of(args[0])) : DEFAULT_CORPUS;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+
+        Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+        Map<String, EnvFunction> envFunctions = MathContext.BUILTIN_FUNCTIONS;
+
+        var statistics = Expressions.getCompileStatistics();
+        // measure the full pipeline, not cache hits
+        Expressions.getCompileCache().setCapacity(0);
+
+        // warm up the parser and emitter before measuring
+        for (int i = 0; i < rounds / 4; ++i)
+            compileAll(corpus, constantValues, envFunctions);
+        statistics.reset();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; ++i)
+            compileAll(corpus, constantValues, envFunctions);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        int compiles = rounds * (int)corpus.stream().filter(s -> !s.isBlank()).count();
+        System.out.printf("%d compiles in %.3fs (%.1f compiles/s)\n", compiles, elapsed, compiles / elapsed);
+        System.out.println(statistics);
+        double perCompile = 0;
+        for (var phase : CompileStatistics.Phase.values())
+            perCompile += statistics.getTotalNanos(phase) / 1000.0 / compiles;
+        System.out.printf("Mean end-to-end latency: %.2fus\n", perCompile);
+    }
+
+    private static void compileAll(List<String> corpus, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) throws SyntaxException {
+        for (var expr : corpus) {
+            if (!expr.isBlank())
+                Expressions.compileBinaryFunction(expr, "x", "y", constantValues, envFunctions);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package klenth.googol;
+
+import edu.westminstercollege.cs.jade.SyntaxException;
+import klenth.googol.codegen.FunctionClasses;
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.ImplicitCurve;
+import klenth.googol.graph.TruthPlot;
+import klenth.googol.graph.XFunction;
+import klenth.googol.math.MathContext;
+
+
+// Simulates a long editing session: each "edit" replaces one of a handful of live graphs with a freshly compiled one,
+// evaluated once so that tiering compiles it to bytecode right away. Fails if the compiled classes still alive after a
+// collection ever outnumber what the live graphs could be holding on to.
+public class CompileSoak {
+
+    public static void main(String... args) throws SyntaxException, InterruptedException {
+        int edits = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000;
+        int reportEvery = Math.max(1, edits / 10);
+
+        var mathContext = MathContext.standard();
+        // compile on first evaluation, otherwise every graph stays interpreted and no classes are defined at all
+        Tiering.setThreshold(0);
+
+        var liveGraphs = new CompiledGraph[8];
+        // each graph here compiles to a single function
+        final long liveBound = liveGraphs.length;
+        System.out.printf("%6s  %s\n", "start", FunctionClasses.getStatistics());
+        for (int i = 1; i <= edits; ++i) {
+            var equation = switch (i % 3) {
+                case 0 -> String.format("y = %d x^2 + sin(%d x)", i, i % 17);
+                case 1 -> String.format("x^2 + y^2 < %d", i);
+                default -> String.format("sin(x y) = %d / 1000", i);
+            };
+            var graph = CompiledGraph.compile(equation, mathContext);
+            evaluate(graph);
+            liveGraphs[i % liveGraphs.length] = graph;
+
+            if (i % reportEvery == 0) {
+                awaitCompilations();
+                System.gc();
+                // give the cleaner thread a moment to account for classes unloaded by that collection
+                Thread.sleep(50);
+                var statistics = FunctionClasses.getStatistics();
+                System.out.printf("%6d  %s\n", i, statistics);
+                if (statistics.liveClasses() > liveBound)
+                    throw new IllegalStateException(String.format("%d compiled classes live after %d edits, but only %d graphs are",
+                            statistics.liveClasses(), i, liveBound));
+            }
+        }
+        System.out.printf("%s\n", Tiering.getStatistics());
+    }
+
+    private static void evaluate(CompiledGraph graph) {
+        switch (graph.graph()) {
+            case XFunction xf -> xf.evaluate(1);
+            case TruthPlot tp -> tp.satisfies(1, 1);
+            case ImplicitCurve ic -> ic.function().evaluate(1, 1);
+            default -> throw new IllegalStateException("Unexpected graph " + graph);
+        }
+    }
+
+    // Compilations run on the tiering thread; wait for the ones started so far to finish
+    private static void awaitCompilations() throws InterruptedException {
+        for (var statistics = Tiering.getStatistics(); statistics.compiled() + statistics.failed() < statistics.compiling();
+             statistics = Tiering.getStatistics())
+            Thread.sleep(10);
+    }
+}
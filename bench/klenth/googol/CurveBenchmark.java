@@ -0,0 +1,96 @@
+package klenth.googol;
+
+import edu.westminstercollege.cs.jade.SyntaxException;
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.ImplicitCurve;
+import klenth.googol.graph.ImplicitPlot;
+import klenth.googol.graph.MarchingSquares;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.MathContext;
+
+import java.awt.geom.PathIterator;
+import java.util.List;
+import java.util.Map;
+
+// Compares tracing implicit equations with marching squares against testing |f(x, y)| < 1e-8 at every pixel, and
+// checks that every traced vertex lies within a pixel of a sign change of f
+public class CurveBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "x^2 + y^2 = 9",
+            "x^3 + y^3 = 6 x y",
+            "sin(x) = cos(y)",
+            "x y = 1",
+            "y^2 = x^3 - x + 1",
+            "tan(x y) = 1",
+            "sin(x^2 + y^2) = 1/2",
+            "(x^2 + y^2 - 16)(x^2 + (y - 2)^2 - 4) = 1"
+    );
+
+    public static void main(String... args) throws SyntaxException {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 1920, height = 1080, rounds = 10;
+        final double xMin = -16, xMax = 16, yMin = -9, yMax = 9;
+
+        Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+        Map<String, EnvFunction> envFunctions = MathContext.BUILTIN_FUNCTIONS;
+        var mathContext = new MathContext(constantValues, envFunctions);
+
+        double[] xs = new double[width];
+        for (int i = 0; i < width; ++i)
+            xs[i] = xMin + (xMax - xMin) * i / width;
+
+        for (var equation : corpus) {
+            if (!(CompiledGraph.compile(equation, mathContext).graph() instanceof ImplicitCurve curve)) {
+                System.out.printf("%s\n  not an implicit curve\n", equation);
+                continue;
+            }
+            var f = curve.function();
+
+            MarchingSquares tracer = null;
+            long start = 0;
+            for (int r = 0; r < 2 * rounds; ++r) {
+                if (r == rounds)
+                    start = System.nanoTime();
+                tracer = new MarchingSquares(f, xMin, xMax, yMin, yMax, width, height);
+                tracer.trace();
+            }
+            double traceTime = (System.nanoTime() - start) / 1e9 / rounds;
+            var path = tracer.trace();
+
+            var plot = new ImplicitPlot(f, ImplicitPlot.Test.Zero);
+            boolean[] satisfied = new boolean[width];
+            int pixelHits = 0;
+            for (int r = 0; r < 2 * rounds; ++r) {
+                if (r == rounds)
+                    start = System.nanoTime();
+                pixelHits = 0;
+                for (int j = 0; j < height; ++j) {
+                    plot.satisfies(xs, yMax - (yMax - yMin) * j / height, satisfied, 0, width);
+                    for (int i = 0; i < width; ++i)
+                        if (satisfied[i])
+                            ++pixelHits;
+                }
+            }
+            double pixelTime = (System.nanoTime() - start) / 1e9 / rounds;
+
+            int vertices = 0, offCurve = 0;
+            double[] coords = new double[6];
+            double dx = (xMax - xMin) / width, dy = (yMax - yMin) / height;
+            for (var it = path.getPathIterator(null); !it.isDone(); it.next()) {
+                it.currentSegment(coords);
+                ++vertices;
+                double x = xMin + coords[0] * dx, y = yMax - coords[1] * dy;
+                double a = f.evaluate(x - dx, y - dy), b = f.evaluate(x + dx, y + dy),
+                        c = f.evaluate(x - dx, y + dy), d = f.evaluate(x + dx, y - dy);
+                boolean positive = a >= 0 || b >= 0 || c >= 0 || d >= 0, negative = a < 0 || b < 0 || c < 0 || d < 0;
+                if (!(positive && negative))
+                    ++offCurve;
+            }
+
+            System.out.printf("%s\n  per-pixel: %7.2f ms, %d pixels drawn\n  traced:    %7.2f ms (%.1fx), %d evaluations (%.3f per pixel), %d vertices, %d vertices off the curve\n",
+                    equation, pixelTime * 1e3, pixelHits, traceTime * 1e3, pixelTime / traceTime,
+                    tracer.getEvaluations(), (double)tracer.getEvaluations() / (width * height), vertices, offCurve);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package klenth.googol;
+
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.gui.GraphCanvas;
+import klenth.googol.math.MathContext;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+// Paints a canvas, without showing it, once everything is rendered, timing and counting the bytes allocated by: a
+// repaint with nothing changed, which only composites its layers; a repaint of a small clip; a repaint after the view
+// has been set again, which redraws every layer; and a press and release of the mouse, which takes a snapshot for
+// dragging. The composited paint is compared pixel by pixel with the one that redrew every layer, and a paint of the
+// clip alone over an old image with a paint of the whole canvas.
+// Run with -Djava.awt.headless=true if there's no display.
+public class LayerBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "sin(x^2 + y^2) + sin(3 x) cos(5 y) + sin(x y) cos(x - y) > 0.5",
+            "sin(x) + cos(y) = sin(x y) + cos(x^2 / 4 - y^2 / 4)",
+            "y = sin(1 / x) + sin(7 x) / 4"
+    );
+
+    public static void main(String... args) throws Exception {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 1920, height = 1080, repeats = 20, rounds = 3;
+        final var clip = new Rectangle(width / 2, height / 2, 64, 64);
+
+        var mathContext = MathContext.standard();
+        var canvas = new GraphCanvas();
+        canvas.setSize(width, height);
+        // painting has to render everything before it returns, for it to be timed
+        canvas.setProgressive(false);
+        for (var equation : corpus)
+            canvas.getGraphSet().addGraph(CompiledGraph.compile(equation, mathContext));
+        var window = canvas.getViewWindow();
+
+        var composited = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var redrawn = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var clipped = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var center = new Point(width / 2, height / 2);
+
+        var differences = new CanvasBench.Difference[2];
+        var tiles = new CanvasBench.Tiles[2];
+        // the first round warms up
+        for (int round = 0; round < rounds; ++round) {
+            Measurement[] measurements = new Measurement[4];
+            SwingUtilities.invokeAndWait(() -> {
+                CanvasBench.paint(canvas, redrawn);
+
+                measurements[0] = measure(repeats, () -> CanvasBench.paint(canvas, composited));
+                measurements[1] = measure(repeats, () -> CanvasBench.paint(canvas, clipped, clip));
+                measurements[2] = measure(repeats, () -> {
+                    canvas.setViewWindow(window);
+                    CanvasBench.paint(canvas, redrawn);
+                });
+                measurements[3] = measure(repeats, () -> {
+                    canvas.dispatchEvent(mouseEvent(canvas, MouseEvent.MOUSE_PRESSED, center));
+                    canvas.dispatchEvent(mouseEvent(canvas, MouseEvent.MOUSE_RELEASED, center));
+                });
+
+                // the clip over an image of something else should come out the same as the whole canvas
+                var g = clipped.createGraphics();
+                g.setColor(Color.MAGENTA);
+                g.fillRect(0, 0, width, height);
+                g.dispose();
+                CanvasBench.paint(canvas, clipped, clip);
+                canvas.setViewWindow(window);
+                tiles[0] = CanvasBench.paint(canvas, redrawn);
+                tiles[1] = CanvasBench.paint(canvas, composited);
+            });
+
+            differences[0] = CanvasBench.compare(composited, redrawn);
+            differences[1] = CanvasBench.compare(clipped, composited, clip);
+
+            System.out.printf("round %d\n", round + 1);
+            System.out.printf("  composite:    %s\n", measurements[0]);
+            System.out.printf("  %dx%d clip:   %s\n", clip.width, clip.height, measurements[1]);
+            System.out.printf("  redraw:       %s\n", measurements[2]);
+            System.out.printf("  press:        %s\n", measurements[3]);
+        }
+        System.out.printf("composite against redraw: %s (redraw: %s; composite: %s)\n", differences[0], tiles[0], tiles[1]);
+        System.out.printf("clip against whole: %s\n", differences[1]);
+        System.exit(0);
+    }
+
+    private record Measurement(double millis, long bytes) {
+        @Override
+        public String toString() {
+            return String.format("%8.2f ms, %10d bytes allocated", millis, bytes);
+        }
+    }
+
+    private static Measurement measure(int repeats, Runnable task) {
+        var threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; ++i)
+            task.run();
+        double millis = (System.nanoTime() - start) / 1e6 / repeats;
+        long bytes = (threads.getThreadAllocatedBytes(threadId) - bytesBefore) / repeats;
+        return new Measurement(millis, bytes);
+    }
+
+    private static MouseEvent mouseEvent(Component source, int id, Point p) {
+        return new MouseEvent(source, id, System.currentTimeMillis(), 0, p.x, p.y, 1, false, MouseEvent.BUTTON1);
+    }
+}
@@ -0,0 +1,88 @@
+package klenth.googol;
+
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.gui.GraphCanvas;
+import klenth.googol.gui.ViewWindow;
+import klenth.googol.math.MathContext;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Pans a canvas, without showing it, through a series of drags and times painting after each one, first reusing the
+// tiles still in view and then with every render thrown away before each paint. The two paints of each view are
+// compared pixel by pixel.
+public class PanBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "sin(x^2 + y^2) > cos(x y)",
+            "x^2 / 16 + y^2 / 4 <= 1 + sin(3 atan(y / x)) / 4",
+            "sin(x) + cos(y) = sin(x y)",
+            "y = x^3 / 8 - x"
+    );
+
+    public static void main(String... args) throws Exception {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 1920, height = 1080, pans = 40, maxPanPixels = 200;
+
+        var mathContext = MathContext.standard();
+        var canvas = new GraphCanvas();
+        canvas.setSize(width, height);
+        // painting has to render everything before it returns, for it to be timed
+        canvas.setProgressive(false);
+        for (var equation : corpus)
+            canvas.getGraphSet().addGraph(CompiledGraph.compile(equation, mathContext));
+
+        var start = canvas.getViewWindow();
+        var random = new Random(0);
+        var views = new ArrayList<ViewWindow>();
+        var view = start;
+        for (int i = 0; i < pans; ++i) {
+            double dx = (random.nextInt(2 * maxPanPixels + 1) - maxPanPixels) * view.xSpan() / width;
+            double dy = (random.nextInt(2 * maxPanPixels + 1) - maxPanPixels) * view.ySpan() / height;
+            view = view.translate(dx, dy);
+            views.add(view);
+        }
+
+        var cached = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var cold = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        // once through to warm up, so that neither pass is timed while its functions are still interpreted
+        for (int round = 0; round < 2; ++round) {
+            canvas.invalidateRenders();
+            canvas.setViewWindow(start);
+            CanvasBench.paint(canvas, cached);
+
+            long cachedNanos = 0, coldNanos = 0;
+            var cachedTiles = CanvasBench.Tiles.NONE;
+            for (var v : views) {
+                canvas.setViewWindow(v);
+                long t0 = System.nanoTime();
+                cachedTiles = cachedTiles.plus(CanvasBench.paint(canvas, cached));
+                cachedNanos += System.nanoTime() - t0;
+            }
+
+            var coldTiles = CanvasBench.Tiles.NONE;
+            var difference = CanvasBench.Difference.NONE;
+            for (var v : views) {
+                canvas.setViewWindow(v);
+                CanvasBench.paint(canvas, cached);
+                canvas.invalidateRenders();
+                long t0 = System.nanoTime();
+                coldTiles = coldTiles.plus(CanvasBench.paint(canvas, cold));
+                coldNanos += System.nanoTime() - t0;
+                difference = difference.plus(CanvasBench.compare(cached, cold));
+            }
+
+            if (round == 0)
+                continue;
+            System.out.printf("%d pans of up to %d px on a %dx%d canvas\n", pans, maxPanPixels, width, height);
+            System.out.printf("  reusing tiles: %7.2f ms/pan, %s\n", cachedNanos / 1e6 / pans, cachedTiles);
+            System.out.printf("  full render:   %7.2f ms/pan (%.1fx), %s\n",
+                    coldNanos / 1e6 / pans, (double)coldNanos / cachedNanos, coldTiles);
+            System.out.printf("  %s\n", canvas.getTileStatistics());
+            System.out.printf("%s\n", difference);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.codegen.FunctionClasses;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.Interval;
+import klenth.googol.math.MathContext;
+import klenth.googol.math.Parameters;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Sweeps a parameter across many values, rendering a grid at each one, first with the parameter compiled as a read from
+// its table (one compile in all) and then with each value baked in as a constant (a compile per value). Every sweep
+// value's grid is compared, bit for bit, between the two and against the interpreter; interval results are compared
+// at each grid point too.
+public class ParameterSweep {
+
+    private static final String DEFAULT_EXPRESSION = "a x^2 + sin(a y) - exp(-a) / (1 + y^2)";
+
+    public static void main(String... args) throws Exception {
+        var expression = (args.length > 0) ? args[0] : DEFAULT_EXPRESSION;
+        int steps = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        final int width = 160, height = 90;
+
+        Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+        Map<String, EnvFunction> envFunctions = MathContext.BUILTIN_FUNCTIONS;
+        var parameters = new Parameters(Map.of("a", 0.0));
+        var tree = Expressions.parse(expression, List.of("x", "y", "a", "pi", "π", "e"), envFunctions.keySet(), Node.Expr.class);
+
+        double[] xs = new double[width], ys = new double[height];
+        for (int i = 0; i < width; ++i)
+            xs[i] = -4 + 8.0 * i / width;
+        for (int j = 0; j < height; ++j)
+            ys[j] = -3 + 6.0 * j / height;
+        double[] values = new double[steps];
+        for (int k = 0; k < steps; ++k)
+            values[k] = -5 + 10.0 * k / steps;
+
+        Expressions.getCompileCache().clear();
+        long definedBefore = FunctionClasses.getStatistics().definedClasses();
+        long start = System.nanoTime();
+        var adjustable = Expressions.compileBinaryFunction(tree, "x", "y", constantValues, envFunctions, parameters);
+        double[][] adjustableGrids = new double[steps][width * height];
+        for (int k = 0; k < steps; ++k) {
+            parameters.set("a", values[k]);
+            adjustable.evaluateGrid(xs, ys, adjustableGrids[k]);
+        }
+        double adjustableTime = (System.nanoTime() - start) / 1e9;
+        long adjustableCompiles = FunctionClasses.getStatistics().definedClasses() - definedBefore;
+
+        definedBefore = FunctionClasses.getStatistics().definedClasses();
+        start = System.nanoTime();
+        double[][] bakedGrids = new double[steps][width * height];
+        for (int k = 0; k < steps; ++k) {
+            var bakedConstants = new HashMap<>(constantValues);
+            bakedConstants.put("a", values[k]);
+            var baked = Expressions.compileBinaryFunction(tree, "x", "y", bakedConstants, envFunctions);
+            baked.evaluateGrid(xs, ys, bakedGrids[k]);
+        }
+        double bakedTime = (System.nanoTime() - start) / 1e9;
+        long bakedCompiles = FunctionClasses.getStatistics().definedClasses() - definedBefore;
+
+        var interpreted = Interpreter.interpretBinaryFunction(
+                Optimizer.optimize(tree, constantValues, envFunctions), "x", "y", constantValues, envFunctions, parameters);
+        int differentCount = 0, intervalDifferentCount = 0;
+        double[] interpretedGrid = new double[width * height];
+        for (int k = 0; k < steps; ++k) {
+            parameters.set("a", values[k]);
+            interpreted.evaluateGrid(xs, ys, interpretedGrid);
+            for (int i = 0; i < interpretedGrid.length; ++i) {
+                long expected = Double.doubleToLongBits(bakedGrids[k][i]);
+                if (expected != Double.doubleToLongBits(adjustableGrids[k][i])
+                        || expected != Double.doubleToLongBits(interpretedGrid[i]))
+                    ++differentCount;
+            }
+
+            // and the compiled and interpreted interval code should agree on point intervals
+            if (k % 50 == 0) {
+                for (int j = 0; j < height; j += 9) {
+                    for (int i = 0; i < width; i += 16) {
+                        var compiledInterval = adjustable.evaluate(Interval.of(xs[i]), Interval.of(ys[j]));
+                        var interpretedInterval = interpreted.evaluate(Interval.of(xs[i]), Interval.of(ys[j]));
+                        if (!compiledInterval.equals(interpretedInterval))
+                            ++intervalDifferentCount;
+                    }
+                }
+            }
+        }
+
+        System.out.printf("%s, sweeping a over %d values on a %dx%d grid\n", expression, steps, width, height);
+        System.out.printf("  parameter: %d compiles, %8.1f ms\n", adjustableCompiles, adjustableTime * 1e3);
+        System.out.printf("  constant:  %d compiles, %8.1f ms (%.1fx)\n", bakedCompiles, bakedTime * 1e3, bakedTime / adjustableTime);
+        System.out.printf("  %d interval results differ\n", intervalDifferentCount);
+        System.out.printf("%d results differ\n", differentCount);
+    }
+}
@@ -0,0 +1,125 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.EnvFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Parses per second with a fresh lexer and parser per equation and full LL prediction (how parsing used to work)
+// against Parsers' reused, two-stage SLL/LL parsing and against PrattParser, and checks that all give the same trees.
+// First times the first parse with the hand-written parser and with ANTLR in this JVM, which is what startup pays for.
+public class ParseBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "y = x^2",
+            "y = 2x + 1",
+            "y = sin(x)",
+            "y = x³ - 3x",
+            "y = 1 / x",
+            "y = |x| - 2",
+            "y = exp(-x^2 / 2) / sqrt(2 pi)",
+            "y = sqrt(16 - x^2)",
+            "y = (x - 1)(x + 2)(x - 3) / 4",
+            "y = floor(x) + round(x / 2)",
+            "y = atan(x) + asin(x / 4) - acos(x / 4)",
+            "y = min(x, 2, -x) + max(x^2 - 4, 0)",
+            "y = tan(x) - x",
+            "y = e^x - π",
+            "x^2 + y^2 = 9",
+            "x^2 / 4 + y^2 / 9 = 1",
+            "(x^2 + y^2 - 16)(x^2 + (y - 2)^2 - 4) = 1",
+            "sin(x) cos(y) = 0.25",
+            "x y = 1",
+            "x² - y² = 4",
+            "y^2 = x^3 - x + 1",
+            "(x^2 + y^2)^2 = 4(x^2 - y^2)",
+            "x^2 + y^2 < 4",
+            "y > sin(x)",
+            "y ≤ x^2 - 2",
+            "|x| + |y| ≥ 3",
+            "sin(x y) > 0",
+            "x^2 + y^2 ≠ 1",
+            "exp(-(x^2 + y^2) / 4) - |x y| / 10 < 0.1",
+            "max(|x|, |y|) <= 2"
+    );
+
+    public static void main(String... args) {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int rounds = 200;
+
+        var constantNames = List.of("pi", "π", "e");
+        var functionNames = Arrays.stream(EnvFunction.Builtin.values())
+                .map(EnvFunction.Builtin::getName)
+                .collect(Collectors.toList());
+        var variableNames = new ArrayList<>(List.of("x", "y"));
+        variableNames.addAll(constantNames);
+
+        long start = System.nanoTime();
+        handWritten(corpus.get(0), variableNames, functionNames);
+        double handWrittenFirst = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        fresh(corpus.get(0), variableNames, functionNames);
+        double antlrFirst = (System.nanoTime() - start) / 1e6;
+        System.out.printf("first parse in this JVM: hand-written %.2f ms, ANTLR %.2f ms\n", handWrittenFirst, antlrFirst);
+
+        // warm up both paths (and the shared DFA)
+        for (int round = 0; round < rounds; ++round)
+            for (var eqn : corpus) {
+                fresh(eqn, variableNames, functionNames);
+                twoStage(eqn, variableNames, functionNames);
+                handWritten(eqn, variableNames, functionNames);
+            }
+
+        int differentCount = 0;
+        for (var eqn : corpus) {
+            var expected = fresh(eqn, variableNames, functionNames);
+            if (!expected.equals(twoStage(eqn, variableNames, functionNames))
+                    || !expected.equals(handWritten(eqn, variableNames, functionNames)))
+                ++differentCount;
+        }
+
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; ++round)
+            for (var eqn : corpus)
+                fresh(eqn, variableNames, functionNames);
+        double freshTime = (System.nanoTime() - start) / 1e9;
+
+        var before = Parsers.getStatistics();
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; ++round)
+            for (var eqn : corpus)
+                twoStage(eqn, variableNames, functionNames);
+        double twoStageTime = (System.nanoTime() - start) / 1e9;
+        var after = Parsers.getStatistics();
+
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; ++round)
+            for (var eqn : corpus)
+                handWritten(eqn, variableNames, functionNames);
+        double handWrittenTime = (System.nanoTime() - start) / 1e9;
+
+        double parses = (double)rounds * corpus.size();
+        System.out.printf("%d equations x %d rounds\n", corpus.size(), rounds);
+        System.out.printf("  fresh, LL:           %9.0f parses/s\n", parses / freshTime);
+        System.out.printf("  reused, SLL then LL: %9.0f parses/s (%.2fx), %d of %.0f fell back to LL\n",
+                parses / twoStageTime, freshTime / twoStageTime, after.ll() - before.ll(), parses);
+        System.out.printf("  hand-written:        %9.0f parses/s (%.2fx)\n",
+                parses / handWrittenTime, freshTime / handWrittenTime);
+        System.out.printf("  %d parses differ\n", differentCount);
+    }
+
+    private static Node.Relation fresh(String input, List<String> variableNames, List<String> functionNames) {
+        return Expressions.parser(input, variableNames, functionNames).totalRelation().n;
+    }
+
+    private static Node.Relation twoStage(String input, List<String> variableNames, List<String> functionNames) {
+        return Parsers.parse(input, variableNames, functionNames, Node.Relation.class);
+    }
+
+    private static Node.Relation handWritten(String input, List<String> variableNames, List<String> functionNames) {
+        return PrattParser.parse(input, variableNames, functionNames, Node.Relation.class);
+    }
+}
@@ -0,0 +1,108 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.MathContext;
+
+import java.util.List;
+import java.util.Map;
+
+// Compares the Postfix stack machine against the tree-walking Expressions.evaluate, checks that they agree bit for
+// bit, and times the per-node constant analysis the code generators do, tree-walking versus Postfix, on expressions
+// of growing size
+public class PostfixBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "x^2 + y^2 - 9",
+            "sin(x) cos(y) - 0.25",
+            "exp(-(x^2 + y^2) / 4) - |x y| / 10",
+            "sqrt(x^2 + y^2) - atan(y / x) + 2 pi",
+            "min(x, y, 1) + max(x - y, 1) - floor(x) + round(y)"
+    );
+
+    public static void main(String... args) {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 400, height = 400;
+
+        Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+        Map<String, EnvFunction> envFunctions = MathContext.BUILTIN_FUNCTIONS;
+        var variableNames = List.of("x", "y", "pi", "π", "e");
+
+        for (var expr : corpus) {
+            var tree = Expressions.parser(expr, variableNames, envFunctions.keySet()).totalExpr().n;
+            var flat = Postfix.of(tree, List.of("x", "y"), constantValues, envFunctions);
+            var parameters = new double[2];
+            var stack = new double[flat.getMaxStack()];
+
+            int differentCount = 0;
+            double treeSum = 0, flatSum = 0;
+            long start = System.nanoTime();
+            for (int j = 0; j < height; ++j)
+                for (int i = 0; i < width; ++i) {
+                    double x = -10 + 20.0 * i / width, y = 10 - 20.0 * j / height;
+                    treeSum += Expressions.evaluate(tree, Map.of("x", x, "y", y, "pi", Math.PI, "π", Math.PI, "e", Math.E));
+                }
+            double treeTime = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            for (int j = 0; j < height; ++j)
+                for (int i = 0; i < width; ++i) {
+                    parameters[0] = -10 + 20.0 * i / width;
+                    parameters[1] = 10 - 20.0 * j / height;
+                    flatSum += flat.evaluate(parameters, stack);
+                }
+            double flatTime = (System.nanoTime() - start) / 1e9;
+
+            for (int j = 0; j < height; ++j)
+                for (int i = 0; i < width; ++i) {
+                    double x = -10 + 20.0 * i / width, y = 10 - 20.0 * j / height;
+                    parameters[0] = x;
+                    parameters[1] = y;
+                    double expected = Expressions.evaluate(tree, Map.of("x", x, "y", y, "pi", Math.PI, "π", Math.PI, "e", Math.E));
+                    if (Double.doubleToLongBits(expected) != Double.doubleToLongBits(flat.evaluate(parameters, stack)))
+                        ++differentCount;
+                }
+
+            double points = (double)width * height;
+            System.out.printf("%-55s %3d nodes, stack %d: tree %6.2f Mpt/s, postfix %6.2f Mpt/s, %d results differ%s\n",
+                    expr, flat.size(), flat.getMaxStack(), points / treeTime / 1e6, points / flatTime / 1e6, differentCount,
+                    (Double.compare(treeSum, flatSum) == 0) ? "" : " (sums differ)");
+        }
+
+        // constant analysis of every node, as the code generators do it, on ((0 + 1) + 2) ... + x (best of 5); walking
+        // the tree re-folds every constant subtree from its leaves
+        System.out.println();
+        for (int n = 125; n <= 1000; n *= 2) {
+            Node.Expr tree = new Node.Number(0);
+            for (int k = 1; k < n; ++k)
+                tree = new Node.Add(tree, new Node.Number(k));
+            tree = new Node.Add(tree, new Node.Variable("x"));
+
+            double treeTime = Double.MAX_VALUE, flatTime = Double.MAX_VALUE;
+            int treeConstants = 0, flatConstants = 0;
+            for (int trial = 0; trial < 5; ++trial) {
+                long start = System.nanoTime();
+                treeConstants = countConstants(tree, constantValues, envFunctions);
+                treeTime = Math.min(treeTime, (System.nanoTime() - start) / 1e6);
+
+                start = System.nanoTime();
+                var flat = Postfix.of(tree, List.of("x"), constantValues, envFunctions);
+                flatConstants = 0;
+                for (int i = 0; i < flat.size(); ++i)
+                    if (flat.isConstant(i))
+                        ++flatConstants;
+                flatTime = Math.min(flatTime, (System.nanoTime() - start) / 1e6);
+            }
+
+            System.out.printf("%6d nodes: tree walk %8.3f ms, postfix %6.3f ms%s\n", 2 * n + 1, treeTime, flatTime,
+                    (treeConstants == flatConstants) ? "" : " (constant counts differ)");
+        }
+    }
+
+    private static int countConstants(Node node, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        int count = (node instanceof Node.Expr e && Expressions.constantValue(e, constantValues, envFunctions).isPresent()) ? 1 : 0;
+        for (var child : node.children())
+            count += countConstants(child, constantValues, envFunctions);
+        return count;
+    }
+}
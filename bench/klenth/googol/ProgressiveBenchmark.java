@@ -0,0 +1,104 @@
+package klenth.googol;
+
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.gui.GraphCanvas;
+import klenth.googol.gui.ProgressiveRenderer;
+import klenth.googol.math.MathContext;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+// Paints a canvas, without showing it, from an empty tile cache: first rendering everything before painting returns,
+// then progressively, timing how long painting takes, how long until the first pass is shown and how long until the
+// last. Then moves the view while a progressive render is under way and times how long until the new view's first
+// pass is shown. The finished progressive paint is compared pixel by pixel with the one that rendered everything.
+// Run with -Djava.awt.headless=true if there's no display.
+public class ProgressiveBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "sin(x^2 + y^2) + sin(3 x) cos(5 y) + sin(x y) cos(x - y) > 0.5",
+            "sin(x) + cos(y) = sin(x y) + cos(x^2 / 4 - y^2 / 4)",
+            "y = sin(1 / x) + sin(7 x) / 4"
+    );
+
+    public static void main(String... args) throws Exception {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 1920, height = 1080, rounds = 3;
+
+        var mathContext = MathContext.standard();
+        var canvas = new GraphCanvas();
+        canvas.setSize(width, height);
+        for (var equation : corpus)
+            canvas.getGraphSet().addGraph(CompiledGraph.compile(equation, mathContext));
+        var start = canvas.getViewWindow();
+        var renderer = canvas.getProgressiveRenderer();
+
+        var blocking = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var progressive = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var latches = new CountDownLatch[1];
+        renderer.addListener((source, pass, complete) -> {
+            if (complete)
+                latches[0].countDown();
+        });
+
+        var difference = CanvasBench.Difference.NONE;
+        var tiles = new CanvasBench.Tiles[2];
+        // the first round warms up, so that neither way is timed while the functions are still interpreted
+        for (int round = 0; round < rounds; ++round) {
+            double[] paintMillis = new double[2];
+            SwingUtilities.invokeAndWait(() -> {
+                canvas.setViewWindow(start);
+                canvas.setProgressive(false);
+                canvas.invalidateRenders();
+                long paintStart = System.nanoTime();
+                tiles[0] = CanvasBench.paint(canvas, blocking);
+                paintMillis[0] = (System.nanoTime() - paintStart) / 1e6;
+
+                canvas.setProgressive(true);
+                canvas.invalidateRenders();
+                latches[0] = new CountDownLatch(1);
+                paintStart = System.nanoTime();
+                tiles[1] = CanvasBench.paint(canvas, progressive);
+                paintMillis[1] = (System.nanoTime() - paintStart) / 1e6;
+            });
+            latches[0].await();
+
+            ProgressiveRenderer.Statistics statistics = renderer.getStatistics();
+            SwingUtilities.invokeAndWait(() -> CanvasBench.paint(canvas, progressive));
+            difference = CanvasBench.compare(blocking, progressive);
+
+            // move half a screen while the last render's first pass is showing, then time the new view's first pass
+            double[] moveStart = new double[1];
+            latches[0] = new CountDownLatch(1);
+            var firstPass = new CountDownLatch(1);
+            ProgressiveRenderer.Listener mover = (source, pass, complete) -> {
+                if (pass == 0 && moveStart[0] == 0) {
+                    moveStart[0] = System.nanoTime();
+                    canvas.setViewWindow(start.translate(start.xSpan() / 2, start.ySpan() / 2));
+                    CanvasBench.paint(canvas, progressive);
+                } else if (pass == 0)
+                    firstPass.countDown();
+            };
+            SwingUtilities.invokeAndWait(() -> {
+                renderer.addListener(mover);
+                canvas.invalidateRenders();
+                CanvasBench.paint(canvas, progressive);
+            });
+            firstPass.await();
+            double afterMoveMillis = (System.nanoTime() - moveStart[0]) / 1e6;
+            latches[0].await();
+            SwingUtilities.invokeAndWait(() -> renderer.removeListener(mover));
+
+            System.out.printf("round %d\n", round + 1);
+            System.out.printf("  blocking:    paint %8.1f ms, %s\n", paintMillis[0], tiles[0]);
+            System.out.printf("  progressive: paint %8.1f ms, first pass %8.1f ms, complete %8.1f ms, %s\n",
+                    paintMillis[1], statistics.lastFirstPassMillis(), statistics.lastCompleteMillis(), tiles[1]);
+            System.out.printf("  moved during a render: first pass of the new view after %.1f ms\n", afterMoveMillis);
+            System.out.printf("  %s\n", renderer.getStatistics());
+        }
+        System.out.printf("%s\n", difference);
+        System.exit(0);
+    }
+}
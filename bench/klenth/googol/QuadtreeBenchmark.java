@@ -0,0 +1,80 @@
+package klenth.googol;
+
+import edu.westminstercollege.cs.jade.SyntaxException;
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.QuadtreeRasterizer;
+import klenth.googol.graph.TruthPlot;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.MathContext;
+
+import java.util.List;
+import java.util.Map;
+
+// Compares quadtree rasterization of inequalities against testing every pixel
+public class QuadtreeBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "x^2 + y^2 < 9",
+            "y > sin(x)",
+            "sin(x) cos(y) > 0.25",
+            "exp(-(x^2 + y^2) / 4) > |x y| / 10",
+            "x^2 / 16 + y^2 / 4 <= 1 + sin(3 atan(y / x)) / 4",
+            "y^3 - 2x >= x^2 - 3",
+            "sqrt(x^2 + y^2) - floor(x) > 2",
+            "x = y"
+    );
+
+    public static void main(String... args) throws SyntaxException {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 1920, height = 1080, rounds = 10;
+
+        Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+        Map<String, EnvFunction> envFunctions = MathContext.BUILTIN_FUNCTIONS;
+        var mathContext = new MathContext(constantValues, envFunctions);
+
+        double[] xs = new double[width], ys = new double[height];
+        for (int i = 0; i < width; ++i)
+            xs[i] = -16 + 32.0 * i / width;
+        for (int j = 0; j < height; ++j)
+            ys[j] = 9 - 18.0 * j / height;
+        int[] quadtree = new int[width * height], brute = new int[width * height];
+
+        for (var equation : corpus) {
+            if (!(CompiledGraph.compile(equation, mathContext).graph() instanceof TruthPlot plot)) {
+                System.out.printf("%s\n  not a truth plot\n", equation);
+                continue;
+            }
+
+            long evaluated = 0;
+            long start = 0;
+            for (int r = 0; r < 2 * rounds; ++r) {
+                if (r == rounds)
+                    start = System.nanoTime();
+                evaluated = QuadtreeRasterizer.rasterize(plot, xs, ys, quadtree, 1, 0);
+            }
+            double quadtreeTime = (System.nanoTime() - start) / 1e9;
+
+            boolean[] satisfied = new boolean[width];
+            for (int r = 0; r < 2 * rounds; ++r) {
+                if (r == rounds)
+                    start = System.nanoTime();
+                for (int j = 0; j < height; ++j) {
+                    plot.satisfies(xs, ys[j], satisfied, 0, width);
+                    for (int i = 0; i < width; ++i)
+                        brute[j * width + i] = satisfied[i] ? 1 : 0;
+                }
+            }
+            double bruteTime = (System.nanoTime() - start) / 1e9;
+
+            int differentCount = 0;
+            for (int i = 0; i < brute.length; ++i)
+                if (brute[i] != quadtree[i])
+                    ++differentCount;
+
+            double pixels = (double)width * height * rounds;
+            System.out.printf("%s\n  per-pixel: %8.1f Mpx/s\n  quadtree:  %8.1f Mpx/s (%.2fx), %.1f%% of pixels evaluated, %d pixels differ\n",
+                    equation, pixels / bruteTime / 1e6, pixels / quadtreeTime / 1e6, bruteTime / quadtreeTime,
+                    100.0 * evaluated / (width * height), differentCount);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package klenth.googol;
+
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.Graph;
+import klenth.googol.gui.GraphCanvas;
+import klenth.googol.gui.Renderer;
+import klenth.googol.gui.ViewWindow;
+import klenth.googol.math.MathContext;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Renders each equation of a corpus to an image with a Renderer, one thread at a time and then on a pool of threads,
+// and reports images per second both ways. The images rendered concurrently are compared pixel by pixel with the ones
+// rendered one at a time, and the image of the whole corpus with a canvas's painting of it.
+// Run with -Djava.awt.headless=true if there's no display.
+public class RendererBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "sin(x^2 + y^2) + sin(3 x) cos(5 y) + sin(x y) cos(x - y) > 0.5",
+            "sin(x) + cos(y) = sin(x y) + cos(x^2 / 4 - y^2 / 4)",
+            "y = sin(1 / x) + sin(7 x) / 4",
+            "x^2 + y^2 < 9",
+            "y = floor(x) / 2",
+            "x^3 - 3 x y^2 = 1"
+    );
+
+    public static void main(String... args) throws Exception {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 640, height = 480, threads = Math.max(4, Runtime.getRuntime().availableProcessors()), rounds = 3;
+        final var window = new ViewWindow(-4, 4, 0.5, -3, 3, 0.5);
+
+        var mathContext = MathContext.standard();
+        var graphs = new ArrayList<Graph>();
+        for (var equation : corpus)
+            graphs.add(CompiledGraph.compile(equation, mathContext));
+        var renderer = new Renderer();
+
+        var sequential = new BufferedImage[graphs.size()];
+        var concurrent = new BufferedImage[graphs.size()];
+        var executor = Executors.newFixedThreadPool(threads);
+        var difference = CanvasBench.Difference.NONE;
+        // the first round warms up
+        for (int round = 0; round < rounds; ++round) {
+            long start = System.nanoTime();
+            for (int i = 0; i < graphs.size(); ++i)
+                sequential[i] = renderer.render(List.of(graphs.get(i)), window, width, height);
+            double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            var futures = new ArrayList<Future<BufferedImage>>();
+            for (var graph : graphs)
+                futures.add(executor.submit(() -> renderer.render(List.of(graph), window, width, height)));
+            for (int i = 0; i < futures.size(); ++i)
+                concurrent[i] = futures.get(i).get();
+            double concurrentSeconds = (System.nanoTime() - start) / 1e9;
+
+            difference = CanvasBench.Difference.NONE;
+            for (int k = 0; k < graphs.size(); ++k)
+                difference = difference.plus(CanvasBench.compare(sequential[k], concurrent[k]));
+
+            System.out.printf("round %d\n", round + 1);
+            System.out.printf("  one at a time:  %8.1f images/s\n", graphs.size() / sequentialSeconds);
+            System.out.printf("  %2d threads:     %8.1f images/s\n", threads, graphs.size() / concurrentSeconds);
+        }
+        executor.shutdown();
+        System.out.printf("  %s\n", renderer.getStatistics());
+        System.out.printf("concurrent against one at a time: %s\n", difference);
+
+        var canvas = new GraphCanvas();
+        canvas.setSize(width, height);
+        canvas.setBackground(renderer.getBackground());
+        canvas.setProgressive(false);
+        canvas.setViewWindow(window);
+        for (var graph : graphs)
+            canvas.getGraphSet().addGraph(graph);
+        var painted = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var tiles = new CanvasBench.Tiles[1];
+        SwingUtilities.invokeAndWait(() -> tiles[0] = CanvasBench.paint(canvas, painted));
+        var rendered = renderer.render(canvas.getGraphSet(), window, width, height);
+        // the canvas draws each graph into a layer of its own and composites them, which can round antialiased edges
+        // differently from drawing them straight onto the image
+        System.out.printf("renderer against canvas: %s (canvas: %s)\n", CanvasBench.compare(rendered, painted), tiles[0]);
+        System.exit(0);
+    }
+}
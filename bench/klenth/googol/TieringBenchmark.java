@@ -0,0 +1,92 @@
+package klenth.googol;
+
+import klenth.googol.math.BinaryFunction;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.MathContext;
+
+import java.util.List;
+import java.util.Map;
+
+// Measures what each tier costs to get to a first result and how fast it then runs, checks that both tiers agree bit
+// for bit, and prints the tier transitions of a simulated render loop
+public class TieringBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "x^2 + y^2 - 9",
+            "sin(x) cos(y) - 0.25",
+            "exp(-(x^2 + y^2) / 4) - |x y| / 10",
+            "sqrt(x^2 + y^2) - atan(y / x)",
+            "min(x, y) + max(x - y, 1) - floor(x) + round(y)"
+    );
+
+    public static void main(String... args) {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 800, height = 800;
+
+        Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+        Map<String, EnvFunction> envFunctions = MathContext.BUILTIN_FUNCTIONS;
+        var variableNames = List.of("x", "y", "pi", "π", "e");
+
+        double[] xs = new double[width];
+        for (int i = 0; i < width; ++i)
+            xs[i] = -10 + 20.0 * i / width;
+        double[] interpretedOut = new double[width * height], compiledOut = new double[width * height];
+
+        Tiering.addListener(t -> System.out.println("  " + t));
+
+        for (var expr : corpus) {
+            var tree = Expressions.parser(expr, variableNames, envFunctions.keySet()).totalExpr().n;
+            System.out.println(expr);
+
+            Expressions.getCompileCache().clear();
+            long start = System.nanoTime();
+            var interpreted = Interpreter.interpretBinaryFunction(Optimizer.optimize(tree, constantValues, envFunctions), "x", "y", constantValues, envFunctions);
+            double interpretedSetup = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            var compiled = Expressions.compileBinaryFunction(tree, "x", "y", constantValues, envFunctions);
+            double compiledSetup = (System.nanoTime() - start) / 1e6;
+
+            double interpretedTime = time(interpreted, xs, height, interpretedOut);
+            double compiledTime = time(compiled, xs, height, compiledOut);
+
+            // against the compiled scalar evaluate, which the interpreted rows have to match bit for bit
+            int differentCount = 0;
+            for (int j = 0; j < height; ++j) {
+                double y = 10 - 20.0 * j / height;
+                for (int i = 0; i < width; ++i)
+                    if (Double.doubleToLongBits(interpretedOut[j * width + i]) != Double.doubleToLongBits(compiled.evaluate(xs[i], y)))
+                        ++differentCount;
+            }
+
+            double pixels = (double)width * height;
+            System.out.printf("  tier 0: ready in %6.3f ms, %7.1f Mpx/s\n  tier 1: ready in %6.3f ms, %7.1f Mpx/s, %d results differ\n",
+                    interpretedSetup, pixels / interpretedTime / 1e6, compiledSetup, pixels / compiledTime / 1e6, differentCount);
+
+            // a render loop through the tiered function; it starts out interpreted and switches partway through
+            Expressions.getCompileCache().clear();
+            var tiered = (TieredBinaryFunction)Expressions.tieredBinaryFunction(tree, "x", "y", constantValues, envFunctions);
+            var row = new double[width];
+            for (int frame = 0; frame < 8; ++frame) {
+                start = System.nanoTime();
+                for (int j = 0; j < height; j += 8)
+                    tiered.evaluateRow(xs, 10 - 20.0 * j / height, row, 0, width);
+                System.out.printf("    frame %2d: %-11s %6.2f ms\n", frame, tiered.getTier(), (System.nanoTime() - start) / 1e6);
+            }
+        }
+
+        System.out.println(Tiering.getStatistics());
+    }
+
+    private static double time(BinaryFunction f, double[] xs, int height, double[] out) {
+        var row = new double[xs.length];
+        for (int j = 0; j < height; ++j)
+            f.evaluateRow(xs, 10 - 20.0 * j / height, row, 0, xs.length);
+
+        long start = System.nanoTime();
+        for (int j = 0; j < height; ++j) {
+            f.evaluateRow(xs, 10 - 20.0 * j / height, row, 0, xs.length);
+            System.arraycopy(row, 0, out, j * xs.length, xs.length);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
@@ -0,0 +1,92 @@
+package klenth.googol;
+
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.QuadtreeRasterizer;
+import klenth.googol.graph.TruthPlot;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.MathContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// Rasterizes inequalities on a 4K canvas, tile by tile in parallel, with 1, 2, 4, ... threads up to the number of
+// processors, and compares each against the single quadtree over the whole canvas. Scaling is relative to one thread.
+public class TileBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "x^2 + y^2 < 9",
+            "sin(x) cos(y) > 0.25",
+            "exp(-(x^2 + y^2) / 4) > |x y| / 10",
+            "x^2 / 16 + y^2 / 4 <= 1 + sin(3 atan(y / x)) / 4",
+            "sin(x^2 + y^2) > cos(x y)"
+    );
+
+    public static void main(String... args) throws Exception {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 3840, height = 2160, rounds = 5;
+
+        Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+        Map<String, EnvFunction> envFunctions = MathContext.BUILTIN_FUNCTIONS;
+        var mathContext = new MathContext(constantValues, envFunctions);
+
+        double[] xs = new double[width], ys = new double[height];
+        for (int i = 0; i < width; ++i)
+            xs[i] = -16 + 32.0 * i / width;
+        for (int j = 0; j < height; ++j)
+            ys[j] = 9 - 18.0 * j / height;
+        int[] whole = new int[width * height], tiled = new int[width * height];
+
+        var threadCounts = new ArrayList<Integer>();
+        for (int threads = 1; threads < Runtime.getRuntime().availableProcessors(); threads *= 2)
+            threadCounts.add(threads);
+        threadCounts.add(Runtime.getRuntime().availableProcessors());
+
+        int totalDifferences = 0;
+        for (var equation : corpus) {
+            if (!(CompiledGraph.compile(equation, mathContext).graph() instanceof TruthPlot plot)) {
+                System.out.printf("%s\n  not a truth plot\n", equation);
+                continue;
+            }
+
+            // warm up both, so that neither is timed while its function is still interpreted
+            for (int r = 0; r < rounds; ++r) {
+                QuadtreeRasterizer.rasterize(plot, xs, ys, whole, 1, 0);
+                QuadtreeRasterizer.rasterizeTiles(plot, xs, ys, tiled, 1, 0);
+            }
+
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; ++r)
+                QuadtreeRasterizer.rasterize(plot, xs, ys, whole, 1, 0);
+            double wholeTime = (System.nanoTime() - start) / 1e9;
+            double pixels = (double)width * height * rounds;
+            System.out.printf("%s\n  whole canvas:  %8.1f Mpx/s\n", equation, pixels / wholeTime / 1e6);
+
+            double oneThreadTime = 0;
+            for (int threads : threadCounts) {
+                var pool = new ForkJoinPool(threads);
+                // a parallel stream started from inside a pool runs on that pool
+                pool.submit(() -> QuadtreeRasterizer.rasterizeTiles(plot, xs, ys, tiled, 1, 0)).get();
+                start = System.nanoTime();
+                for (int r = 0; r < rounds; ++r)
+                    pool.submit(() -> QuadtreeRasterizer.rasterizeTiles(plot, xs, ys, tiled, 1, 0)).get();
+                double tiledTime = (System.nanoTime() - start) / 1e9;
+                if (threads == 1)
+                    oneThreadTime = tiledTime;
+                pool.shutdown();
+
+                int differentCount = 0;
+                for (int i = 0; i < whole.length; ++i)
+                    if (whole[i] != tiled[i])
+                        ++differentCount;
+                totalDifferences += differentCount;
+
+                System.out.printf("  %2d thread(s): %8.1f Mpx/s (%.2fx, %.0f%% efficiency), %d pixels differ\n",
+                        threads, pixels / tiledTime / 1e6, oneThreadTime / tiledTime, 100 * oneThreadTime / tiledTime / threads,
+                        differentCount);
+            }
+        }
+        System.out.printf("%d pixels differ\n", totalDifferences);
+    }
+}
@@ -0,0 +1,77 @@
+package klenth.googol;
+
+import edu.westminstercollege.cs.jade.SyntaxException;
+import klenth.googol.math.BinaryFunction;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.MathContext;
+
+import java.util.List;
+import java.util.Map;
+
+// Run with --add-modules jdk.incubator.vector
+public class VectorBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "x^2 + y^2 - 9",
+            "sin(x) cos(y) - 0.25",
+            "exp(-(x^2 + y^2) / 4) - |x y| / 10",
+            "sqrt(x^2 + y^2) - atan(y / x)",
+            "min(x, y) + max(x - y, 1) - floor(x) + round(y)"
+    );
+
+    public static void main(String... args) throws SyntaxException {
+        if (!VectorKernels.isAvailable()) {
+            System.out.println("jdk.incubator.vector not available; run with --add-modules jdk.incubator.vector");
+            return;
+        }
+
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 1920, height = 1080, rounds = 20;
+
+        Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+        Map<String, EnvFunction> envFunctions = MathContext.BUILTIN_FUNCTIONS;
+
+        double[] xs = new double[width];
+        for (int i = 0; i < width; ++i)
+            xs[i] = -10 + 20.0 * i / width;
+        double[] scalarOut = new double[width * height], vectorOut = new double[width * height];
+
+        for (var expr : corpus) {
+            Expressions.getCompileCache().clear();
+            VectorKernels.setEnabled(false);
+            var scalar = Expressions.compileBinaryFunction(expr, "x", "y", constantValues, envFunctions);
+            Expressions.getCompileCache().clear();
+            VectorKernels.setEnabled(true);
+            var vector = Expressions.compileBinaryFunction(expr, "x", "y", constantValues, envFunctions);
+
+            double scalarTime = time(scalar, xs, height, scalarOut, rounds);
+            double vectorTime = time(vector, xs, height, vectorOut, rounds);
+
+            int differentCount = 0;
+            for (int i = 0; i < scalarOut.length; ++i)
+                if (Double.doubleToLongBits(scalarOut[i]) != Double.doubleToLongBits(vectorOut[i]))
+                    ++differentCount;
+
+            double pixels = (double)width * height * rounds;
+            System.out.printf("%s\n  scalar: %8.1f Mpx/s\n  vector: %8.1f Mpx/s (%.2fx), %d results differ\n",
+                    expr, pixels / scalarTime / 1e6, pixels / vectorTime / 1e6, scalarTime / vectorTime, differentCount);
+        }
+    }
+
+    private static double time(BinaryFunction f, double[] xs, int height, double[] out, int rounds) {
+        var row = new double[xs.length];
+        // warm-up, then timed
+        for (int r = 0; r < rounds; ++r)
+            for (int j = 0; j < height; ++j)
+                f.evaluateRow(xs, 10 - 20.0 * j / height, row, 0, xs.length);
+
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; ++r) {
+            for (int j = 0; j < height; ++j) {
+                f.evaluateRow(xs, 10 - 20.0 * j / height, row, 0, xs.length);
+                System.arraycopy(row, 0, out, j * xs.length, xs.length);
+            }
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
@@ -0,0 +1,98 @@
+package klenth.googol;
+
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.gui.GraphCanvas;
+import klenth.googol.gui.ViewWindow;
+import klenth.googol.math.MathContext;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+// Zooms a canvas, without showing it, through a wheel gesture of a dozen ticks and times painting after each one,
+// then again after the gesture has gone idle. For comparison, paints each of the gesture's windows the ordinary way,
+// rendering every tick's graphs. The painting after the gesture is compared pixel by pixel with the ordinary painting
+// of the window it ended at.
+// Run with -Djava.awt.headless=true if there's no display.
+public class ZoomBenchmark {
+
+    private static final List<String> DEFAULT_CORPUS = List.of(
+            "sin(x^2 + y^2) + sin(3 x) cos(5 y) + sin(x y) cos(x - y) > 0.5",
+            "sin(x) + cos(y) = sin(x y) + cos(x^2 / 4 - y^2 / 4)",
+            "y = sin(1 / x) + sin(7 x) / 4"
+    );
+
+    public static void main(String... args) throws Exception {
+        var corpus = (args.length > 0) ? List.of(args) : DEFAULT_CORPUS;
+        final int width = 1920, height = 1080, ticks = 12, rounds = 3;
+        // zoom in toward a point off center, a notch at a time
+        final double cx = 1.3, cy = -0.7, factor = 0.8;
+
+        var mathContext = MathContext.standard();
+        var canvas = new GraphCanvas();
+        canvas.setSize(width, height);
+        // painting has to render everything before it returns, for it to be timed
+        canvas.setProgressive(false);
+        for (var equation : corpus)
+            canvas.getGraphSet().addGraph(CompiledGraph.compile(equation, mathContext));
+
+        var start = canvas.getViewWindow();
+        var windows = new ArrayList<ViewWindow>();
+        var window = start;
+        for (int i = 0; i < ticks; ++i) {
+            window = window.zoom(cx, cy, factor);
+            windows.add(window);
+        }
+        var end = window;
+
+        var zoomed = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var ordinary = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var difference = CanvasBench.Difference.NONE;
+        // the first round warms up, so that neither way is timed while the functions are still interpreted
+        for (int round = 0; round < rounds; ++round) {
+            double[] millis = new double[3];
+            var tiles = new CanvasBench.Tiles[] { CanvasBench.Tiles.NONE, CanvasBench.Tiles.NONE };
+            SwingUtilities.invokeAndWait(() -> {
+                canvas.setViewWindow(start);
+                canvas.invalidateRenders();
+                CanvasBench.paint(canvas, zoomed);
+
+                long gestureStart = System.nanoTime();
+                for (int i = 0; i < ticks; ++i) {
+                    canvas.zoom(cx, cy, factor);
+                    tiles[0] = tiles[0].plus(CanvasBench.paint(canvas, zoomed));
+                }
+                millis[0] = (System.nanoTime() - gestureStart) / 1e6 / ticks;
+            });
+
+            // let the gesture go idle; the canvas renders the last window on the next paint
+            Thread.sleep(2 * GraphCanvas.ZOOM_IDLE_MILLIS);
+            SwingUtilities.invokeAndWait(() -> {
+                if (canvas.isZooming())
+                    throw new IllegalStateException("Zoom gesture didn't end");
+                long paintStart = System.nanoTime();
+                CanvasBench.paint(canvas, zoomed);
+                millis[1] = (System.nanoTime() - paintStart) / 1e6;
+
+                canvas.invalidateRenders();
+                long ordinaryStart = System.nanoTime();
+                for (var w : windows) {
+                    canvas.setViewWindow(w);
+                    tiles[1] = tiles[1].plus(CanvasBench.paint(canvas, ordinary));
+                }
+                millis[2] = (System.nanoTime() - ordinaryStart) / 1e6 / ticks;
+            });
+
+            difference = CanvasBench.compare(zoomed, ordinary);
+
+            System.out.printf("round %d\n", round + 1);
+            System.out.printf("  gesture:   %8.2f ms/tick, %s; then %8.1f ms once idle\n",
+                    millis[0], tiles[0], millis[1]);
+            System.out.printf("  ordinary:  %8.2f ms/tick, %s\n", millis[2], tiles[1]);
+        }
+        System.out.printf("zoomed %d ticks to %s\n", ticks, end);
+        System.out.printf("%s\n", difference);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,124 @@
+package klenth.googol;
+
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.Graph;
+import klenth.googol.gui.Renderer;
+import klenth.googol.gui.ViewWindow;
+import klenth.googol.math.MathContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Renders a file of equations to PNGs, headless, on a pool of threads sharing one Renderer, and reports the throughput
+// in images per second. Each line of the file is one image, whose equations are separated by semicolons; blank lines
+// and lines starting with # are skipped. Images are written to the output directory as 0000.png, 0001.png, ..., in
+// the order of the lines; with no output directory, they're rendered and encoded but not written.
+//
+// Usage: BatchRender equations-file [output-directory] [options]
+//   --size WIDTHxHEIGHT             default 800x800
+//   --window XMIN,XMAX,YMIN,YMAX    default -10,10,-10,10
+//   --threads N                     default the number of processors
+//   --rounds N                      renders the whole file N times, the first ones warming up; default 1
+public class BatchRender {
+
+    public static void main(String... args) throws Exception {
+        // before anything can start the toolkit
+        System.setProperty("java.awt.headless", "true");
+
+        Path input = null, outputDirectory = null;
+        int width = 800, height = 800, threads = Runtime.getRuntime().availableProcessors(), rounds = 1;
+        var window = ViewWindow.DEFAULT;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--size" -> {
+                    var size = value(args, ++i).split("x");
+                    if (size.length != 2)
+                        throw new IllegalArgumentException("Size should be WIDTHxHEIGHT: " + args[i]);
+                    width = Integer.parseInt(size[0]);
+                    height = Integer.parseInt(size[1]);
+                }
+                case "--window" -> {
+                    var bounds = Arrays.stream(value(args, ++i).split(",")).mapToDouble(Double::parseDouble).toArray();
+                    if (bounds.length != 4)
+                        throw new IllegalArgumentException("Window should be XMIN,XMAX,YMIN,YMAX: " + args[i]);
+                    window = new ViewWindow(bounds[0], bounds[1], ViewWindow.gridStep(bounds[1] - bounds[0]),
+                            bounds[2], bounds[3], ViewWindow.gridStep(bounds[3] - bounds[2]));
+                }
+                case "--threads" -> threads = Integer.parseInt(value(args, ++i));
+                case "--rounds" -> rounds = Integer.parseInt(value(args, ++i));
+                default -> {
+                    if (args[i].startsWith("--"))
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    else if (input == null)
+                        input = Path.of(args[i]);
+                    else if (outputDirectory == null)
+                        outputDirectory = Path.of(args[i]);
+                    else
+                        throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                }
+            }
+        }
+        if (input == null) {
+            System.err.println("Usage: BatchRender equations-file [output-directory] [--size WIDTHxHEIGHT] "
+                    + "[--window XMIN,XMAX,YMIN,YMAX] [--threads N] [--rounds N]");
+            System.exit(1);
+        }
+
+        var mathContext = MathContext.standard();
+        var images = new ArrayList<List<Graph>>();
+        for (var line : Files.readAllLines(input)) {
+            if (line.isBlank() || line.strip().startsWith("#"))
+                continue;
+            var graphs = new ArrayList<Graph>();
+            for (var equation : line.split(";"))
+                graphs.add(CompiledGraph.compile(equation.strip(), mathContext));
+            images.add(graphs);
+        }
+        if (outputDirectory != null)
+            Files.createDirectories(outputDirectory);
+
+        var renderer = new Renderer();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // a failed render leaves the rest of the round queued; don't let them keep the JVM alive
+        try {
+            for (int round = 0; round < rounds; ++round) {
+                long start = System.nanoTime();
+                var futures = new ArrayList<Future<Integer>>();
+                for (int i = 0; i < images.size(); ++i) {
+                    int number = i;
+                    final int w = width, h = height;
+                    final var v = window;
+                    final var directory = outputDirectory;
+                    futures.add(executor.submit(() -> {
+                        byte[] png = renderer.renderPng(images.get(number), v, w, h);
+                        if (directory != null)
+                            Files.write(directory.resolve(String.format("%04d.png", number)), png);
+                        return png.length;
+                    }));
+                }
+                long bytes = 0;
+                for (var future : futures)
+                    bytes += future.get();
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.printf("round %d: %d images (%dx%d, %d KiB of PNG) in %.2f s on %d threads: %.1f images/s\n",
+                        round + 1, images.size(), width, height, bytes / 1024, seconds, threads, images.size() / seconds);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.printf("%s\n", renderer.getStatistics());
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        return args[i];
+    }
+}
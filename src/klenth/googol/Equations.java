@@ -1,21 +1,34 @@
 package klenth.googol;
 
+import edu.westminstercollege.cs.jade.SyntaxException;
 import klenth.googol.ast.Node;
+import klenth.googol.math.EnvFunction;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.regex.Pattern;
 
 public final class Equations {
 
+    // name(parameter, ...) = body
+    private static final Pattern FUNCTION_DEFINITION = Pattern.compile(
+            "\\s*([\\p{L}][\\p{L}0-9]*)\\s*\\(([^()]*)\\)\\s*=(.*)", Pattern.DOTALL);
+    private static final Pattern NAME = Pattern.compile("[\\p{L}][\\p{L}0-9]*");
+
     private Equations() {
         throw new IllegalStateException();
     }
 
     public static Node.Equation parseEquation(String input, Iterable<String> variableNames, Iterable<String> functionNames) {
-        return Expressions.parser(input, variableNames, functionNames).totalEquation().n;
+        return Expressions.parse(input, variableNames, functionNames, Node.Equation.class);
     }
 
     public static Node.Relation parseRelation(String input, Iterable<String> variableNames, Iterable<String> functionNames) {
-        return Expressions.parser(input, variableNames, functionNames).totalRelation().n;
+        return Expressions.parse(input, variableNames, functionNames, Node.Relation.class);
     }
 
     public static Optional<Node.Expr> solvedFor(Node.Equation eqn, String variableName) {
@@ -30,4 +43,66 @@ public final class Equations {
         else
             return Optional.empty();
     }
+
+    // Parses a function definition like f(a, b) = a^2 + b. The body may use the parameters, the named constants and
+    // any function in envFunctions, but no other variables: a function's value depends only on its arguments.
+    public static EnvFunction.UserDefined parseFunctionDefinition(String input, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) throws SyntaxException {
+        var matcher = FUNCTION_DEFINITION.matcher(input);
+        if (!matcher.matches())
+            throw new SyntaxException("Not a function definition: " + input);
+
+        var name = matcher.group(1);
+        var parameterNames = new ArrayList<String>();
+        if (!matcher.group(2).isBlank()) {
+            for (var parameter : matcher.group(2).split(",")) {
+                parameter = parameter.strip();
+                if (!NAME.matcher(parameter).matches())
+                    throw new SyntaxException(String.format("Invalid parameter name in definition of %s(): %s", name, parameter));
+                if (parameterNames.contains(parameter))
+                    throw new SyntaxException(String.format("Duplicate parameter %s in definition of %s()", parameter, name));
+                if (constantValues.containsKey(parameter) || envFunctions.containsKey(parameter))
+                    throw new SyntaxException(String.format("Parameter %s of %s() hides a constant or function", parameter, name));
+                parameterNames.add(parameter);
+            }
+        }
+
+        var variableNames = new ArrayList<>(parameterNames);
+        variableNames.addAll(constantValues.keySet());
+        // the function's own name is lexed as a function, so that a recursive body is reported as such
+        var functionNames = new HashSet<>(envFunctions.keySet());
+        functionNames.add(name);
+
+        Node.Expr body;
+        try {
+            body = Expressions.parse(matcher.group(3), variableNames, functionNames, Node.Expr.class);
+        } catch (RuntimeException ex) {
+            throw new SyntaxException(ex);
+        }
+        if (body == null)
+            throw new SyntaxException("Missing body in definition of " + name + "()");
+
+        for (var variable : freeVariables(body)) {
+            if (!parameterNames.contains(variable) && !constantValues.containsKey(variable))
+                throw new SyntaxException(String.format("Unknown variable %s in definition of %s()", variable, name));
+        }
+
+        // a redefinition can also close a cycle through other user-defined functions
+        var function = new EnvFunction.UserDefined(name, parameterNames, body);
+        var functions = new HashMap<>(envFunctions);
+        functions.put(name, function);
+        if (Inliner.dependencies(body, functions).contains(name))
+            throw new SyntaxException(String.format("Recursive definition of %s()", name));
+
+        return function;
+    }
+
+    // Every variable node uses, in order and with repeats
+    public static List<String> freeVariables(Node node) {
+        var names = new ArrayList<String>();
+        if (node instanceof Node.Variable v)
+            names.add(v.name());
+        for (var child : node.children())
+            names.addAll(freeVariables(child));
+        return names;
+    }
 }
@@ -1,11 +1,17 @@
 package klenth.googol;
 
 import edu.westminstercollege.cs.jade.SyntaxException;
-import edu.westminstercollege.cs.jade.assembler.Assembler;
-import klenth.googol.ast.AST;
 import klenth.googol.ast.Node;
+import klenth.googol.codegen.ClassBuilder;
+import klenth.googol.codegen.CodeBuilder;
+import klenth.googol.codegen.CompileCache;
+import klenth.googol.codegen.CompileKey;
+import klenth.googol.codegen.CompileStatistics;
+import klenth.googol.codegen.FunctionClasses;
+import klenth.googol.codegen.Label;
 import klenth.googol.math.BinaryFunction;
 import klenth.googol.math.EnvFunction;
+import klenth.googol.math.Parameters;
 import klenth.googol.math.UnaryFunction;
 import klenth.googol.parse.ExpressionLexer;
 import klenth.googol.parse.ExpressionParser;
@@ -16,15 +22,16 @@ import org.antlr.v4.runtime.CommonTokenStream;
 import static klenth.googol.ast.Node.*;
 import static klenth.googol.ast.Node.Number;
 
-import java.io.PrintWriter;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.nio.ByteBuffer;
 import java.util.*;
 
 public final class Expressions {
 
-    private static Random random = new Random();
+    private static final CompileStatistics compileStatistics = new CompileStatistics();
+    private static final CompileCache compileCache = new CompileCache();
+    private static final boolean antlrOnly = Boolean.getBoolean("googol.parser.antlr");
+
+    // the double[] field that a compiled function reads its adjustable parameters from
+    static final String PARAMETERS_FIELD = "parameters";
 
     private Expressions() {
         throw new IllegalStateException();
@@ -47,11 +54,21 @@ public final class Expressions {
                     case Node.Power p -> Math.pow(l, r);
                 };
             }
+            case Node.FunctionCall(String name, List<Node.Expr> args) when name.equals("min") || name.equals("max") -> {
+                if (args.isEmpty())
+                    throw new RuntimeException("Wrong number of arguments to function " + name + ": " + args.size());
+                double m = evaluate(args.get(0), variableValues);
+                for (var arg : args.subList(1, args.size()))
+                    m = name.equals("min") ? Math.min(m, evaluate(arg, variableValues)) : Math.max(m, evaluate(arg, variableValues));
+                yield m;
+            }
             case Node.FunctionCall(String name, List<Node.Expr> args) -> {
                 if (args.size() != 1)
                     throw new RuntimeException("Wrong number of arguments to function " + name + ": " + args.size());
                 double a = evaluate(args.get(0), variableValues);
                 yield switch (name) {
+                    case "abs" -> Math.abs(a);
+                    case "signum" -> Math.signum(a);
                     case "sqrt", "√" -> Math.sqrt(a);
                     case "exp" -> Math.exp(a);
                     case "sin" -> Math.sin(a);
@@ -61,6 +78,9 @@ public final class Expressions {
                     case "floor" -> Math.floor(a);
                     case "ceil" -> Math.ceil(a);
                     case "round" -> Math.round(a);
+                    case "asin" -> Math.asin(a);
+                    case "acos" -> Math.acos(a);
+                    case "atan" -> Math.atan(a);
                     default -> throw new RuntimeException();
                 };
             }
@@ -68,9 +88,8 @@ public final class Expressions {
     }
 
     public static boolean isIndependentOf(Node.Expr expr, String variableName) {
-        return AST.traversePostOrder(expr)
-                .filter(n -> n instanceof Node.Variable v && v.name().equals(variableName))
-                .findAny().isEmpty();
+        var flat = Postfix.of(expr, List.of(variableName), Map.of(), Map.of());
+        return !flat.dependsOn(flat.root(), 0);
     }
 
     static ExpressionParser parser(String input, Iterable<String> variableNames, Iterable<String> functionNames) {
@@ -80,6 +99,46 @@ public final class Expressions {
         return new ExpressionParser(new CommonTokenStream(lexer));
     }
 
+    // Parses input with one of the grammar's start rules: rule is Node.Expr.class, Node.Equation.class or
+    // Node.Relation.class. The hand-written PrattParser goes first; ANTLR (see Parsers) only gets the inputs it turns
+    // down, which include every syntax error. -Dgoogol.parser.antlr=true sends everything to ANTLR.
+    static <N extends Node> N parse(String input, Iterable<String> variableNames, Iterable<String> functionNames, Class<N> rule) {
+        var event = new PipelineEvents.Parse();
+        event.begin();
+        N result = null;
+        boolean handWritten = false;
+        try {
+            if (!antlrOnly) {
+                result = PrattParser.parse(input, variableNames, functionNames, rule);
+                handWritten = (result != null);
+            }
+            if (result == null)
+                result = Parsers.parse(input, variableNames, functionNames, rule);
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.input = input;
+                event.length = input.length();
+                event.nodes = (result == null) ? 0 : nodeCount(result);
+                event.succeeded = (result != null);
+                event.handWritten = handWritten;
+                event.commit();
+            }
+        }
+    }
+
+    static int nodeCount(Node node) {
+        int count = 1;
+        for (var child : node.children())
+            count += nodeCount(child);
+        return count;
+    }
+
+    public static CompileStatistics getCompileStatistics() {
+        return compileStatistics;
+    }
+
     public static UnaryFunction compileUnaryFunction(String expr, String variableName, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) throws SyntaxException {
         try {
             var variableNames = new ArrayList<String>();
@@ -87,8 +146,9 @@ public final class Expressions {
             variableNames.addAll(constantValues.keySet());
             var functionNames = envFunctions.keySet();
 
-            var parser = parser(expr, variableNames, functionNames);
-            var e = parser.totalExpr().n;
+            long start = System.nanoTime();
+            var e = parse(expr, variableNames, functionNames, Node.Expr.class);
+            compileStatistics.record(CompileStatistics.Phase.Parse, System.nanoTime() - start);
 
             return compileUnaryFunction(e, variableName, constantValues, envFunctions);
         } catch (Exception ex) {
@@ -104,8 +164,9 @@ public final class Expressions {
             variableNames.addAll(constantValues.keySet());
             var functionNames = envFunctions.keySet();
 
-            var parser = parser(expr, variableNames, functionNames);
-            var e = parser.totalExpr().n;
+            long start = System.nanoTime();
+            var e = parse(expr, variableNames, functionNames, Node.Expr.class);
+            compileStatistics.record(CompileStatistics.Phase.Parse, System.nanoTime() - start);
 
             return compileBinaryFunction(e, variable1Name, variable2Name, constantValues, envFunctions);
         } catch (Exception ex) {
@@ -113,153 +174,292 @@ public final class Expressions {
         }
     }
 
+    public static CompileCache getCompileCache() {
+        return compileCache;
+    }
+
     public static UnaryFunction compileUnaryFunction(Node.Expr expr, String variableName, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
-        var stringWriter = new StringWriter(1024);
-        var out = new PrintWriter(stringWriter);
-
-        String className = String.format("unary_function_%016x", random.nextLong());
-
-        out.printf(".class public %s\n", className);
-        out.println(".super java/lang/Object");
-        out.printf(".implements klenth/googol/math/UnaryFunction\n");
-        out.println(".method public <init>()V");
-        out.println(".code");
-        out.println(".limit locals 1");
-        out.println(".limit stack 1");
-        out.println("aload_0");
-        out.println("invokespecial java/lang/Object/<init> ()V");
-        out.println("return");
-        out.println(".end code");
-        out.println();
-        out.println(".method public final evaluate (D)D");
-        out.println(".code");
-        out.printf(".limit locals 3\n");
-        out.printf(".limit stack %d\n", maxStackSize(expr));
-
-        generateCode(expr, List.of(variableName), constantValues, envFunctions, out);
-
-        out.println("dreturn");
-        out.println(".end code");
-
-        out.flush();
-        String asmCode = stringWriter.toString();
-        System.out.println(asmCode);
-
-        var asm = new Assembler();
-        var bytecode = ByteBuffer.allocate(16_384);
-        try {
-            asm.assemble(new StringReader(asmCode), bytecode);
-            bytecode.limit(bytecode.position());
-            bytecode.position(0);
-
-            var clazz = new ClassLoader() {
-                @SuppressWarnings("unchecked")
-                Class<? extends UnaryFunction> define() {
-                    return (Class<? extends UnaryFunction>)super.defineClass(className, bytecode, null);
-                }
-            }.define();
+        return compileUnaryFunction(expr, variableName, constantValues, envFunctions, Parameters.NONE);
+    }
 
-            return clazz.getConstructor().newInstance();
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
-        }
+    // Variables named in parameters are read from its array on each evaluation instead of being compiled in, so the
+    // function follows Parameters.set without a recompile
+    public static UnaryFunction compileUnaryFunction(Node.Expr expr, String variableName, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        String className = FunctionClasses.PACKAGE + "/unary_function";
+        var variableNames = List.of(variableName);
+        var optimized = Optimizer.optimize(expr, constantValues, envFunctions);
+        var key = CompileKey.of(UnaryFunction.class, optimized, variableNames, constantValues, envFunctions, parameters);
+        return compileCache.get(key, UnaryFunction.class,
+                () -> compileFunction(optimized, className, UnaryFunction.class, variableNames, constantValues, envFunctions, parameters));
     }
 
     public static BinaryFunction compileBinaryFunction(Node.Expr expr, String variable1Name, String variable2Name, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
-        var stringWriter = new StringWriter(1024);
-        var out = new PrintWriter(stringWriter);
-
-        String className = String.format("binary_function_%016x", random.nextLong());
-
-        out.printf(".class public %s\n", className);
-        out.println(".super java/lang/Object");
-        out.printf(".implements klenth/googol/math/BinaryFunction\n");
-        out.println(".method public <init>()V");
-        out.println(".code");
-        out.println(".limit locals 1");
-        out.println(".limit stack 1");
-        out.println("aload_0");
-        out.println("invokespecial java/lang/Object/<init> ()V");
-        out.println("return");
-        out.println(".end code");
-        out.println();
-        out.println(".method public final evaluate (DD)D");
-        out.println(".code");
-        out.printf(".limit locals 5\n");
-        out.printf(".limit stack %d\n", maxStackSize(expr));
-
-        generateCode(expr, List.of(variable1Name, variable2Name), constantValues, envFunctions, out);
-
-        out.println("dreturn");
-        out.println(".end code");
-
-        out.flush();
-        String asmCode = stringWriter.toString();
-        System.out.println(asmCode);
-
-        var asm = new Assembler();
-        var bytecode = ByteBuffer.allocate(16_384);
+        return compileBinaryFunction(expr, variable1Name, variable2Name, constantValues, envFunctions, Parameters.NONE);
+    }
+
+    public static BinaryFunction compileBinaryFunction(Node.Expr expr, String variable1Name, String variable2Name, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        String className = FunctionClasses.PACKAGE + "/binary_function";
+        var variableNames = List.of(variable1Name, variable2Name);
+        var optimized = Optimizer.optimize(expr, constantValues, envFunctions);
+        var key = CompileKey.of(BinaryFunction.class, optimized, variableNames, constantValues, envFunctions, parameters);
+        return compileCache.get(key, BinaryFunction.class,
+                () -> compileFunction(optimized, className, BinaryFunction.class, variableNames, constantValues, envFunctions, parameters));
+    }
+
+    // Tier 0 functions: interpreted immediately, compiled in the background once they're hot (see Tiering). A function
+    // that is already in the compile cache is returned compiled.
+    public static UnaryFunction tieredUnaryFunction(Node.Expr expr, String variableName, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        return tieredUnaryFunction(expr, variableName, constantValues, envFunctions, Parameters.NONE);
+    }
+
+    public static UnaryFunction tieredUnaryFunction(Node.Expr expr, String variableName, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        var optimized = Optimizer.optimize(expr, constantValues, envFunctions);
+        var key = CompileKey.of(UnaryFunction.class, optimized, List.of(variableName), constantValues, envFunctions, parameters);
+        var cached = compileCache.getIfPresent(key, UnaryFunction.class);
+        if (cached != null)
+            return cached;
+
+        return new TieredUnaryFunction(optimized,
+                Interpreter.interpretUnaryFunction(optimized, variableName, constantValues, envFunctions, parameters),
+                () -> compileUnaryFunction(optimized, variableName, constantValues, envFunctions, parameters));
+    }
+
+    public static BinaryFunction tieredBinaryFunction(Node.Expr expr, String variable1Name, String variable2Name, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        return tieredBinaryFunction(expr, variable1Name, variable2Name, constantValues, envFunctions, Parameters.NONE);
+    }
+
+    public static BinaryFunction tieredBinaryFunction(Node.Expr expr, String variable1Name, String variable2Name, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        var optimized = Optimizer.optimize(expr, constantValues, envFunctions);
+        var key = CompileKey.of(BinaryFunction.class, optimized, List.of(variable1Name, variable2Name), constantValues, envFunctions, parameters);
+        var cached = compileCache.getIfPresent(key, BinaryFunction.class);
+        if (cached != null)
+            return cached;
+
+        return new TieredBinaryFunction(optimized,
+                Interpreter.interpretBinaryFunction(optimized, variable1Name, variable2Name, constantValues, envFunctions, parameters),
+                () -> compileBinaryFunction(optimized, variable1Name, variable2Name, constantValues, envFunctions, parameters));
+    }
+
+    private static <F> F compileFunction(Node.Expr expr, String className, Class<F> functionInterface, List<String> variableNames, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        long start = System.nanoTime();
+        var generateEvent = new PipelineEvents.Generate();
+        generateEvent.begin();
+        var interfaceName = functionInterface.getName().replace('.', '/');
+        var classBuilder = new ClassBuilder(className, "java/lang/Object", interfaceName);
+
+        var flat = Postfix.of(expr, variableNames, constantValues, envFunctions);
+        var parameterIndices = usedParameters(flat, parameters);
+        if (parameterIndices.isEmpty())
+            classBuilder.defaultConstructor("java/lang/Object");
+        else
+            parametersConstructor(classBuilder);
+
+        var descriptor = "(" + "D".repeat(variableNames.size()) + ")D";
+        var code = classBuilder.method(ClassBuilder.ACC_PUBLIC | ClassBuilder.ACC_FINAL, "evaluate", descriptor);
+        var variableSlots = new HashMap<String, Integer>();
+        for (int i = 0; i < variableNames.size(); ++i)
+            variableSlots.put(variableNames.get(i), 1 + 2 * i);
+        loadParameters(code, className, parameterIndices, variableSlots);
+        var shared = Subexpressions.of(expr, flat);
+        boolean vectorized = false;
+        generateCode(expr, variableSlots, constantValues, envFunctions, shared.forMethod(), code);
+        code.dreturn();
+
+        // Batch entry points. The loop lives in the generated class so that the JIT sees a single monomorphic body
+        // that it can unroll, instead of an interface call per sample.
+        if (variableNames.size() == 1) {
+            // void evaluate(double[] xs, double[] out, int from, int to)
+            var batch = classBuilder.method(ClassBuilder.ACC_PUBLIC | ClassBuilder.ACC_FINAL, "evaluate", "([D[DII)V");
+            var batchSlots = new HashMap<String, Integer>();
+            loadParameters(batch, className, parameterIndices, batchSlots);
+            generateRowLoop(expr, variableNames.get(0), batchSlots, 1, 2, 3, 4, constantValues, envFunctions, shared.forMethod(), batch);
+        } else {
+            if (VectorKernels.isEnabled() && VectorKernels.supports(expr, envFunctions, shared)) {
+                vectorized = true;
+                VectorKernels.generateRow(classBuilder, expr, variableNames.get(0), variableNames.get(1), constantValues, envFunctions, shared.forMethod(), parameterIndices);
+            } else {
+                // void evaluateRow(double[] xs, double y, double[] out, int from, int to)
+                var batch = classBuilder.method(ClassBuilder.ACC_PUBLIC | ClassBuilder.ACC_FINAL, "evaluateRow", "([DD[DII)V");
+                var rowSlots = new HashMap<String, Integer>();
+                rowSlots.put(variableNames.get(1), 2);
+                loadParameters(batch, className, parameterIndices, rowSlots);
+                generateRowLoop(expr, variableNames.get(0), rowSlots, 1, 4, 5, 6, constantValues, envFunctions, shared.forMethod(), batch);
+            }
+
+            IntervalKernels.generate(classBuilder, expr, variableNames.get(0), variableNames.get(1), constantValues, envFunctions, shared.forMethod(), parameterIndices);
+        }
+
+        generateEvent.end();
+        if (generateEvent.shouldCommit()) {
+            generateEvent.functionInterface = functionInterface.getSimpleName();
+            generateEvent.nodes = nodeCount(expr);
+            generateEvent.sharedSubexpressions = shared.sharedCount();
+            generateEvent.vectorized = vectorized;
+            generateEvent.commit();
+        }
+
+        var assembleEvent = new PipelineEvents.Assemble();
+        assembleEvent.begin();
+        byte[] bytecode = classBuilder.toByteArray();
+        assembleEvent.end();
+        compileStatistics.record(CompileStatistics.Phase.Generate, System.nanoTime() - start);
+        compileStatistics.recordClassSize(bytecode.length);
+        if (assembleEvent.shouldCommit()) {
+            assembleEvent.className = className;
+            assembleEvent.bytes = bytecode.length;
+            assembleEvent.commit();
+        }
+
+        start = System.nanoTime();
+        var defineEvent = new PipelineEvents.Define();
+        defineEvent.begin();
         try {
-            asm.assemble(new StringReader(asmCode), bytecode);
-            bytecode.limit(bytecode.position());
-            bytecode.position(0);
-
-            var clazz = new ClassLoader() {
-                @SuppressWarnings("unchecked")
-                Class<? extends BinaryFunction> define() {
-                    return (Class<? extends BinaryFunction>)super.defineClass(className, bytecode, null);
-                }
-            }.define();
+            return FunctionClasses.define(bytecode, functionInterface, parameterIndices.isEmpty() ? null : parameters.array());
+        } finally {
+            compileStatistics.record(CompileStatistics.Phase.Define, System.nanoTime() - start);
+            defineEvent.end();
+            if (defineEvent.shouldCommit()) {
+                defineEvent.functionInterface = functionInterface.getSimpleName();
+                defineEvent.bytes = bytecode.length;
+                defineEvent.commit();
+            }
+        }
+    }
 
-            return clazz.getConstructor().newInstance();
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
+    // The adjustable parameters among flat's free variables, each with its index in the parameter array
+    private static Map<String, Integer> usedParameters(Postfix flat, Parameters parameters) {
+        var names = flat.getParameterNames();
+        var indices = new LinkedHashMap<String, Integer>();
+        for (int i = flat.getDeclaredParameterCount(); i < names.size(); ++i) {
+            int index = parameters.indexOf(names.get(i));
+            if (index >= 0)
+                indices.put(names.get(i), index);
         }
+        return indices;
+    }
+
+    // <init>(double[] parameters)
+    private static void parametersConstructor(ClassBuilder classBuilder) {
+        classBuilder.field(ClassBuilder.ACC_PRIVATE | ClassBuilder.ACC_FINAL, PARAMETERS_FIELD, "[D");
+        var code = classBuilder.method(ClassBuilder.ACC_PUBLIC, "<init>", "([D)V");
+        code.aload(0);
+        code.invokespecial("java/lang/Object", "<init>", "()V");
+        code.aload(0);
+        code.aload(1);
+        code.putfield(classBuilder.getName(), PARAMETERS_FIELD, "[D");
+        code.returnVoid();
+    }
+
+    // Copies each parameter the expression uses into a local at the top of a method, where the body then treats it
+    // like any other variable. A method therefore sees one value of each parameter throughout, even if it is set
+    // meanwhile.
+    private static void loadParameters(CodeBuilder code, String className, Map<String, Integer> parameterIndices, Map<String, Integer> variableSlots) {
+        for (var entry : parameterIndices.entrySet()) {
+            int slot = code.newLocal("D");
+            loadParameter(code, className, entry.getValue());
+            code.dstore(slot);
+            variableSlots.put(entry.getKey(), slot);
+        }
+    }
+
+    // this.parameters[index]
+    static void loadParameter(CodeBuilder code, String className, int index) {
+        code.aload(0);
+        code.getfield(className, PARAMETERS_FIELD, "[D");
+        code.iconst(index);
+        code.daload();
     }
 
-    private static void generateCode(Node.Expr expr, List<String> variableNames, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, PrintWriter out) {
-        var maybeConstant = constantValue(expr, constantValues, envFunctions);
-        if (maybeConstant.isPresent() && !(expr instanceof Expr.Number)) {
-            generateCode(new Node.Number(maybeConstant.get()), variableNames, constantValues, envFunctions, out);
+    // for (; from < to; ++from) out[from] = expr(xs[from])
+    private static void generateRowLoop(Node.Expr expr, String xName, Map<String, Integer> variableSlots, int xsSlot, int outSlot, int fromSlot, int toSlot, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared, CodeBuilder code) {
+        int xSlot = code.newLocal("D");
+        variableSlots.put(xName, xSlot);
+
+        var head = new Label();
+        var end = new Label();
+        code.bind(head);
+        code.iload(fromSlot);
+        code.iload(toSlot);
+        code.ifIcmpge(end);
+
+        code.aload(outSlot);
+        code.iload(fromSlot);
+        code.aload(xsSlot);
+        code.iload(fromSlot);
+        code.daload();
+        code.dstore(xSlot);
+        generateCode(expr, variableSlots, constantValues, envFunctions, shared, code);
+        code.dastore();
+
+        code.iinc(fromSlot, 1);
+        code.goTo(head);
+
+        code.bind(end);
+        code.returnVoid();
+    }
+
+    private static void generateCode(Node.Expr expr, Map<String, Integer> variableSlots, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared, CodeBuilder code) {
+        var maybeConstant = shared.constantValue(expr);
+        if (maybeConstant.isPresent()) {
+            code.ldc(maybeConstant.get());
             return;
         }
 
+        if (shared.isShared(expr) && !(expr instanceof Variable)) {
+            var slot = shared.slot(expr);
+            if (slot.isPresent())
+                code.dload(slot.getAsInt());
+            else {
+                // first occurrence: compute it and keep a copy for the later ones
+                generateOperation(expr, variableSlots, constantValues, envFunctions, shared, code);
+                int newSlot = code.newLocal("D");
+                code.dup2();
+                code.dstore(newSlot);
+                shared.setSlot(expr, newSlot);
+            }
+            return;
+        }
+
+        generateOperation(expr, variableSlots, constantValues, envFunctions, shared, code);
+    }
+
+    private static void generateOperation(Node.Expr expr, Map<String, Integer> variableSlots, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared, CodeBuilder code) {
         switch (expr) {
-            case Number(double value) -> out.printf("ldc2_w %.20g\n", value);
+            case Number(double value) -> code.ldc(value);
 
             case Variable(String name) -> {
-                int index = variableNames.indexOf(name);
-                if (index >= 0)
-                    out.printf("dload %d\n", 1 + 2 * index);
+                Integer slot = variableSlots.get(name);
+                if (slot != null)
+                    code.dload(slot);
                 else {
                     Double d = constantValues.get(name);
                     if (d == null)
                         throw new RuntimeException(String.format("Unknown variable: %s", name));
-                    out.printf("ldc2_w %.20g\n", d);
+                    code.ldc(d);
                 }
             }
 
             case BinaryOp bop -> {
-                generateCode(bop.left(), variableNames, constantValues, envFunctions, out);
-                generateCode(bop.right(), variableNames, constantValues, envFunctions, out);
-
-                out.println(switch (bop) {
-                    case Add a -> "dadd";
-                    case Subtract s -> "dsub";
-                    case Multiply m -> "dmul";
-                    case Divide d -> "ddiv";
-                    case Power p -> "invokestatic java/lang/Math/pow (DD)D";
-                });
+                generateCode(bop.left(), variableSlots, constantValues, envFunctions, shared, code);
+                generateCode(bop.right(), variableSlots, constantValues, envFunctions, shared, code);
+
+                switch (bop) {
+                    case Add a -> code.dadd();
+                    case Subtract s -> code.dsub();
+                    case Multiply m -> code.dmul();
+                    case Divide d -> code.ddiv();
+                    case Power p -> code.invokestatic("java/lang/Math", "pow", "(DD)D");
+                }
             }
 
             case Negate(var e) -> {
-                generateCode(e, variableNames, constantValues, envFunctions, out);
-                out.println("dneg");
+                generateCode(e, variableSlots, constantValues, envFunctions, shared, code);
+                code.dneg();
             }
 
             case AbsoluteValue(var e) -> {
-                generateCode(e, variableNames, constantValues, envFunctions, out);
-                out.println("invokestatic java/lang/Math/abs (D)D");
+                generateCode(e, variableSlots, constantValues, envFunctions, shared, code);
+                code.invokestatic("java/lang/Math", "abs", "(D)D");
             }
 
             case FunctionCall(String functionName, List<Expr> arguments) -> {
@@ -272,49 +472,27 @@ public final class Expressions {
                 switch (envf) {
                     case EnvFunction.Builtin b -> {
                         switch (b) {
-                            case Round -> {
-                                generateCode(arguments.get(0), variableNames, constantValues, envFunctions, out);
-                                out.println("invokestatic java/lang/Math/round (D)J\n");
-                                out.println("l2d");
-                            }
-
                             case Min, Max -> {
-                                generateCode(arguments.get(0), variableNames, constantValues, envFunctions, out);
+                                generateCode(arguments.get(0), variableSlots, constantValues, envFunctions, shared, code);
                                 for (var arg : arguments.subList(1, arguments.size())) {
-                                    generateCode(arg, variableNames, constantValues, envFunctions, out);
-                                    out.printf("invokestatic java/lang/Math/%s (DD)D\n", b.getName());
+                                    generateCode(arg, variableSlots, constantValues, envFunctions, shared, code);
+                                    b.generateCode(code);
                                 }
                             }
 
                             default -> {
-                                generateCode(arguments.get(0), variableNames, constantValues, envFunctions, out);
-                                out.printf("invokestatic java/lang/Math/%s (D)D\n", b.getName());
+                                generateCode(arguments.get(0), variableSlots, constantValues, envFunctions, shared, code);
+                                b.generateCode(code);
                             }
                         }
                     }
+                    case EnvFunction.UserDefined u -> throw new IllegalStateException(String.format("%s() was not inlined", functionName));
                 }
             }
         }
     }
 
-    private static int maxStackSize(Node.Expr expr) {
-        return switch (expr) {
-            case Number n -> 2;
-            case Variable v -> 2;
-            case BinaryOp bop -> Math.max(maxStackSize(bop.left()), 2 + maxStackSize(bop.right()));
-            case Negate n -> maxStackSize(n.e());
-            case AbsoluteValue a -> maxStackSize(a.e());
-            case FunctionCall(String functionName, List<Expr> arguments) -> {
-                int maxSize = 0;
-                for (int i = 0; i < arguments.size(); ++i) {
-                    maxSize = Math.max(maxSize, 2 * i + maxStackSize(arguments.get(i)));
-                }
-                yield maxSize;
-            }
-        };
-    }
-
-    private static Optional<Double> constantValue(Node.Expr expr, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+    static Optional<Double> constantValue(Node.Expr expr, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
         return switch (expr) {
             case Number n -> Optional.of(n.value());
 
@@ -372,6 +550,7 @@ public final class Expressions {
                         case Acos -> Math.acos(a[0]);
                         case Atan -> Math.atan(a[0]);
                     });
+                    case EnvFunction.UserDefined u -> Optional.empty();
                 };
             }
 
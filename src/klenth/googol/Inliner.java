@@ -0,0 +1,103 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.EnvFunction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static klenth.googol.ast.Node.*;
+import static klenth.googol.ast.Node.Number;
+
+// Replaces calls to user-defined functions with their bodies, the arguments substituted for the parameters. This runs
+// before optimization, so the optimizer folds and simplifies across what used to be the call, and the interpreter and
+// the scalar, vector and interval code generators only ever see built-in functions. An argument used more than once in
+// a body is substituted as the same subtree each time, which Subexpressions then computes only once.
+public final class Inliner {
+
+    // a bound on the nodes produced by expanding bodies, against definitions that call each other many times over
+    private static final int MAX_INLINED_NODES = 100_000;
+
+    private Inliner() {
+        throw new IllegalStateException();
+    }
+
+    public static Node.Expr inline(Node.Expr expr, Map<String, EnvFunction> envFunctions) {
+        if (dependencies(expr, envFunctions).isEmpty())
+            return expr;
+        return new Expansion(envFunctions).inline(expr, Map.of());
+    }
+
+    // The user-defined functions that node calls, directly or through other user-defined functions
+    public static Set<String> dependencies(Node node, Map<String, EnvFunction> envFunctions) {
+        var names = new LinkedHashSet<String>();
+        collect(node, envFunctions, names);
+        return names;
+    }
+
+    private static void collect(Node node, Map<String, EnvFunction> envFunctions, Set<String> names) {
+        if (node instanceof FunctionCall call
+                && envFunctions.get(call.functionName()) instanceof EnvFunction.UserDefined f
+                && names.add(f.name()))
+            collect(f.body(), envFunctions, names);
+        for (var child : node.children())
+            collect(child, envFunctions, names);
+    }
+
+    private static final class Expansion {
+        final Map<String, EnvFunction> envFunctions;
+        // the functions whose bodies are being expanded, innermost first
+        final Deque<String> active = new ArrayDeque<>();
+        int budget = MAX_INLINED_NODES;
+
+        Expansion(Map<String, EnvFunction> envFunctions) {
+            this.envFunctions = envFunctions;
+        }
+
+        // bindings maps the parameters of the body being expanded to the (already inlined) arguments
+        Node.Expr inline(Node.Expr expr, Map<String, Node.Expr> bindings) {
+            return switch (expr) {
+                case Number n -> n;
+                case Variable v -> bindings.getOrDefault(v.name(), v);
+                case Add(var l, var r) -> new Add(inline(l, bindings), inline(r, bindings));
+                case Subtract(var l, var r) -> new Subtract(inline(l, bindings), inline(r, bindings));
+                case Multiply(var l, var r) -> new Multiply(inline(l, bindings), inline(r, bindings));
+                case Divide(var l, var r) -> new Divide(inline(l, bindings), inline(r, bindings));
+                case Power(var l, var r) -> new Power(inline(l, bindings), inline(r, bindings));
+                case Negate(var e) -> new Negate(inline(e, bindings));
+                case AbsoluteValue(var e) -> new AbsoluteValue(inline(e, bindings));
+                case FunctionCall(String functionName, List<Expr> arguments) -> {
+                    var inlinedArguments = new ArrayList<Expr>(arguments.size());
+                    for (var argument : arguments)
+                        inlinedArguments.add(inline(argument, bindings));
+
+                    if (!(envFunctions.get(functionName) instanceof EnvFunction.UserDefined f))
+                        yield new FunctionCall(functionName, inlinedArguments);
+
+                    if (!f.acceptsParameters(arguments.size()))
+                        throw new RuntimeException(String.format("Invalid use of %s() with %d arguments", functionName, arguments.size()));
+                    if (active.contains(functionName))
+                        throw new RuntimeException(String.format("Recursive definition of %s()", functionName));
+                    budget -= Expressions.nodeCount(f.body());
+                    if (budget < 0)
+                        throw new RuntimeException(String.format("Calls to %s() expand to more than %d nodes", functionName, MAX_INLINED_NODES));
+
+                    var parameterBindings = new HashMap<String, Node.Expr>();
+                    for (int i = 0; i < inlinedArguments.size(); ++i)
+                        parameterBindings.put(f.parameterNames().get(i), inlinedArguments.get(i));
+
+                    active.push(functionName);
+                    var body = inline(f.body(), parameterBindings);
+                    active.pop();
+                    yield body;
+                }
+            };
+        }
+    }
+}
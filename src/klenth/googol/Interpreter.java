@@ -0,0 +1,255 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.BinaryFunction;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.Interval;
+import klenth.googol.math.Parameters;
+import klenth.googol.math.UnaryFunction;
+
+import java.util.List;
+import java.util.Map;
+
+// Tier 0: turns an expression's Postfix encoding into a tree of closures, with variables resolved to argument
+// positions, constants to values and function names to builtins up front, so that evaluation does no lookups and
+// allocates nothing. It performs the same operations in the same order as the generated scalar evaluate (including
+// constant folding), so the two give identical results; so does the compiled evaluateRow, which VectorKernels only
+// vectorizes with exactly rounded operations.
+final class Interpreter {
+
+    private interface Scalar {
+        double evaluate(double x, double y);
+    }
+
+    private interface Ranged {
+        Interval evaluate(Interval x, Interval y);
+    }
+
+    private record InterpretedUnaryFunction(Scalar scalar) implements UnaryFunction {
+        @Override
+        public double evaluate(double x) {
+            return scalar.evaluate(x, 0);
+        }
+    }
+
+    private record InterpretedBinaryFunction(Scalar scalar, Ranged ranged) implements BinaryFunction {
+        @Override
+        public double evaluate(double x, double y) {
+            return scalar.evaluate(x, y);
+        }
+
+        @Override
+        public Interval evaluate(Interval xs, Interval ys) {
+            return ranged.evaluate(xs, ys);
+        }
+    }
+
+    private Interpreter() {
+        throw new IllegalStateException();
+    }
+
+    static UnaryFunction interpretUnaryFunction(Node.Expr expr, String variableName, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        return interpretUnaryFunction(expr, variableName, constantValues, envFunctions, Parameters.NONE);
+    }
+
+    // Adjustable parameters are read from their array on each evaluation, as in compiled code
+    static UnaryFunction interpretUnaryFunction(Node.Expr expr, String variableName, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        var flat = Postfix.of(expr, List.of(variableName), constantValues, envFunctions);
+        return new InterpretedUnaryFunction(scalar(flat, parameters, flat.root()));
+    }
+
+    static BinaryFunction interpretBinaryFunction(Node.Expr expr, String variable1Name, String variable2Name, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        return interpretBinaryFunction(expr, variable1Name, variable2Name, constantValues, envFunctions, Parameters.NONE);
+    }
+
+    static BinaryFunction interpretBinaryFunction(Node.Expr expr, String variable1Name, String variable2Name, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        var flat = Postfix.of(expr, List.of(variable1Name, variable2Name), constantValues, envFunctions);
+        return new InterpretedBinaryFunction(scalar(flat, parameters, flat.root()), ranged(flat, parameters, flat.root()));
+    }
+
+    private static Scalar scalar(Postfix flat, Parameters parameters, int node) {
+        if (flat.isConstant(node)) {
+            double d = flat.constantValue(node);
+            return (x, y) -> d;
+        }
+
+        return switch (flat.opcode(node)) {
+            case Postfix.PARAMETER -> {
+                int index = adjustableIndex(flat, parameters, node);
+                if (index >= 0) {
+                    double[] values = parameters.array();
+                    yield (x, y) -> values[index];
+                }
+                yield switch (parameter(flat, node)) {
+                    case 0 -> (x, y) -> x;
+                    default -> (x, y) -> y;
+                };
+            }
+
+            case Postfix.ADD, Postfix.SUBTRACT, Postfix.MULTIPLY, Postfix.DIVIDE, Postfix.POWER -> {
+                var r = scalar(flat, parameters, node - 1);
+                var l = scalar(flat, parameters, flat.start(node - 1) - 1);
+                yield switch (flat.opcode(node)) {
+                    case Postfix.ADD -> (x, y) -> l.evaluate(x, y) + r.evaluate(x, y);
+                    case Postfix.SUBTRACT -> (x, y) -> l.evaluate(x, y) - r.evaluate(x, y);
+                    case Postfix.MULTIPLY -> (x, y) -> l.evaluate(x, y) * r.evaluate(x, y);
+                    case Postfix.DIVIDE -> (x, y) -> l.evaluate(x, y) / r.evaluate(x, y);
+                    default -> (x, y) -> Math.pow(l.evaluate(x, y), r.evaluate(x, y));
+                };
+            }
+
+            case Postfix.NEGATE -> {
+                var s = scalar(flat, parameters, node - 1);
+                yield (x, y) -> -s.evaluate(x, y);
+            }
+
+            case Postfix.ABSOLUTE_VALUE -> {
+                var s = scalar(flat, parameters, node - 1);
+                yield (x, y) -> Math.abs(s.evaluate(x, y));
+            }
+
+            case Postfix.CALL -> {
+                var b = builtin(flat, node);
+                int[] args = arguments(flat, node);
+                var a = scalar(flat, parameters, args[0]);
+                yield switch (b) {
+                    case Min, Max -> {
+                        var s = a;
+                        for (int k = 1; k < args.length; ++k) {
+                            var left = s;
+                            var right = scalar(flat, parameters, args[k]);
+                            s = (b == EnvFunction.Builtin.Min)
+                                    ? (x, y) -> Math.min(left.evaluate(x, y), right.evaluate(x, y))
+                                    : (x, y) -> Math.max(left.evaluate(x, y), right.evaluate(x, y));
+                        }
+                        yield s;
+                    }
+                    case Floor -> (x, y) -> Math.floor(a.evaluate(x, y));
+                    case Ceil -> (x, y) -> Math.ceil(a.evaluate(x, y));
+                    case Round -> (x, y) -> (double)Math.round(a.evaluate(x, y));
+                    case Abs -> (x, y) -> Math.abs(a.evaluate(x, y));
+                    case Signum -> (x, y) -> Math.signum(a.evaluate(x, y));
+                    case Sqrt -> (x, y) -> Math.sqrt(a.evaluate(x, y));
+                    case Exp -> (x, y) -> Math.exp(a.evaluate(x, y));
+                    case Sin -> (x, y) -> Math.sin(a.evaluate(x, y));
+                    case Cos -> (x, y) -> Math.cos(a.evaluate(x, y));
+                    case Tan -> (x, y) -> Math.tan(a.evaluate(x, y));
+                    case Asin -> (x, y) -> Math.asin(a.evaluate(x, y));
+                    case Acos -> (x, y) -> Math.acos(a.evaluate(x, y));
+                    case Atan -> (x, y) -> Math.atan(a.evaluate(x, y));
+                };
+            }
+
+            default -> throw new IllegalStateException("Unexpected opcode: " + flat.opcode(node));
+        };
+    }
+
+    private static Ranged ranged(Postfix flat, Parameters parameters, int node) {
+        if (flat.isConstant(node)) {
+            var point = Interval.of(flat.constantValue(node));
+            return (x, y) -> point;
+        }
+
+        return switch (flat.opcode(node)) {
+            case Postfix.PARAMETER -> {
+                int index = adjustableIndex(flat, parameters, node);
+                if (index >= 0) {
+                    double[] values = parameters.array();
+                    yield (x, y) -> Interval.of(values[index]);
+                }
+                yield switch (parameter(flat, node)) {
+                    case 0 -> (x, y) -> x;
+                    default -> (x, y) -> y;
+                };
+            }
+
+            case Postfix.ADD, Postfix.SUBTRACT, Postfix.MULTIPLY, Postfix.DIVIDE, Postfix.POWER -> {
+                var r = ranged(flat, parameters, node - 1);
+                var l = ranged(flat, parameters, flat.start(node - 1) - 1);
+                yield switch (flat.opcode(node)) {
+                    case Postfix.ADD -> (x, y) -> Interval.add(l.evaluate(x, y), r.evaluate(x, y));
+                    case Postfix.SUBTRACT -> (x, y) -> Interval.subtract(l.evaluate(x, y), r.evaluate(x, y));
+                    case Postfix.MULTIPLY -> (x, y) -> Interval.multiply(l.evaluate(x, y), r.evaluate(x, y));
+                    case Postfix.DIVIDE -> (x, y) -> Interval.divide(l.evaluate(x, y), r.evaluate(x, y));
+                    default -> (x, y) -> Interval.pow(l.evaluate(x, y), r.evaluate(x, y));
+                };
+            }
+
+            case Postfix.NEGATE -> {
+                var s = ranged(flat, parameters, node - 1);
+                yield (x, y) -> Interval.negate(s.evaluate(x, y));
+            }
+
+            case Postfix.ABSOLUTE_VALUE -> {
+                var s = ranged(flat, parameters, node - 1);
+                yield (x, y) -> Interval.abs(s.evaluate(x, y));
+            }
+
+            case Postfix.CALL -> {
+                var b = builtin(flat, node);
+                int[] args = arguments(flat, node);
+                var a = ranged(flat, parameters, args[0]);
+                yield switch (b) {
+                    case Min, Max -> {
+                        var s = a;
+                        for (int k = 1; k < args.length; ++k) {
+                            var left = s;
+                            var right = ranged(flat, parameters, args[k]);
+                            s = (b == EnvFunction.Builtin.Min)
+                                    ? (x, y) -> Interval.min(left.evaluate(x, y), right.evaluate(x, y))
+                                    : (x, y) -> Interval.max(left.evaluate(x, y), right.evaluate(x, y));
+                        }
+                        yield s;
+                    }
+                    case Floor -> (x, y) -> Interval.floor(a.evaluate(x, y));
+                    case Ceil -> (x, y) -> Interval.ceil(a.evaluate(x, y));
+                    case Round -> (x, y) -> Interval.round(a.evaluate(x, y));
+                    case Abs -> (x, y) -> Interval.abs(a.evaluate(x, y));
+                    case Signum -> (x, y) -> Interval.signum(a.evaluate(x, y));
+                    case Sqrt -> (x, y) -> Interval.sqrt(a.evaluate(x, y));
+                    case Exp -> (x, y) -> Interval.exp(a.evaluate(x, y));
+                    case Sin -> (x, y) -> Interval.sin(a.evaluate(x, y));
+                    case Cos -> (x, y) -> Interval.cos(a.evaluate(x, y));
+                    case Tan -> (x, y) -> Interval.tan(a.evaluate(x, y));
+                    case Asin -> (x, y) -> Interval.asin(a.evaluate(x, y));
+                    case Acos -> (x, y) -> Interval.acos(a.evaluate(x, y));
+                    case Atan -> (x, y) -> Interval.atan(a.evaluate(x, y));
+                };
+            }
+
+            default -> throw new IllegalStateException("Unexpected opcode: " + flat.opcode(node));
+        };
+    }
+
+    // The index in parameters of a free variable that is an adjustable parameter, or -1
+    private static int adjustableIndex(Postfix flat, Parameters parameters, int node) {
+        int parameter = flat.parameter(node);
+        if (parameter < flat.getDeclaredParameterCount())
+            return -1;
+        return parameters.indexOf(flat.getParameterNames().get(parameter));
+    }
+
+    // A declared parameter's number; free variables are ones that are neither parameters nor constants
+    private static int parameter(Postfix flat, int node) {
+        int parameter = flat.parameter(node);
+        if (parameter >= flat.getDeclaredParameterCount())
+            throw new RuntimeException(String.format("Unknown variable: %s", flat.getParameterNames().get(parameter)));
+        return parameter;
+    }
+
+    // The roots of a call's argument subtrees, first argument first
+    private static int[] arguments(Postfix flat, int node) {
+        var args = new int[flat.arity(node)];
+        for (int k = args.length - 1, child = node - 1; k >= 0; --k, child = flat.start(child) - 1)
+            args[k] = child;
+        return args;
+    }
+
+    private static EnvFunction.Builtin builtin(Postfix flat, int node) {
+        var b = flat.function(node);
+        if (b == null)
+            throw new RuntimeException(String.format("Unknown environment function or invalid use of %s() with %d arguments",
+                    flat.functionName(node), flat.arity(node)));
+        return b;
+    }
+}
@@ -0,0 +1,139 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.codegen.ClassBuilder;
+import klenth.googol.codegen.CodeBuilder;
+import klenth.googol.math.EnvFunction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static klenth.googol.ast.Node.*;
+import static klenth.googol.ast.Node.Number;
+
+// Generates the interval companion of a compiled BinaryFunction: the same tree as the scalar evaluate, with each
+// operation replaced by its klenth.googol.math.Interval counterpart.
+final class IntervalKernels {
+
+    private static final String
+            INTERVAL = "klenth/googol/math/Interval",
+            INTERVAL_DESCRIPTOR = "L" + INTERVAL + ";",
+            UNARY_DESCRIPTOR = "(" + INTERVAL_DESCRIPTOR + ")" + INTERVAL_DESCRIPTOR,
+            BINARY_DESCRIPTOR = "(" + INTERVAL_DESCRIPTOR + INTERVAL_DESCRIPTOR + ")" + INTERVAL_DESCRIPTOR;
+
+    private IntervalKernels() {
+        throw new IllegalStateException();
+    }
+
+    // Interval evaluate(Interval x, Interval y); each adjustable parameter in parameterIndices is a point interval
+    static void generate(ClassBuilder classBuilder, Node.Expr expr, String xName, String yName, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared, Map<String, Integer> parameterIndices) {
+        var code = classBuilder.method(ClassBuilder.ACC_PUBLIC | ClassBuilder.ACC_FINAL, "evaluate", BINARY_DESCRIPTOR);
+        var intervalSlots = new HashMap<String, Integer>();
+        intervalSlots.put(xName, 1);
+        intervalSlots.put(yName, 2);
+        for (var entry : parameterIndices.entrySet()) {
+            int slot = code.newLocal(INTERVAL_DESCRIPTOR);
+            Expressions.loadParameter(code, classBuilder.getName(), entry.getValue());
+            code.invokestatic(INTERVAL, "of", "(D)" + INTERVAL_DESCRIPTOR);
+            code.astore(slot);
+            intervalSlots.put(entry.getKey(), slot);
+        }
+        generateIntervalCode(expr, intervalSlots, constantValues, envFunctions, shared, code);
+        code.areturn();
+    }
+
+    private static void generateIntervalCode(Node.Expr expr, Map<String, Integer> intervalSlots, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared, CodeBuilder code) {
+        var maybeConstant = shared.constantValue(expr);
+        if (maybeConstant.isPresent()) {
+            point(code, maybeConstant.get());
+            return;
+        }
+
+        if (shared.isShared(expr) && !(expr instanceof Variable)) {
+            var slot = shared.slot(expr);
+            if (slot.isPresent())
+                code.aload(slot.getAsInt());
+            else {
+                generateIntervalOperation(expr, intervalSlots, constantValues, envFunctions, shared, code);
+                int newSlot = code.newLocal(INTERVAL_DESCRIPTOR);
+                code.dup();
+                code.astore(newSlot);
+                shared.setSlot(expr, newSlot);
+            }
+            return;
+        }
+
+        generateIntervalOperation(expr, intervalSlots, constantValues, envFunctions, shared, code);
+    }
+
+    private static void generateIntervalOperation(Node.Expr expr, Map<String, Integer> intervalSlots, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared, CodeBuilder code) {
+        switch (expr) {
+            case Number(double value) -> point(code, value);
+
+            case Variable(String name) -> {
+                Integer slot = intervalSlots.get(name);
+                if (slot != null)
+                    code.aload(slot);
+                else {
+                    Double d = constantValues.get(name);
+                    if (d == null)
+                        throw new RuntimeException(String.format("Unknown variable: %s", name));
+                    point(code, d);
+                }
+            }
+
+            case BinaryOp bop -> {
+                generateIntervalCode(bop.left(), intervalSlots, constantValues, envFunctions, shared, code);
+                generateIntervalCode(bop.right(), intervalSlots, constantValues, envFunctions, shared, code);
+                code.invokestatic(INTERVAL, switch (bop) {
+                    case Add a -> "add";
+                    case Subtract s -> "subtract";
+                    case Multiply m -> "multiply";
+                    case Divide d -> "divide";
+                    case Power p -> "pow";
+                }, BINARY_DESCRIPTOR);
+            }
+
+            case Negate(var e) -> {
+                generateIntervalCode(e, intervalSlots, constantValues, envFunctions, shared, code);
+                code.invokestatic(INTERVAL, "negate", UNARY_DESCRIPTOR);
+            }
+
+            case AbsoluteValue(var e) -> {
+                generateIntervalCode(e, intervalSlots, constantValues, envFunctions, shared, code);
+                code.invokestatic(INTERVAL, "abs", UNARY_DESCRIPTOR);
+            }
+
+            case FunctionCall(String functionName, List<Expr> arguments) -> {
+                var envf = envFunctions.get(functionName);
+                if (envf == null)
+                    throw new RuntimeException(String.format("Unknown environment function: %s", functionName));
+                if (!envf.acceptsParameters(arguments.size()))
+                    throw new RuntimeException(String.format("Invalid use of %s() with %d arguments", functionName, arguments.size()));
+
+                switch (envf) {
+                    case EnvFunction.Builtin b -> {
+                        // Interval has a static method named after each builtin
+                        generateIntervalCode(arguments.get(0), intervalSlots, constantValues, envFunctions, shared, code);
+                        switch (b) {
+                            case Min, Max -> {
+                                for (var arg : arguments.subList(1, arguments.size())) {
+                                    generateIntervalCode(arg, intervalSlots, constantValues, envFunctions, shared, code);
+                                    code.invokestatic(INTERVAL, b.getName(), BINARY_DESCRIPTOR);
+                                }
+                            }
+                            default -> code.invokestatic(INTERVAL, b.getName(), UNARY_DESCRIPTOR);
+                        }
+                    }
+                    case EnvFunction.UserDefined u -> throw new IllegalStateException(String.format("%s() was not inlined", functionName));
+                }
+            }
+        }
+    }
+
+    private static void point(CodeBuilder code, double value) {
+        code.ldc(value);
+        code.invokestatic(INTERVAL, "of", "(D)" + INTERVAL_DESCRIPTOR);
+    }
+}
@@ -28,11 +28,11 @@ public class Main {
         }
 
         void mark() {
-            time = System.currentTimeMillis();
+            time = System.nanoTime();
         }
 
         double elapsed() {
-            return (System.currentTimeMillis() - time) / 1000.0;
+            return (System.nanoTime() - time) / 1e9;
         }
     }
 
@@ -0,0 +1,232 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.EnvFunction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static klenth.googol.ast.Node.*;
+import static klenth.googol.ast.Node.Number;
+
+public final class Optimizer {
+
+    public enum Mode {
+        // only rewrites that give bit-identical results for every input, including -0.0, infinities and NaN
+        Exact,
+        // also rewrites that may differ in the last bit or in sign-of-zero/infinity corner cases
+        Relaxed
+    }
+
+    private static final int MAX_POWER_CHAIN = 16;
+
+    private static volatile Mode defaultMode = Mode.Exact;
+
+    private Optimizer() {
+        throw new IllegalStateException();
+    }
+
+    public static Mode getDefaultMode() {
+        return defaultMode;
+    }
+
+    public static void setDefaultMode(Mode mode) {
+        defaultMode = mode;
+    }
+
+    public static Node.Expr optimize(Node.Expr expr, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        return optimize(expr, defaultMode, constantValues, envFunctions);
+    }
+
+    // Calls to user-defined functions are inlined first (see Inliner), so the result only calls built-in ones
+    public static Node.Expr optimize(Node.Expr expr, Mode mode, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        var event = new PipelineEvents.Optimize();
+        event.begin();
+        var optimized = rewrite(Inliner.inline(expr, envFunctions), mode, constantValues, envFunctions).expr();
+        event.end();
+        if (event.shouldCommit()) {
+            event.mode = mode.name();
+            event.nodesBefore = Expressions.nodeCount(expr);
+            event.nodesAfter = Expressions.nodeCount(optimized);
+            event.commit();
+        }
+        return optimized;
+    }
+
+    // An expression rewritten, with its value if it's constant. Values are folded bottom-up from the children's, so
+    // rewriting stays linear in the size of the tree.
+    private record Rewritten(Node.Expr expr, Optional<Double> value) {}
+
+    private static Rewritten rewrite(Node.Expr expr, Mode mode, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        boolean relaxed = (mode == Mode.Relaxed);
+
+        return switch (expr) {
+            case Number n -> new Rewritten(n, Optional.of(n.value()));
+            case Variable v -> new Rewritten(v, Optional.ofNullable(constantValues.get(v.name())));
+
+            case Negate(var e) -> {
+                var o = rewrite(e, mode, constantValues, envFunctions);
+                // -(-x) == x
+                yield new Rewritten((o.expr() instanceof Negate(var inner)) ? inner : new Negate(o.expr()), o.value().map(x -> -x));
+            }
+
+            case AbsoluteValue(var e) -> {
+                var o = rewrite(e, mode, constantValues, envFunctions);
+                var inner = o.expr();
+                // ||x|| == |x| and |-x| == |x|
+                while (true) {
+                    if (inner instanceof AbsoluteValue(var e2))
+                        inner = e2;
+                    else if (inner instanceof Negate(var e2))
+                        inner = e2;
+                    else
+                        break;
+                }
+                yield new Rewritten(new AbsoluteValue(inner), o.value().map(Math::abs));
+            }
+
+            case FunctionCall(String functionName, List<Expr> arguments) -> {
+                var optimizedArguments = new ArrayList<Expr>(arguments.size());
+                var values = new ArrayList<Expr>(arguments.size());
+                for (var arg : arguments) {
+                    var o = rewrite(arg, mode, constantValues, envFunctions);
+                    optimizedArguments.add(o.expr());
+                    if (o.value().isPresent())
+                        values.add(new Number(o.value().get()));
+                }
+                // with every argument a number, constantValue only has the call itself left to evaluate
+                var value = (values.size() == arguments.size())
+                        ? Expressions.constantValue(new FunctionCall(functionName, values), constantValues, envFunctions)
+                        : Optional.<Double>empty();
+                yield new Rewritten(new FunctionCall(functionName, optimizedArguments), value);
+            }
+
+            case BinaryOp bop -> {
+                var lo = rewrite(bop.left(), mode, constantValues, envFunctions);
+                var ro = rewrite(bop.right(), mode, constantValues, envFunctions);
+                var left = lo.expr();
+                var right = ro.expr();
+                var l = lo.value();
+                var r = ro.value();
+                var value = (l.isPresent() && r.isPresent()) ? Optional.of(apply(bop, l.get(), r.get())) : Optional.<Double>empty();
+
+                yield new Rewritten(switch (bop) {
+                    case Add a -> {
+                        // x + -0.0 == x always; x + 0.0 turns -0.0 into 0.0
+                        if (isZero(r, relaxed))
+                            yield left;
+                        if (isZero(l, relaxed))
+                            yield right;
+                        yield new Add(left, right);
+                    }
+
+                    case Subtract s -> {
+                        // x - 0.0 == x always; x - -0.0 turns -0.0 into 0.0
+                        if (r.isPresent() && Double.doubleToRawLongBits(r.get()) == 0L)
+                            yield left;
+                        if (relaxed && r.isPresent() && r.get() == 0)
+                            yield left;
+                        yield new Subtract(left, right);
+                    }
+
+                    case Multiply m -> {
+                        if (is(r, 1))
+                            yield left;
+                        if (is(l, 1))
+                            yield right;
+                        if (is(r, -1))
+                            yield new Negate(left);
+                        if (is(l, -1))
+                            yield new Negate(right);
+                        yield new Multiply(left, right);
+                    }
+
+                    case Divide d -> {
+                        if (is(r, 1))
+                            yield left;
+                        if (is(r, -1))
+                            yield new Negate(left);
+                        yield new Divide(left, right);
+                    }
+
+                    case Power p -> optimizePower(left, right, r, relaxed, envFunctions);
+                }, value);
+            }
+        };
+    }
+
+    // As Expressions.constantValue evaluates it
+    private static double apply(BinaryOp bop, double l, double r) {
+        return switch (bop) {
+            case Add a -> l + r;
+            case Subtract s -> l - r;
+            case Multiply m -> l * r;
+            case Divide d -> l / r;
+            case Power p -> Math.pow(l, r);
+        };
+    }
+
+    private static Node.Expr optimizePower(Node.Expr base, Node.Expr exponent, Optional<Double> maybeExponent, boolean relaxed, Map<String, EnvFunction> envFunctions) {
+        if (maybeExponent.isEmpty())
+            return new Power(base, exponent);
+        double n = maybeExponent.get();
+
+        // Math.pow guarantees pow(x, ±0) == 1 and pow(x, 1) == x. It only promises pow(x, 2) to within an ulp of x * x,
+        // but OpenJDK computes it as exactly x * x, in StrictMath (as fdlibm does) and in the JIT's intrinsic alike;
+        // Exact mode relies on that, as VectorKernels does, and OptimizerEquivalenceTest checks it against Math.pow
+        if (n == 0)
+            return new Number(1);
+        if (n == 1)
+            return base;
+        if (n == 2)
+            return new Multiply(base, base);
+
+        if (!relaxed)
+            return new Power(base, exponent);
+
+        if (n == 0.5) {
+            // differs from Math.pow for -0.0 and -∞
+            var sqrt = functionNamed(EnvFunction.Builtin.Sqrt, envFunctions);
+            if (sqrt.isPresent())
+                return new FunctionCall(sqrt.get(), List.of(base));
+        }
+
+        if (n == Math.rint(n) && Math.abs(n) <= MAX_POWER_CHAIN) {
+            // multiplications round at each step, so the chain can be off from pow() in the last bit
+            var chain = powerChain(base, (int)Math.abs(n));
+            return (n < 0) ? new Divide(new Number(1), chain) : chain;
+        }
+
+        return new Power(base, exponent);
+    }
+
+    // square-and-multiply; repeated factors are the same node instance, so common-subexpression elimination computes
+    // each of them only once
+    private static Node.Expr powerChain(Node.Expr base, int n) {
+        if (n == 1)
+            return base;
+        var half = powerChain(base, n / 2);
+        var square = new Multiply(half, half);
+        return (n % 2 == 0) ? square : new Multiply(square, base);
+    }
+
+    private static Optional<String> functionNamed(EnvFunction.Builtin builtin, Map<String, EnvFunction> envFunctions) {
+        return envFunctions.entrySet().stream()
+                .filter(e -> e.getValue() == builtin)
+                .map(Map.Entry::getKey)
+                .findFirst();
+    }
+
+    private static boolean is(Optional<Double> value, double d) {
+        return value.isPresent() && value.get() == d;
+    }
+
+    private static boolean isZero(Optional<Double> value, boolean relaxed) {
+        if (value.isEmpty())
+            return false;
+        long bits = Double.doubleToRawLongBits(value.get());
+        return bits == Double.doubleToRawLongBits(-0.0) || relaxed && bits == 0L;
+    }
+}
@@ -0,0 +1,122 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.parse.ExpressionLexer;
+import klenth.googol.parse.ExpressionParser;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// ANTLR parsing, for whatever PrattParser turns down. Each parse is first tried with SLL prediction and an error
+// strategy that gives up at the first error; that is enough for almost every input and skips the full-context
+// lookahead. Only if it fails is the input re-parsed from the same tokens with full LL prediction and the default error
+// handling, so genuine syntax errors are reported exactly as before.
+//
+// Each thread keeps a lexer/parser pair per name table (the lexer decides between variable, function and other names
+// when it tokenizes), so that a batch of parses against the same MathContext registers the names once. The prediction
+// DFA is static in the generated classes and shared by every instance, so it stays warm across parses and threads.
+final class Parsers {
+
+    public record Statistics(long sll, long ll) {
+        @Override
+        public String toString() {
+            return String.format("%d parses, %d needed full LL", sll + ll, ll);
+        }
+    }
+
+    private static final int NAME_TABLES_PER_THREAD = 8;
+
+    private static final class Pair {
+        final ExpressionLexer lexer;
+        final ExpressionParser parser;
+
+        Pair(List<String> variableNames, List<String> functionNames) {
+            lexer = new ExpressionLexer(CharStreams.fromString(""));
+            variableNames.forEach(lexer::registerVariable);
+            functionNames.forEach(lexer::registerFunction);
+            parser = new ExpressionParser(new CommonTokenStream(lexer));
+        }
+    }
+
+    private record NameTable(List<String> variableNames, List<String> functionNames) {}
+
+    private static final ThreadLocal<Map<NameTable, Pair>> pairs = ThreadLocal.withInitial(
+            () -> new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<NameTable, Pair> eldest) {
+                    return size() > NAME_TABLES_PER_THREAD;
+                }
+            });
+
+    private static final BailErrorStrategy bail = new BailErrorStrategy();
+    private static final LongAdder sllCount = new LongAdder(), llCount = new LongAdder();
+
+    private Parsers() {
+        throw new IllegalStateException();
+    }
+
+    // rule is as for Expressions.parse
+    static <N extends Node> N parse(String input, Iterable<String> variableNames, Iterable<String> functionNames, Class<N> rule) {
+        return rule.cast(parse(input, variableNames, functionNames, startRule(rule)));
+    }
+
+    private static Function<ExpressionParser, Node> startRule(Class<? extends Node> rule) {
+        if (rule == Node.Expr.class)
+            return p -> p.totalExpr().n;
+        else if (rule == Node.Equation.class)
+            return p -> p.totalEquation().n;
+        else if (rule == Node.Relation.class)
+            return p -> p.totalRelation().n;
+        else
+            throw new IllegalArgumentException("No start rule for " + rule.getSimpleName());
+    }
+
+    private static <N> N parse(String input, Iterable<String> variableNames, Iterable<String> functionNames, Function<ExpressionParser, N> rule) {
+        var names = new NameTable(toList(variableNames), toList(functionNames));
+        var pair = pairs.get().computeIfAbsent(names, n -> new Pair(n.variableNames(), n.functionNames()));
+
+        pair.lexer.setInputStream(CharStreams.fromString(input));
+        var tokens = new CommonTokenStream(pair.lexer);
+        var parser = pair.parser;
+
+        parser.setTokenStream(tokens);
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(bail);
+        parser.removeErrorListeners();
+        try {
+            var result = rule.apply(parser);
+            sllCount.increment();
+            return result;
+        } catch (ParseCancellationException ex) {
+            // either a real syntax error or one SLL can't resolve; full LL tells them apart
+            llCount.increment();
+            tokens.seek(0);
+            parser.setTokenStream(tokens);
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+            return rule.apply(parser);
+        }
+    }
+
+    static Statistics getStatistics() {
+        return new Statistics(sllCount.sum(), llCount.sum());
+    }
+
+    // a copy, since the table is kept as a map key
+    private static List<String> toList(Iterable<String> names) {
+        if (names instanceof Collection<String> collection)
+            return List.copyOf(collection);
+        var list = new ArrayList<String>();
+        names.forEach(list::add);
+        return List.copyOf(list);
+    }
+}
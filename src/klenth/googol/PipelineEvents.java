@@ -0,0 +1,208 @@
+package klenth.googol;
+
+import jdk.jfr.*;
+
+// Flight recorder events for each stage between typing an equation and seeing it drawn. They cost next to nothing
+// unless a recording is running; start one with -XX:StartFlightRecording or from JDK Mission Control and look under
+// the Googol category. Durations come from begin()/end(); the fields say how big the job was.
+public final class PipelineEvents {
+
+    private PipelineEvents() {
+        throw new IllegalStateException();
+    }
+
+    @Name("klenth.googol.Parse")
+    @Label("Parse")
+    @Category({"Googol", "Compile"})
+    @Description("Lexing and parsing of one expression or relation")
+    @StackTrace(false)
+    public static final class Parse extends Event {
+        @Label("Input")
+        public String input;
+
+        @Label("Input Length")
+        public int length;
+
+        @Label("AST Nodes")
+        public int nodes;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+
+        @Label("Hand-Written Parser")
+        @Description("Parsed by PrattParser rather than ANTLR")
+        public boolean handWritten;
+    }
+
+    @Name("klenth.googol.Optimize")
+    @Label("Optimize")
+    @Category({"Googol", "Compile"})
+    @Description("Algebraic rewriting of an expression before code generation")
+    @StackTrace(false)
+    public static final class Optimize extends Event {
+        @Label("Mode")
+        public String mode;
+
+        @Label("Nodes Before")
+        public int nodesBefore;
+
+        @Label("Nodes After")
+        public int nodesAfter;
+    }
+
+    @Name("klenth.googol.Generate")
+    @Label("Generate Code")
+    @Category({"Googol", "Compile"})
+    @Description("Emitting the evaluate, batch and interval methods of a function class")
+    @StackTrace(false)
+    public static final class Generate extends Event {
+        @Label("Function Interface")
+        public String functionInterface;
+
+        @Label("AST Nodes")
+        public int nodes;
+
+        @Label("Shared Subexpressions")
+        public int sharedSubexpressions;
+
+        @Label("Vectorized")
+        public boolean vectorized;
+    }
+
+    @Name("klenth.googol.Assemble")
+    @Label("Assemble")
+    @Category({"Googol", "Compile"})
+    @Description("Writing the constant pool and methods of a function class to a class file")
+    @StackTrace(false)
+    public static final class Assemble extends Event {
+        @Label("Class Name")
+        public String className;
+
+        @Label("Class File Size")
+        @DataAmount
+        public int bytes;
+    }
+
+    @Name("klenth.googol.Define")
+    @Label("Define Class")
+    @Category({"Googol", "Compile"})
+    @Description("Defining a function class as a hidden class and instantiating it")
+    @StackTrace(false)
+    public static final class Define extends Event {
+        @Label("Function Interface")
+        public String functionInterface;
+
+        @Label("Class File Size")
+        @DataAmount
+        public int bytes;
+    }
+
+    @Name("klenth.googol.TierUp")
+    @Label("Tier Up")
+    @Category({"Googol", "Compile"})
+    @Description("Compiling an interpreted function to bytecode on the tiering thread")
+    @StackTrace(false)
+    public static final class TierUp extends Event {
+        @Label("Expression")
+        public String expression;
+
+        @Label("Calls")
+        @Description("Points evaluated by the interpreter before the compile")
+        public long calls;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+
+        @Label("Failure")
+        @Description("What the compile threw, if it failed; the function goes on being interpreted")
+        public String failure;
+    }
+
+    @Name("klenth.googol.Render")
+    @Label("Render Graph")
+    @Category({"Googol", "Render"})
+    @Description("Rendering one graph for the current view window")
+    @StackTrace(false)
+    public static final class Render extends Event {
+        @Label("Graph Number")
+        public int graphNumber;
+
+        @Label("Graph Kind")
+        public String kind;
+
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Pixels")
+        public long pixels;
+
+        @Label("Evaluations")
+        @Description("Points at which the graph's function was evaluated")
+        public long evaluations;
+
+        @Label("Tiles Reused")
+        @Description("Tiles of a tiled render that were already cached")
+        public int tilesReused;
+
+        @Label("Tiles Rendered")
+        public int tilesRendered;
+    }
+
+    @Name("klenth.googol.Frame")
+    @Label("Render Frame")
+    @Category({"Googol", "Render"})
+    @Description("Rendering the animated graphs for one frame of an animation")
+    @StackTrace(false)
+    public static final class Frame extends Event {
+        @Label("Time")
+        @Description("Value of the time parameter for the frame")
+        public double time;
+
+        @Label("Graphs")
+        public int graphs;
+
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Evaluations")
+        public long evaluations;
+
+        @Label("Function Samples")
+        @Description("Evaluations spent sampling y = f(x) graphs")
+        public long functionSamples;
+    }
+
+    @Name("klenth.googol.Pass")
+    @Label("Render Pass")
+    @Category({"Googol", "Render"})
+    @Description("One pass of a progressive render, over everything the canvas was missing")
+    @StackTrace(false)
+    public static final class Pass extends Event {
+        @Label("Pass")
+        @Description("0 for the coarsest")
+        public int pass;
+
+        @Label("Step")
+        @Description("Pixels between samples of curve and plot tiles")
+        public int step;
+
+        @Label("Tiles")
+        public int tiles;
+
+        @Label("Functions")
+        public int functions;
+
+        @Label("Evaluations")
+        public long evaluations;
+
+        @Label("Cancelled")
+        @Description("Whether the view or graphs changed before the pass finished")
+        public boolean cancelled;
+    }
+}
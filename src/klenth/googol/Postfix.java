@@ -0,0 +1,439 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.EnvFunction;
+
+import java.util.*;
+
+import static klenth.googol.ast.Node.*;
+import static klenth.googol.ast.Node.Number;
+
+// A flattened encoding of an expression tree: one opcode per node in postfix order, so node i's subtree occupies
+// indices start(i)..i and its last child is i - 1. What the tree-walking helpers used to recompute for every subtree
+// (the parameters it reads, whether it folds to a constant and to what, how much operand stack it needs) is computed
+// once when the encoding is built. After that, queries, hashing and evaluate() allocate nothing.
+//
+// Named constants are folded to numbers, and take precedence over parameters of the same name (as in
+// Expressions.constantValue). Variables that are neither become free parameters, numbered after the declared ones.
+public final class Postfix {
+
+    public static final int NUMBER = 0, PARAMETER = 1, ADD = 2, SUBTRACT = 3, MULTIPLY = 4, DIVIDE = 5, POWER = 6,
+            NEGATE = 7, ABSOLUTE_VALUE = 8, CALL = 9;
+
+    // dependency bit for parameters past the 63rd
+    private static final int OVERFLOW_BIT = 63;
+
+    private final int[] code;
+    // NUMBER: index into constants; PARAMETER: parameter number; CALL: index into calleeNames/callees/calleeArities
+    private final int[] operands;
+    private final int[] arities;
+    private final int[] starts;
+    private final long[] dependencies;
+    private final int[] depths;
+    private final boolean[] constant;
+    private final double[] values;
+    private final double[] constants;
+
+    private final List<String> parameterNames;
+    private final int declaredParameterCount;
+    private final String[] calleeNames;
+    // null where the function is unknown or called with the wrong number of arguments
+    private final EnvFunction.Builtin[] callees;
+    private final int[] calleeArities;
+    private final IdentityHashMap<Node.Expr, Integer> indices;
+
+    // The program evaluate() runs: the encoding with each maximal constant subtree replaced by its value
+    private final int[] program;
+    private final int[] programOperands;
+    private final double[] programConstants;
+    private final boolean evaluable;
+
+    private final int hash;
+
+    private Postfix(Builder b) {
+        code = b.code;
+        operands = b.operands;
+        arities = b.arities;
+        starts = b.starts;
+        dependencies = b.dependencies;
+        depths = b.depths;
+        constant = b.constant;
+        values = b.values;
+        constants = Arrays.copyOf(b.constants, b.constantCount);
+        parameterNames = List.copyOf(b.parameterNames);
+        declaredParameterCount = b.declaredParameterCount;
+        calleeNames = b.calleeNames.toArray(String[]::new);
+        callees = b.callees.toArray(EnvFunction.Builtin[]::new);
+        calleeArities = b.calleeArities.stream().mapToInt(Integer::intValue).toArray();
+        indices = b.indices;
+
+        // a subtree is emitted as a single NUMBER if it is constant and its parent isn't
+        int size = code.length;
+        var parentConstant = new boolean[size];
+        for (int i = 0; i < size; ++i)
+            for (int child = i - 1, k = 0; k < arities[i]; child = starts[child] - 1, ++k)
+                parentConstant[child] = constant[i];
+
+        int length = 0, foldedCount = 0;
+        for (int i = 0; i < size; ++i)
+            if (!parentConstant[i]) {
+                ++length;
+                if (constant[i])
+                    ++foldedCount;
+            }
+        program = new int[length];
+        programOperands = new int[length];
+        programConstants = new double[foldedCount];
+        boolean ok = true;
+        for (int i = 0, pc = 0, folded = 0; i < size; ++i) {
+            if (parentConstant[i])
+                continue;
+            if (constant[i]) {
+                program[pc] = NUMBER;
+                programOperands[pc] = folded;
+                programConstants[folded++] = values[i];
+            } else {
+                program[pc] = code[i];
+                programOperands[pc] = operands[i];
+                if (code[i] == CALL && callees[operands[i]] == null)
+                    ok = false;
+            }
+            ++pc;
+        }
+        evaluable = ok;
+
+        int h = Arrays.hashCode(code);
+        h = 31 * h + Arrays.hashCode(operands);
+        h = 31 * h + Arrays.hashCode(constants);
+        h = 31 * h + Arrays.hashCode(calleeNames);
+        h = 31 * h + declaredParameterCount;
+        hash = h;
+    }
+
+    public static Postfix of(Node.Expr expr, List<String> variableNames, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        var builder = new Builder(size(expr), variableNames, constantValues, envFunctions);
+        builder.emit(expr);
+        return new Postfix(builder);
+    }
+
+    private static int size(Node node) {
+        int size = 1;
+        for (var child : node.children())
+            size += size(child);
+        return size;
+    }
+
+    private static final class Builder {
+        final int[] code, operands, arities, starts, depths;
+        final long[] dependencies;
+        final boolean[] constant;
+        final double[] values;
+        double[] constants = new double[8];
+        int constantCount = 0;
+        final List<String> parameterNames;
+        final int declaredParameterCount;
+        final List<String> calleeNames = new ArrayList<>();
+        final List<EnvFunction.Builtin> callees = new ArrayList<>();
+        final List<Integer> calleeArities = new ArrayList<>();
+        final IdentityHashMap<Node.Expr, Integer> indices;
+        final Map<String, Double> constantValues;
+        final Map<String, EnvFunction> envFunctions;
+        int next = 0;
+
+        Builder(int size, List<String> variableNames, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+            code = new int[size];
+            operands = new int[size];
+            arities = new int[size];
+            starts = new int[size];
+            depths = new int[size];
+            dependencies = new long[size];
+            constant = new boolean[size];
+            values = new double[size];
+            parameterNames = new ArrayList<>(variableNames);
+            declaredParameterCount = variableNames.size();
+            indices = new IdentityHashMap<>(size);
+            this.constantValues = constantValues;
+            this.envFunctions = envFunctions;
+        }
+
+        int emit(Node.Expr expr) {
+            int start = next;
+            switch (expr) {
+                case Number(double value) -> leaf(NUMBER, constant(value), 0, true, value);
+
+                case Variable(String name) -> {
+                    Double d = constantValues.get(name);
+                    if (d != null)
+                        leaf(NUMBER, constant(d), 0, true, d);
+                    else {
+                        int parameter = parameterNames.indexOf(name);
+                        if (parameter < 0) {
+                            parameter = parameterNames.size();
+                            parameterNames.add(name);
+                        }
+                        leaf(PARAMETER, parameter, 1L << Math.min(parameter, OVERFLOW_BIT), false, 0);
+                    }
+                }
+
+                case BinaryOp bop -> {
+                    int l = emit(bop.left());
+                    int r = emit(bop.right());
+                    int op = switch (bop) {
+                        case Add a -> ADD;
+                        case Subtract s -> SUBTRACT;
+                        case Multiply m -> MULTIPLY;
+                        case Divide d -> DIVIDE;
+                        case Power pw -> POWER;
+                    };
+                    boolean c = constant[l] && constant[r];
+                    node(op, 0, 2, start, dependencies[l] | dependencies[r],
+                            Math.max(depths[l], 1 + depths[r]), c, c ? binary(op, values[l], values[r]) : 0);
+                }
+
+                case Negate(var e) -> {
+                    int child = emit(e);
+                    node(NEGATE, 0, 1, start, dependencies[child], depths[child], constant[child], -values[child]);
+                }
+
+                case AbsoluteValue(var e) -> {
+                    int child = emit(e);
+                    node(ABSOLUTE_VALUE, 0, 1, start, dependencies[child], depths[child], constant[child], Math.abs(values[child]));
+                }
+
+                case FunctionCall(String functionName, List<Expr> arguments) -> {
+                    int n = arguments.size();
+                    var argumentValues = new double[n];
+                    long deps = 0;
+                    int depth = 0;
+                    boolean c = true;
+                    for (int k = 0; k < n; ++k) {
+                        int arg = emit(arguments.get(k));
+                        argumentValues[k] = values[arg];
+                        deps |= dependencies[arg];
+                        depth = Math.max(depth, k + depths[arg]);
+                        c &= constant[arg];
+                    }
+
+                    EnvFunction.Builtin b = null;
+                    if (envFunctions.get(functionName) instanceof EnvFunction.Builtin builtin && builtin.acceptsParameters(n))
+                        b = builtin;
+                    int callee = calleeNames.size();
+                    calleeNames.add(functionName);
+                    callees.add(b);
+                    calleeArities.add(n);
+
+                    c &= (b != null);
+                    node(CALL, callee, n, start, deps, depth, c, c ? call(b, argumentValues, 0, n) : 0);
+                }
+            }
+
+            indices.put(expr, next - 1);
+            return next - 1;
+        }
+
+        private int constant(double value) {
+            if (constantCount == constants.length)
+                constants = Arrays.copyOf(constants, 2 * constantCount);
+            constants[constantCount] = value;
+            return constantCount++;
+        }
+
+        private void leaf(int op, int operand, long deps, boolean c, double value) {
+            node(op, operand, 0, next, deps, 1, c, value);
+        }
+
+        private void node(int op, int operand, int arity, int start, long deps, int depth, boolean c, double value) {
+            int i = next++;
+            code[i] = op;
+            operands[i] = operand;
+            arities[i] = arity;
+            starts[i] = start;
+            dependencies[i] = deps;
+            depths[i] = depth;
+            constant[i] = c;
+            values[i] = value;
+        }
+    }
+
+    private static double binary(int op, double l, double r) {
+        return switch (op) {
+            case ADD -> l + r;
+            case SUBTRACT -> l - r;
+            case MULTIPLY -> l * r;
+            case DIVIDE -> l / r;
+            case POWER -> Math.pow(l, r);
+            default -> throw new IllegalArgumentException("Not a binary opcode: " + op);
+        };
+    }
+
+    // b applied to args[from..from + n); min and max fold left to right, as generated code does
+    private static double call(EnvFunction.Builtin b, double[] args, int from, int n) {
+        if (b == EnvFunction.Builtin.Min || b == EnvFunction.Builtin.Max) {
+            double m = args[from];
+            for (int k = 1; k < n; ++k)
+                m = (b == EnvFunction.Builtin.Min) ? Math.min(m, args[from + k]) : Math.max(m, args[from + k]);
+            return m;
+        }
+        return unary(b, args[from]);
+    }
+
+    private static double unary(EnvFunction.Builtin b, double a) {
+        return switch (b) {
+            case Floor -> Math.floor(a);
+            case Ceil -> Math.ceil(a);
+            case Round -> (double)Math.round(a);
+            case Abs -> Math.abs(a);
+            case Signum -> Math.signum(a);
+            case Sqrt -> Math.sqrt(a);
+            case Exp -> Math.exp(a);
+            case Sin -> Math.sin(a);
+            case Cos -> Math.cos(a);
+            case Tan -> Math.tan(a);
+            case Asin -> Math.asin(a);
+            case Acos -> Math.acos(a);
+            case Atan -> Math.atan(a);
+            case Min, Max -> throw new IllegalArgumentException(b.getName() + "() takes more than one argument");
+        };
+    }
+
+    public int size() {
+        return code.length;
+    }
+
+    public int root() {
+        return code.length - 1;
+    }
+
+    public int opcode(int node) {
+        return code[node];
+    }
+
+    public int arity(int node) {
+        return arities[node];
+    }
+
+    // The first index of node's subtree; the child before node's last child (if any) ends at start(lastChild) - 1
+    public int start(int node) {
+        return starts[node];
+    }
+
+    // -1 for nodes that aren't in the tree this was built from
+    public int indexOf(Node.Expr expr) {
+        var index = indices.get(expr);
+        return (index == null) ? -1 : index;
+    }
+
+    public double number(int node) {
+        if (code[node] != NUMBER)
+            throw new IllegalArgumentException(String.format("Node %d is not a number", node));
+        return constants[operands[node]];
+    }
+
+    public int parameter(int node) {
+        if (code[node] != PARAMETER)
+            throw new IllegalArgumentException(String.format("Node %d is not a parameter", node));
+        return operands[node];
+    }
+
+    public String functionName(int node) {
+        if (code[node] != CALL)
+            throw new IllegalArgumentException(String.format("Node %d is not a function call", node));
+        return calleeNames[operands[node]];
+    }
+
+    // null if the function is unknown or doesn't accept arity(node) arguments
+    public EnvFunction.Builtin function(int node) {
+        if (code[node] != CALL)
+            throw new IllegalArgumentException(String.format("Node %d is not a function call", node));
+        return callees[operands[node]];
+    }
+
+    public List<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    public int getDeclaredParameterCount() {
+        return declaredParameterCount;
+    }
+
+    // Bit k is set if node's subtree reads parameter k; parameters from 63 on all share bit 63
+    public long dependencies(int node) {
+        return dependencies[node];
+    }
+
+    public boolean dependsOn(int node, int parameter) {
+        return (dependencies[node] & (1L << Math.min(parameter, OVERFLOW_BIT))) != 0;
+    }
+
+    public boolean isConstant(int node) {
+        return constant[node];
+    }
+
+    public double constantValue(int node) {
+        if (!constant[node])
+            throw new IllegalStateException(String.format("Node %d is not constant", node));
+        return values[node];
+    }
+
+    // Operand stack slots needed to evaluate node's subtree
+    public int stackDepth(int node) {
+        return depths[node];
+    }
+
+    public int getMaxStack() {
+        return depths[root()];
+    }
+
+    // parameters holds a value for each of getParameterNames() and stack at least getMaxStack() slots
+    public double evaluate(double[] parameters, double[] stack) {
+        if (!evaluable)
+            throw new IllegalStateException("Expression calls an unknown environment function");
+        if (parameters.length < parameterNames.size())
+            throw new IllegalArgumentException(String.format("Expected %d parameters, got %d", parameterNames.size(), parameters.length));
+
+        int sp = 0;
+        for (int pc = 0; pc < program.length; ++pc) {
+            int operand = programOperands[pc];
+            switch (program[pc]) {
+                case NUMBER -> stack[sp++] = programConstants[operand];
+                case PARAMETER -> stack[sp++] = parameters[operand];
+                case ADD -> { --sp; stack[sp - 1] = stack[sp - 1] + stack[sp]; }
+                case SUBTRACT -> { --sp; stack[sp - 1] = stack[sp - 1] - stack[sp]; }
+                case MULTIPLY -> { --sp; stack[sp - 1] = stack[sp - 1] * stack[sp]; }
+                case DIVIDE -> { --sp; stack[sp - 1] = stack[sp - 1] / stack[sp]; }
+                case POWER -> { --sp; stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]); }
+                case NEGATE -> stack[sp - 1] = -stack[sp - 1];
+                case ABSOLUTE_VALUE -> stack[sp - 1] = Math.abs(stack[sp - 1]);
+                case CALL -> {
+                    // the arguments are the top n slots, first argument deepest
+                    int n = calleeArities[operand];
+                    sp -= n;
+                    stack[sp] = call(callees[operand], stack, sp, n);
+                    ++sp;
+                }
+            }
+        }
+        return stack[0];
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    // Structural equality: parameters compare by number, constants by bit pattern, functions by name
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        return obj instanceof Postfix p
+                && hash == p.hash
+                && declaredParameterCount == p.declaredParameterCount
+                && Arrays.equals(code, p.code)
+                && Arrays.equals(operands, p.operands)
+                && Arrays.equals(constants, p.constants)
+                && Arrays.equals(calleeNames, p.calleeNames)
+                && parameterNames.subList(declaredParameterCount, parameterNames.size())
+                    .equals(p.parameterNames.subList(p.declaredParameterCount, p.parameterNames.size()));
+    }
+}
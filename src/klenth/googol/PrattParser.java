@@ -0,0 +1,396 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static klenth.googol.ast.Node.*;
+import static klenth.googol.ast.Node.Number;
+
+// A hand-written precedence-climbing parser for the language of Expression.g4, so that parsing at startup doesn't have
+// to load the ANTLR runtime and deserialize its ATN. It produces the same trees as the ANTLR parser, which stays the
+// reference: parse() returns null for anything it does not accept cleanly (syntax errors included), and the caller
+// then falls back to ANTLR, which reports and recovers from errors as it always has.
+//
+// Precedence, loosest first:
+//     expr    := term (('+' | '-') term)*
+//     term    := unary ('*' unary | '/' unary | power)*         -- the last is implicit multiplication
+//     unary   := '-' unary | '+' unary | power
+//     power   := atom (('^' | '**') unary | SUPERSCRIPT)?
+//     atom    := VAR | NUMBER | '(' expr ')' | '|' expr '|' | FUNC '(' (expr (',' expr)*)? ')'
+//
+// The one real ambiguity is a '|' after an operand inside absolute value bars: it may close the bars or open new ones
+// multiplied in. ANTLR takes the first alternative (opening) whenever the rest of the input still parses that way, so
+// this parser does the same by backtracking over those choices in order.
+final class PrattParser {
+
+    // a bound on backtracking; inputs that need more than this go to ANTLR
+    private static final int MAX_ATTEMPTS = 64;
+
+    private enum Type {
+        Var, Func, Number, Superscript,
+        Plus, Minus, Times, Divide, Caret, StarStar, LeftParen, RightParen, Bar, Comma,
+        Equals, Less, LessEqual, Greater, GreaterEqual, NotEqual,
+        End
+    }
+
+    private record Token(Type type, String text) {}
+
+    // thrown to unwind a failed attempt; never escapes parse()
+    private static final class Failure extends RuntimeException {
+        Failure() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Failure FAILURE = new Failure();
+
+    private final List<Token> tokens;
+    private int position = 0;
+    // true while the innermost enclosing bracket is a pair of absolute value bars
+    private boolean inBars = false;
+
+    // choices[i] is the decision at the i-th ambiguous '|': true to open new bars, false to close
+    private final List<Boolean> forced;
+    private final List<Boolean> choices = new ArrayList<>();
+
+    private PrattParser(List<Token> tokens, List<Boolean> forced) {
+        this.tokens = tokens;
+        this.forced = forced;
+    }
+
+    // rule is Node.Expr.class, Node.Equation.class or Node.Relation.class, for the totalExpr, totalEquation and
+    // totalRelation rules
+    static <N extends Node> N parse(String input, Iterable<String> variableNames, Iterable<String> functionNames, Class<N> rule) {
+        Set<String> variables = new HashSet<>(), functions = new HashSet<>();
+        variableNames.forEach(variables::add);
+        functionNames.forEach(functions::add);
+        var tokens = tokenize(input, variables, functions);
+        if (tokens == null)
+            return null;
+
+        List<Boolean> forced = List.of();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            var parser = new PrattParser(tokens, forced);
+            try {
+                return rule.cast(parser.total(rule));
+            } catch (Failure f) {
+                // try the last choice that opened bars the other way round; if there is none, nothing parses
+                var choices = parser.choices;
+                int last = choices.lastIndexOf(true);
+                if (last < 0)
+                    return null;
+                var next = new ArrayList<>(choices.subList(0, last));
+                next.add(false);
+                forced = next;
+            }
+        }
+        return null;
+    }
+
+    private Node total(Class<?> rule) {
+        if (rule == Node.Expr.class) {
+            var e = expr();
+            expect(Type.End);
+            return e;
+        }
+
+        var lhs = expr();
+        var op = next();
+        var rhs = expr();
+        expect(Type.End);
+        boolean inequality = switch (op.type()) {
+            case Less, LessEqual, Greater, GreaterEqual, NotEqual -> true;
+            default -> false;
+        };
+        if (op.type() == Type.Equals)
+            return new Equation(lhs, rhs);
+        else if (inequality && rule == Node.Relation.class)
+            return new Inequality(lhs, rhs, Inequality.Type.of(op.text()));
+        else
+            throw FAILURE;
+    }
+
+    private Expr expr() {
+        var e = term();
+        while (true) {
+            switch (peek()) {
+                case Plus -> {
+                    ++position;
+                    e = new Add(e, term());
+                }
+                case Minus -> {
+                    ++position;
+                    e = new Subtract(e, term());
+                }
+                default -> {
+                    return e;
+                }
+            }
+        }
+    }
+
+    private Expr term() {
+        var e = unary();
+        while (true) {
+            switch (peek()) {
+                case Times -> {
+                    ++position;
+                    e = new Multiply(e, unary());
+                }
+                case Divide -> {
+                    ++position;
+                    e = new Divide(e, unary());
+                }
+                case Var, Func, Number, LeftParen -> e = new Multiply(e, power());
+                case Bar -> {
+                    // outside bars a '|' can only open new ones; inside, it's one of the ambiguous choices
+                    if (inBars && !choose())
+                        return e;
+                    e = new Multiply(e, power());
+                }
+                default -> {
+                    return e;
+                }
+            }
+        }
+    }
+
+    private Expr unary() {
+        return switch (peek()) {
+            case Minus -> {
+                ++position;
+                yield new Negate(unary());
+            }
+            case Plus -> {
+                ++position;
+                yield unary();
+            }
+            default -> power();
+        };
+    }
+
+    private Expr power() {
+        var base = atom();
+        return switch (peek()) {
+            case Caret, StarStar -> {
+                ++position;
+                yield new Power(base, unary());
+            }
+            case Superscript -> new Power(base, new Number(superscript(next().text())));
+            default -> base;
+        };
+    }
+
+    private Expr atom() {
+        var token = next();
+        return switch (token.type()) {
+            case Var -> new Variable(token.text());
+            case Number -> new Number(Double.parseDouble(token.text()));
+            case LeftParen -> {
+                boolean outer = inBars;
+                inBars = false;
+                var e = expr();
+                expect(Type.RightParen);
+                inBars = outer;
+                yield e;
+            }
+            case Bar -> {
+                boolean outer = inBars;
+                inBars = true;
+                var e = expr();
+                expect(Type.Bar);
+                inBars = outer;
+                yield new AbsoluteValue(e);
+            }
+            case Func -> {
+                expect(Type.LeftParen);
+                boolean outer = inBars;
+                inBars = false;
+                var arguments = new ArrayList<Expr>();
+                if (peek() != Type.RightParen) {
+                    arguments.add(expr());
+                    while (peek() == Type.Comma) {
+                        ++position;
+                        arguments.add(expr());
+                    }
+                }
+                expect(Type.RightParen);
+                inBars = outer;
+                yield new FunctionCall(token.text(), arguments);
+            }
+            default -> throw FAILURE;
+        };
+    }
+
+    private boolean choose() {
+        int i = choices.size();
+        boolean open = (i < forced.size()) ? forced.get(i) : true;
+        choices.add(open);
+        return open;
+    }
+
+    private Type peek() {
+        return tokens.get(position).type();
+    }
+
+    private Token next() {
+        var token = tokens.get(position);
+        if (token.type() != Type.End)
+            ++position;
+        return token;
+    }
+
+    private void expect(Type type) {
+        if (next().type() != type)
+            throw FAILURE;
+    }
+
+    private static int superscript(String s) {
+        int value = 0;
+        boolean negative = false;
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c == '⁻')
+                negative = true;
+            else
+                value = 10 * value + superscriptDigit(c);
+        }
+        return negative ? -value : value;
+    }
+
+    private static int superscriptDigit(char c) {
+        return switch (c) {
+            case '⁰' -> 0;
+            case '¹' -> 1;
+            case '²' -> 2;
+            case '³' -> 3;
+            case '⁴' -> 4;
+            case '⁵' -> 5;
+            case '⁶' -> 6;
+            case '⁷' -> 7;
+            case '⁸' -> 8;
+            case '⁹' -> 9;
+            default -> -1;
+        };
+    }
+
+    // The lexer's rules, longest match first; null for any character the lexer would reject. Names are only taken whole
+    // when they're a registered variable or function: how the lexer splits any other run of letters and digits (xy,
+    // sinx, the e3 of 1e3) depends on its tables, so that is left to it.
+    private static List<Token> tokenize(String input, Set<String> variables, Set<String> functions) {
+        var tokens = new ArrayList<Token>();
+        int i = 0, n = input.length();
+        while (i < n) {
+            char c = input.charAt(i);
+            int start = i;
+
+            if (c == ' ' || c == '\r' || c == '\n' || c == '\t') {
+                ++i;
+                continue;
+            }
+
+            if (isLetter(input.codePointAt(i))) {
+                i += Character.charCount(input.codePointAt(i));
+                while (i < n && (isLetter(input.codePointAt(i)) || isDigit(input.charAt(i))))
+                    i += Character.charCount(input.codePointAt(i));
+                var name = input.substring(start, i);
+                if (functions.contains(name))
+                    tokens.add(new Token(Type.Func, name));
+                else if (variables.contains(name))
+                    tokens.add(new Token(Type.Var, name));
+                else
+                    return null;
+                continue;
+            }
+
+            if (isDigit(c) || c == '.') {
+                while (i < n && isDigit(input.charAt(i)))
+                    ++i;
+                boolean digitsBefore = (i > start);
+                if (i < n && input.charAt(i) == '.') {
+                    ++i;
+                    int fractionStart = i;
+                    while (i < n && isDigit(input.charAt(i)))
+                        ++i;
+                    if (!digitsBefore && i == fractionStart)
+                        return null;
+                }
+                tokens.add(new Token(Type.Number, input.substring(start, i)));
+                continue;
+            }
+
+            if (c == '⁻' || superscriptDigit(c) >= 0) {
+                if (c == '⁻')
+                    ++i;
+                int digitsStart = i;
+                while (i < n && superscriptDigit(input.charAt(i)) >= 0)
+                    ++i;
+                if (i == digitsStart)
+                    return null;
+                tokens.add(new Token(Type.Superscript, input.substring(start, i)));
+                continue;
+            }
+
+            char d = (i + 1 < n) ? input.charAt(i + 1) : 0;
+            Type type;
+            int length = 1;
+            switch (c) {
+                case '+' -> type = Type.Plus;
+                case '-' -> type = Type.Minus;
+                case '*' -> {
+                    type = (d == '*') ? Type.StarStar : Type.Times;
+                    length = (d == '*') ? 2 : 1;
+                }
+                case '/' -> type = Type.Divide;
+                case '^' -> type = Type.Caret;
+                case '(' -> type = Type.LeftParen;
+                case ')' -> type = Type.RightParen;
+                case '|' -> type = Type.Bar;
+                case ',' -> type = Type.Comma;
+                case '=' -> type = Type.Equals;
+                case '<' -> {
+                    type = (d == '=') ? Type.LessEqual : Type.Less;
+                    length = (d == '=') ? 2 : 1;
+                }
+                case '>' -> {
+                    type = (d == '=') ? Type.GreaterEqual : Type.Greater;
+                    length = (d == '=') ? 2 : 1;
+                }
+                case '≤' -> type = Type.LessEqual;
+                case '≥' -> type = Type.GreaterEqual;
+                case '≠' -> type = Type.NotEqual;
+                case '!' -> {
+                    if (d != '=')
+                        return null;
+                    type = Type.NotEqual;
+                    length = 2;
+                }
+                default -> {
+                    return null;
+                }
+            }
+            i += length;
+            tokens.add(new Token(type, input.substring(start, i)));
+        }
+
+        tokens.add(new Token(Type.End, "<EOF>"));
+        return tokens;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // [\p{Ll}\p{Lu}\p{Lt}\p{Lm}\p{Lo}]
+    private static boolean isLetter(int codePoint) {
+        return switch (Character.getType(codePoint)) {
+            case Character.LOWERCASE_LETTER, Character.UPPERCASE_LETTER, Character.TITLECASE_LETTER,
+                    Character.MODIFIER_LETTER, Character.OTHER_LETTER -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+
+import java.util.*;
+
+// Hash-conses an expression tree into a DAG so that code generation can compute each repeated subexpression once and
+// reload it from a local variable afterwards. Every node is pure (EnvFunction.Builtin functions included), so any
+// structurally equal subtree can share a value. It also carries the expression's Postfix encoding, which answers the
+// generators' constant folding questions without re-walking subtrees.
+final class Subexpressions {
+
+    private record Key(Class<?> kind, Object payload, List<Integer> children) {}
+
+    private final IdentityHashMap<Node.Expr, Integer> ids;
+    private final int[] uses;
+    private final Postfix flat;
+    private final Map<Integer, Integer> slots = new HashMap<>();
+
+    private Subexpressions(IdentityHashMap<Node.Expr, Integer> ids, int[] uses, Postfix flat) {
+        this.ids = ids;
+        this.uses = uses;
+        this.flat = flat;
+    }
+
+    static Subexpressions of(Node.Expr root, Postfix flat) {
+        var ids = new IdentityHashMap<Node.Expr, Integer>();
+        var canonical = new HashMap<Key, Integer>();
+        number(root, ids, canonical);
+
+        var uses = new int[canonical.size()];
+        count(root, ids, uses);
+        return new Subexpressions(ids, uses, flat);
+    }
+
+    // Slot assignments are per method, so each generated method body gets its own copy
+    Subexpressions forMethod() {
+        return new Subexpressions(ids, uses, flat);
+    }
+
+    // Same answer as Expressions.constantValue for any subtree of the root
+    Optional<Double> constantValue(Node.Expr expr) {
+        int node = flat.indexOf(expr);
+        if (node < 0)
+            throw new IllegalArgumentException("Not a subexpression: " + expr);
+        return flat.isConstant(node) ? Optional.of(flat.constantValue(node)) : Optional.empty();
+    }
+
+    boolean isShared(Node.Expr expr) {
+        var id = ids.get(expr);
+        return id != null && uses[id] > 1;
+    }
+
+    // the number of distinct subexpressions that occur more than once
+    int sharedCount() {
+        int count = 0;
+        for (int u : uses)
+            if (u > 1)
+                ++count;
+        return count;
+    }
+
+    OptionalInt slot(Node.Expr expr) {
+        var slot = slots.get(ids.get(expr));
+        return (slot == null) ? OptionalInt.empty() : OptionalInt.of(slot);
+    }
+
+    void setSlot(Node.Expr expr, int slot) {
+        slots.put(ids.get(expr), slot);
+    }
+
+    private static int number(Node.Expr expr, IdentityHashMap<Node.Expr, Integer> ids, Map<Key, Integer> canonical) {
+        var existing = ids.get(expr);
+        if (existing != null)
+            return existing;
+
+        var childIds = new ArrayList<Integer>(2);
+        for (var child : expr.children())
+            childIds.add(number((Node.Expr)child, ids, canonical));
+
+        Object payload = switch (expr) {
+            case Node.Number(double value) -> Double.doubleToLongBits(value);
+            case Node.Variable(String name) -> name;
+            case Node.FunctionCall(String functionName, var arguments) -> functionName;
+            default -> null;
+        };
+
+        var key = new Key(expr.getClass(), payload, childIds);
+        int id = canonical.computeIfAbsent(key, k -> canonical.size());
+        ids.put(expr, id);
+        return id;
+    }
+
+    // counts references in the DAG: the children of a node are only visited the first time that node is reached, since
+    // later occurrences will be reloaded rather than recomputed
+    private static void count(Node.Expr expr, IdentityHashMap<Node.Expr, Integer> ids, int[] uses) {
+        if (uses[ids.get(expr)]++ == 0) {
+            for (var child : expr.children())
+                count((Node.Expr)child, ids, uses);
+        }
+    }
+}
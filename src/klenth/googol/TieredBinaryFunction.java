@@ -0,0 +1,51 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.BinaryFunction;
+import klenth.googol.math.Interval;
+
+import java.util.function.Supplier;
+
+public final class TieredBinaryFunction implements BinaryFunction {
+
+    private final Tiering.Slot<BinaryFunction> slot;
+
+    TieredBinaryFunction(Node.Expr expr, BinaryFunction interpreted, Supplier<? extends BinaryFunction> compile) {
+        slot = new Tiering.Slot<>(expr, interpreted, compile);
+    }
+
+    public Tiering.Tier getTier() {
+        return slot.getTier();
+    }
+
+    public long getCalls() {
+        return slot.getCalls();
+    }
+
+    @Override
+    public double evaluate(double x, double y) {
+        var compiled = slot.compiled;
+        if (compiled != null)
+            return compiled.evaluate(x, y);
+        slot.tick(1);
+        return slot.interpreted.evaluate(x, y);
+    }
+
+    @Override
+    public void evaluateRow(double[] xs, double y, double[] out, int from, int to) {
+        var compiled = slot.compiled;
+        if (compiled != null)
+            compiled.evaluateRow(xs, y, out, from, to);
+        else {
+            slot.tick(to - from);
+            slot.interpreted.evaluateRow(xs, y, out, from, to);
+        }
+    }
+
+    // interval evaluations are not counted: there are few of them, and the interpreter's are about as fast
+    @Override
+    public Interval evaluate(Interval xs, Interval ys) {
+        var compiled = slot.compiled;
+        return (compiled != null) ? compiled.evaluate(xs, ys) : slot.interpreted.evaluate(xs, ys);
+    }
+}
@@ -0,0 +1,43 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.UnaryFunction;
+
+import java.util.function.Supplier;
+
+public final class TieredUnaryFunction implements UnaryFunction {
+
+    private final Tiering.Slot<UnaryFunction> slot;
+
+    TieredUnaryFunction(Node.Expr expr, UnaryFunction interpreted, Supplier<? extends UnaryFunction> compile) {
+        slot = new Tiering.Slot<>(expr, interpreted, compile);
+    }
+
+    public Tiering.Tier getTier() {
+        return slot.getTier();
+    }
+
+    public long getCalls() {
+        return slot.getCalls();
+    }
+
+    @Override
+    public double evaluate(double x) {
+        var compiled = slot.compiled;
+        if (compiled != null)
+            return compiled.evaluate(x);
+        slot.tick(1);
+        return slot.interpreted.evaluate(x);
+    }
+
+    @Override
+    public void evaluate(double[] xs, double[] out, int from, int to) {
+        var compiled = slot.compiled;
+        if (compiled != null)
+            compiled.evaluate(xs, out, from, to);
+        else {
+            slot.tick(to - from);
+            slot.interpreted.evaluate(xs, out, from, to);
+        }
+    }
+}
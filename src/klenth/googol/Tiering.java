@@ -0,0 +1,162 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Tiered execution: functions from Expressions.tieredUnaryFunction/tieredBinaryFunction start out interpreted
+// (tier 0) and, once they have been evaluated at getThreshold() points, are compiled to bytecode (tier 1) on a
+// background thread and swapped in. The interpreter gives the same results as the compiled code, row kernels included
+// (see VectorKernels.supports), so callers only notice the swap in speed.
+public final class Tiering {
+
+    public enum Tier {
+        Interpreted, Compiling, Compiled, Failed
+    }
+
+    // calls is the number of points evaluated before the transition; nanos is the time since the function was created
+    // (for Compiling) or the time spent compiling (for Compiled and Failed). failure is what compiling threw, for Failed,
+    // and otherwise null.
+    public record Transition(Node.Expr expr, Tier from, Tier to, long calls, long nanos, RuntimeException failure) {
+        @Override
+        public String toString() {
+            return String.format("%s -> %s after %d calls, %.2f ms: %s%s", from, to, calls, nanos / 1e6, expr,
+                    (failure == null) ? "" : " (" + failure + ")");
+        }
+    }
+
+    public interface Listener {
+        void transitioned(Transition transition);
+    }
+
+    public record Statistics(long interpreted, long compiling, long compiled, long failed, long compileNanos) {
+        @Override
+        public String toString() {
+            return String.format("%d interpreted, %d compilations started, %d compiled, %d failed, %.1f ms compiling",
+                    interpreted, compiling, compiled, failed, compileNanos / 1e6);
+        }
+    }
+
+    public static final long DEFAULT_THRESHOLD = 20_000;
+
+    private static volatile long threshold = Long.getLong("googol.tier.threshold", DEFAULT_THRESHOLD);
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final AtomicLong interpretedCount = new AtomicLong(), compilingCount = new AtomicLong(),
+            compiledCount = new AtomicLong(), failedCount = new AtomicLong(), compileNanos = new AtomicLong();
+
+    private static final ExecutorService compiler = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "googol-compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        if (Boolean.getBoolean("googol.tier.log"))
+            addListener(t -> System.err.println("[tiering] " + t));
+    }
+
+    private Tiering() {
+        throw new IllegalStateException();
+    }
+
+    public static long getThreshold() {
+        return threshold;
+    }
+
+    // 0 compiles every function as soon as it is first evaluated; Long.MAX_VALUE keeps everything interpreted
+    public static void setThreshold(long threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("Negative tiering threshold: " + threshold);
+        Tiering.threshold = threshold;
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public static Statistics getStatistics() {
+        return new Statistics(interpretedCount.get(), compilingCount.get(), compiledCount.get(), failedCount.get(), compileNanos.get());
+    }
+
+    private static void fire(Transition transition) {
+        for (var listener : listeners)
+            listener.transitioned(transition);
+    }
+
+    // The tiering state of one function; F is UnaryFunction or BinaryFunction
+    static final class Slot<F> {
+
+        final F interpreted;
+        volatile F compiled = null;
+
+        private final Node.Expr expr;
+        private final Supplier<? extends F> compile;
+        private final AtomicReference<Tier> tier = new AtomicReference<>(Tier.Interpreted);
+        private final long created = System.nanoTime();
+        // only ever read against the threshold, so lost updates from racing threads don't matter
+        private long calls = 0;
+
+        Slot(Node.Expr expr, F interpreted, Supplier<? extends F> compile) {
+            this.expr = expr;
+            this.interpreted = interpreted;
+            this.compile = compile;
+            interpretedCount.incrementAndGet();
+        }
+
+        Tier getTier() {
+            return tier.get();
+        }
+
+        long getCalls() {
+            return calls;
+        }
+
+        void tick(long n) {
+            calls += n;
+            if (calls >= threshold && tier.get() == Tier.Interpreted && tier.compareAndSet(Tier.Interpreted, Tier.Compiling)) {
+                compilingCount.incrementAndGet();
+                fire(new Transition(expr, Tier.Interpreted, Tier.Compiling, calls, System.nanoTime() - created, null));
+                compiler.execute(this::compile);
+            }
+        }
+
+        private void compile() {
+            var event = new PipelineEvents.TierUp();
+            event.begin();
+            long start = System.nanoTime();
+            RuntimeException failure = null;
+            try {
+                compiled = compile.get();
+                tier.set(Tier.Compiled);
+                compiledCount.incrementAndGet();
+            } catch (RuntimeException ex) {
+                // keep interpreting; the interpreter accepted this expression, so this is a code generation bug, which
+                // the listeners, the log and the flight recorder all hear about
+                failure = ex;
+                tier.set(Tier.Failed);
+                failedCount.incrementAndGet();
+            }
+            long nanos = System.nanoTime() - start;
+            compileNanos.addAndGet(nanos);
+            event.end();
+            if (event.shouldCommit()) {
+                event.expression = expr.toString();
+                event.calls = calls;
+                event.succeeded = (failure == null);
+                event.failure = (failure == null) ? null : failure.toString();
+                event.commit();
+            }
+            fire(new Transition(expr, Tier.Compiling, tier.get(), calls, nanos, failure));
+        }
+    }
+}
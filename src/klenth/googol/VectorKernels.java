@@ -0,0 +1,286 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.codegen.ClassBuilder;
+import klenth.googol.codegen.CodeBuilder;
+import klenth.googol.codegen.Label;
+import klenth.googol.math.EnvFunction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static klenth.googol.ast.Node.*;
+import static klenth.googol.ast.Node.Number;
+
+// Generates BinaryFunction.evaluateRow bodies that evaluate DoubleVector.SPECIES_PREFERRED lanes of x at a time.
+// The incubator classes are only referenced by name from generated code, so this class (and the rest of the app) still
+// loads when jdk.incubator.vector isn't in the boot layer; in that case isEnabled() is simply false.
+public final class VectorKernels {
+
+    private static final String
+            DOUBLE_VECTOR = "jdk/incubator/vector/DoubleVector",
+            VECTOR_SPECIES = "jdk/incubator/vector/VectorSpecies",
+            VECTOR_OPERATORS = "jdk/incubator/vector/VectorOperators",
+            VECTOR_MATH = "klenth/googol/math/VectorMath",
+            DOUBLE_VECTOR_DESCRIPTOR = "L" + DOUBLE_VECTOR + ";",
+            SPECIES_DESCRIPTOR = "L" + VECTOR_SPECIES + ";",
+            UNARY_DESCRIPTOR = "(L" + VECTOR_OPERATORS + "$Unary;)" + DOUBLE_VECTOR_DESCRIPTOR,
+            BINARY_DESCRIPTOR = "(L" + VECTOR_OPERATORS + "$Binary;Ljdk/incubator/vector/Vector;)" + DOUBLE_VECTOR_DESCRIPTOR;
+
+    private static final boolean available = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    private static volatile boolean enabled = available && !"false".equals(System.getProperty("googol.simd"));
+
+    private VectorKernels() {
+        throw new IllegalStateException();
+    }
+
+    public static boolean isAvailable() {
+        return available;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Only affects functions compiled afterwards; callers should clear Expressions.getCompileCache() too
+    public static void setEnabled(boolean enabled) {
+        if (enabled && !available)
+            throw new IllegalStateException("jdk.incubator.vector is not available; run with --add-modules jdk.incubator.vector");
+        VectorKernels.enabled = enabled;
+    }
+
+    // Only operations that IEEE 754 rounds exactly (+ - * / sqrt, and the exact abs, min, max and negation) are
+    // vectorized, so that a row gives bit for bit the same results as evaluate at each of its points. The Vector API's
+    // transcendental lanes can differ from Math by an ulp, which would let a plot's rows and its single points disagree
+    // on the sign of the same point; expressions using sin, exp and the like, or floor and its kin, keep the scalar
+    // evaluateRow.
+    static boolean supports(Node.Expr expr, Map<String, EnvFunction> envFunctions, Subexpressions shared) {
+        return switch (expr) {
+            case Number n -> true;
+            case Variable v -> true;
+            case Power(var left, var right) -> shared.constantValue(right).equals(Optional.of(2.0)) && supports(left, envFunctions, shared);
+            case BinaryOp bop -> supports(bop.left(), envFunctions, shared) && supports(bop.right(), envFunctions, shared);
+            case Negate(var e) -> supports(e, envFunctions, shared);
+            case AbsoluteValue(var e) -> supports(e, envFunctions, shared);
+            case FunctionCall(String functionName, List<Expr> arguments) -> {
+                if (shared.constantValue(expr).isPresent())
+                    yield true;
+                if (!(envFunctions.get(functionName) instanceof EnvFunction.Builtin b))
+                    yield false;
+                yield switch (b) {
+                    case Abs, Min, Max, Sqrt -> arguments.stream().allMatch(a -> supports(a, envFunctions, shared));
+                    default -> false;
+                };
+            }
+        };
+    }
+
+    // void evaluateRow(double[] xs, double y, double[] out, int from, int to)
+    // parameterIndices are the adjustable parameters the expression uses; each is broadcast once, like y
+    static void generateRow(ClassBuilder classBuilder, Node.Expr expr, String xName, String yName, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared, Map<String, Integer> parameterIndices) {
+        final int xsSlot = 1, ySlot = 2, outSlot = 4, fromSlot = 5, toSlot = 6;
+        var code = classBuilder.method(ClassBuilder.ACC_PUBLIC | ClassBuilder.ACC_FINAL, "evaluateRow", "([DD[DII)V");
+
+        int yVectorSlot = code.newLocal(DOUBLE_VECTOR_DESCRIPTOR);
+        int xVectorSlot = code.newLocal(DOUBLE_VECTOR_DESCRIPTOR);
+        int upperSlot = code.newLocal("I");
+
+        species(code);
+        code.dload(ySlot);
+        code.invokestatic(DOUBLE_VECTOR, "broadcast", "(" + SPECIES_DESCRIPTOR + "D)" + DOUBLE_VECTOR_DESCRIPTOR);
+        code.astore(yVectorSlot);
+
+        var slots = new HashMap<String, Integer>();
+        slots.put(yName, yVectorSlot);
+        for (var entry : parameterIndices.entrySet()) {
+            int slot = code.newLocal(DOUBLE_VECTOR_DESCRIPTOR);
+            species(code);
+            Expressions.loadParameter(code, classBuilder.getName(), entry.getValue());
+            code.invokestatic(DOUBLE_VECTOR, "broadcast", "(" + SPECIES_DESCRIPTOR + "D)" + DOUBLE_VECTOR_DESCRIPTOR);
+            code.astore(slot);
+            slots.put(entry.getKey(), slot);
+        }
+        slots.put(xName, xVectorSlot);
+
+        // upper = from + SPECIES.loopBound(to - from)
+        species(code);
+        code.iload(toSlot);
+        code.iload(fromSlot);
+        code.isub();
+        code.invokeinterface(VECTOR_SPECIES, "loopBound", "(I)I");
+        code.iload(fromSlot);
+        code.iadd();
+        code.istore(upperSlot);
+
+        var vectorHead = new Label();
+        var vectorEnd = new Label();
+        code.bind(vectorHead);
+        code.iload(fromSlot);
+        code.iload(upperSlot);
+        code.ifIcmpge(vectorEnd);
+
+        species(code);
+        code.aload(xsSlot);
+        code.iload(fromSlot);
+        code.invokestatic(DOUBLE_VECTOR, "fromArray", "(" + SPECIES_DESCRIPTOR + "[DI)" + DOUBLE_VECTOR_DESCRIPTOR);
+        code.astore(xVectorSlot);
+
+        generateVectorCode(expr, slots, constantValues, envFunctions, shared, code);
+        code.aload(outSlot);
+        code.iload(fromSlot);
+        code.invokevirtual(DOUBLE_VECTOR, "intoArray", "([DI)V");
+
+        code.iload(fromSlot);
+        species(code);
+        code.invokeinterface(VECTOR_SPECIES, "length", "()I");
+        code.iadd();
+        code.istore(fromSlot);
+        code.goTo(vectorHead);
+
+        // scalar tail through this.evaluate(x, y)
+        code.bind(vectorEnd);
+        var tailHead = new Label();
+        var tailEnd = new Label();
+        code.bind(tailHead);
+        code.iload(fromSlot);
+        code.iload(toSlot);
+        code.ifIcmpge(tailEnd);
+
+        code.aload(outSlot);
+        code.iload(fromSlot);
+        code.aload(0);
+        code.aload(xsSlot);
+        code.iload(fromSlot);
+        code.daload();
+        code.dload(ySlot);
+        code.invokevirtual(classBuilder.getName(), "evaluate", "(DD)D");
+        code.dastore();
+
+        code.iinc(fromSlot, 1);
+        code.goTo(tailHead);
+
+        code.bind(tailEnd);
+        code.returnVoid();
+    }
+
+    private static void generateVectorCode(Node.Expr expr, Map<String, Integer> vectorSlots, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared, CodeBuilder code) {
+        var maybeConstant = shared.constantValue(expr);
+        if (maybeConstant.isPresent()) {
+            broadcast(code, maybeConstant.get());
+            return;
+        }
+
+        if (shared.isShared(expr) && !(expr instanceof Variable)) {
+            var slot = shared.slot(expr);
+            if (slot.isPresent())
+                code.aload(slot.getAsInt());
+            else {
+                generateVectorOperation(expr, vectorSlots, constantValues, envFunctions, shared, code);
+                int newSlot = code.newLocal(DOUBLE_VECTOR_DESCRIPTOR);
+                code.dup();
+                code.astore(newSlot);
+                shared.setSlot(expr, newSlot);
+            }
+            return;
+        }
+
+        generateVectorOperation(expr, vectorSlots, constantValues, envFunctions, shared, code);
+    }
+
+    private static void generateVectorOperation(Node.Expr expr, Map<String, Integer> vectorSlots, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared, CodeBuilder code) {
+        switch (expr) {
+            case Number(double value) -> broadcast(code, value);
+
+            case Variable(String name) -> {
+                Integer slot = vectorSlots.get(name);
+                if (slot != null)
+                    code.aload(slot);
+                else {
+                    Double d = constantValues.get(name);
+                    if (d == null)
+                        throw new RuntimeException(String.format("Unknown variable: %s", name));
+                    broadcast(code, d);
+                }
+            }
+
+            case Power(var left, var right) -> {
+                // supports() only admits x^2, and Math.pow(x, 2) is exactly x * x
+                generateVectorCode(left, vectorSlots, constantValues, envFunctions, shared, code);
+                code.invokestatic(VECTOR_MATH, "square", "(" + DOUBLE_VECTOR_DESCRIPTOR + ")" + DOUBLE_VECTOR_DESCRIPTOR);
+            }
+
+            case BinaryOp bop -> {
+                generateVectorCode(bop.left(), vectorSlots, constantValues, envFunctions, shared, code);
+                binary(code, switch (bop) {
+                    case Add a -> "ADD";
+                    case Subtract s -> "SUB";
+                    case Multiply m -> "MUL";
+                    case Divide d -> "DIV";
+                    case Power p -> throw new IllegalStateException();
+                }, bop.right(), vectorSlots, constantValues, envFunctions, shared);
+            }
+
+            case Negate(var e) -> {
+                generateVectorCode(e, vectorSlots, constantValues, envFunctions, shared, code);
+                unary(code, "NEG");
+            }
+
+            case AbsoluteValue(var e) -> {
+                generateVectorCode(e, vectorSlots, constantValues, envFunctions, shared, code);
+                unary(code, "ABS");
+            }
+
+            case FunctionCall(String functionName, List<Expr> arguments) -> {
+                var envf = envFunctions.get(functionName);
+                if (envf == null)
+                    throw new RuntimeException(String.format("Unknown environment function: %s", functionName));
+                if (!envf.acceptsParameters(arguments.size()))
+                    throw new RuntimeException(String.format("Invalid use of %s() with %d arguments", functionName, arguments.size()));
+
+                switch (envf) {
+                    case EnvFunction.Builtin b -> {
+                        generateVectorCode(arguments.get(0), vectorSlots, constantValues, envFunctions, shared, code);
+                        switch (b) {
+                            case Min, Max -> {
+                                for (var arg : arguments.subList(1, arguments.size()))
+                                    binary(code, b.name().toUpperCase(), arg, vectorSlots, constantValues, envFunctions, shared);
+                            }
+                            case Abs, Sqrt -> unary(code, b.name().toUpperCase());
+                            default -> throw new IllegalStateException("No vector kernel for " + functionName);
+                        }
+                    }
+                    case EnvFunction.UserDefined u -> throw new IllegalStateException(String.format("%s() was not inlined", functionName));
+                }
+            }
+        }
+    }
+
+    private static void species(CodeBuilder code) {
+        code.getstatic(DOUBLE_VECTOR, "SPECIES_PREFERRED", SPECIES_DESCRIPTOR);
+    }
+
+    private static void broadcast(CodeBuilder code, double value) {
+        species(code);
+        code.ldc(value);
+        code.invokestatic(DOUBLE_VECTOR, "broadcast", "(" + SPECIES_DESCRIPTOR + "D)" + DOUBLE_VECTOR_DESCRIPTOR);
+    }
+
+    private static void unary(CodeBuilder code, String operator) {
+        code.getstatic(VECTOR_OPERATORS, operator, "L" + VECTOR_OPERATORS + "$Unary;");
+        code.invokevirtual(DOUBLE_VECTOR, "lanewise", UNARY_DESCRIPTOR);
+    }
+
+    // expects the left operand already on the stack
+    private static void binary(CodeBuilder code, String operator, Node.Expr right, Map<String, Integer> vectorSlots, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Subexpressions shared) {
+        // the associative operators are declared with the narrower VectorOperators.Associative type
+        var fieldType = switch (operator) {
+            case "ADD", "MUL", "MIN", "MAX" -> "$Associative;";
+            default -> "$Binary;";
+        };
+        code.getstatic(VECTOR_OPERATORS, operator, "L" + VECTOR_OPERATORS + fieldType);
+        generateVectorCode(right, vectorSlots, constantValues, envFunctions, shared, code);
+        code.invokevirtual(DOUBLE_VECTOR, "lanewise", BINARY_DESCRIPTOR);
+    }
+}
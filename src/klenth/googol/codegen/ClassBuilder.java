@@ -0,0 +1,109 @@
+package klenth.googol.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class ClassBuilder {
+
+    public static final int
+            ACC_PUBLIC = 0x0001,
+            ACC_PRIVATE = 0x0002,
+            ACC_STATIC = 0x0008,
+            ACC_FINAL = 0x0010,
+            ACC_SUPER = 0x0020;
+
+    // Java 17 class files; generated code uses nothing newer
+    private static final int MAJOR_VERSION = 61;
+
+    private record Member(int access, int nameIndex, int descriptorIndex, CodeBuilder code) {}
+
+    private final ConstantPool pool = new ConstantPool();
+    private final String name;
+    private final int thisIndex, superIndex;
+    private final int[] interfaceIndices;
+    private final List<Member> fields = new ArrayList<>();
+    private final List<Member> methods = new ArrayList<>();
+
+    public ClassBuilder(String name, String superName, String... interfaces) {
+        this.name = name;
+        thisIndex = pool.classRef(name);
+        superIndex = pool.classRef(superName);
+        interfaceIndices = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; ++i)
+            interfaceIndices[i] = pool.classRef(interfaces[i]);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void field(int access, String name, String descriptor) {
+        fields.add(new Member(access, pool.utf8(name), pool.utf8(descriptor), null));
+    }
+
+    public CodeBuilder method(int access, String name, String descriptor) {
+        var code = new CodeBuilder(pool, this.name, (access & ACC_STATIC) != 0, descriptor);
+        methods.add(new Member(access, pool.utf8(name), pool.utf8(descriptor), code));
+        return code;
+    }
+
+    public void defaultConstructor(String superName) {
+        var code = method(ACC_PUBLIC, "<init>", "()V");
+        code.aload(0);
+        code.invokespecial(superName, "<init>", "()V");
+        code.returnVoid();
+    }
+
+    public byte[] toByteArray() {
+        try {
+            int codeNameIndex = pool.utf8("Code");
+            int stackMapTableNameIndex = pool.utf8("StackMapTable");
+
+            // the constant pool has to be complete before it is written, so serialize the body first
+            var body = new ByteArrayOutputStream(512);
+            var bodyOut = new DataOutputStream(body);
+            bodyOut.writeShort(ClassBuilder.ACC_PUBLIC | ClassBuilder.ACC_FINAL | ClassBuilder.ACC_SUPER);
+            bodyOut.writeShort(thisIndex);
+            bodyOut.writeShort(superIndex);
+            bodyOut.writeShort(interfaceIndices.length);
+            for (int index : interfaceIndices)
+                bodyOut.writeShort(index);
+
+            bodyOut.writeShort(fields.size());
+            for (var field : fields) {
+                bodyOut.writeShort(field.access());
+                bodyOut.writeShort(field.nameIndex());
+                bodyOut.writeShort(field.descriptorIndex());
+                bodyOut.writeShort(0);
+            }
+
+            bodyOut.writeShort(methods.size());
+            for (var method : methods) {
+                bodyOut.writeShort(method.access());
+                bodyOut.writeShort(method.nameIndex());
+                bodyOut.writeShort(method.descriptorIndex());
+                bodyOut.writeShort(1);
+                method.code().writeCodeAttribute(bodyOut, codeNameIndex, stackMapTableNameIndex);
+            }
+            bodyOut.writeShort(0); // class attributes
+            bodyOut.flush();
+
+            var bytes = new ByteArrayOutputStream(body.size() + 512);
+            var out = new DataOutputStream(bytes);
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            pool.write(out);
+            body.writeTo(out);
+            out.flush();
+
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
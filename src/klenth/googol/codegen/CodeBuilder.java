@@ -0,0 +1,585 @@
+package klenth.googol.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class CodeBuilder {
+
+    record Type(int tag, int classIndex) {
+        static final Type TOP = new Type(0, 0);
+        static final Type INT = new Type(1, 0);
+        static final Type FLOAT = new Type(2, 0);
+        static final Type DOUBLE = new Type(3, 0);
+        static final Type LONG = new Type(4, 0);
+        static final Type NULL = new Type(5, 0);
+
+        int size() {
+            return (this == DOUBLE || this == LONG) ? 2 : 1;
+        }
+    }
+
+    private record Frame(int offset, Type[] locals, List<Type> stack) {}
+
+    private final ConstantPool pool;
+    private final String returnDescriptor;
+    private byte[] code = new byte[256];
+    private int length = 0;
+
+    private Type[] locals;
+    private int maxLocals;
+    private List<Type> stack = new ArrayList<>();
+    private int stackSize = 0;
+    private int maxStack = 0;
+    private boolean reachable = true;
+
+    private final List<Frame> frames = new ArrayList<>();
+    private final List<Label> labels = new ArrayList<>();
+
+    CodeBuilder(ConstantPool pool, String ownerName, boolean isStatic, String descriptor) {
+        this.pool = pool;
+
+        var parameters = parameterDescriptors(descriptor);
+        returnDescriptor = descriptor.substring(descriptor.indexOf(')') + 1);
+
+        locals = new Type[8];
+        Arrays.fill(locals, Type.TOP);
+        int slot = 0;
+        if (!isStatic) {
+            setLocal(0, new Type(7, pool.classRef(ownerName)));
+            slot = 1;
+        }
+        for (var p : parameters) {
+            var type = typeOf(p);
+            setLocal(slot, type);
+            slot += type.size();
+        }
+        maxLocals = slot;
+    }
+
+    public int maxStack() {
+        return maxStack;
+    }
+
+    public int maxLocals() {
+        return maxLocals;
+    }
+
+    public int codeLength() {
+        return length;
+    }
+
+    public int newLocal(String descriptor) {
+        int slot = maxLocals;
+        maxLocals += typeOf(descriptor).size();
+        ensureLocals(maxLocals);
+        return slot;
+    }
+
+    // ---- local variables ----
+
+    public void aload(int slot) {
+        push(locals[slot]);
+        varInsn(0x19, 0x2a, slot);
+    }
+
+    public void iload(int slot) {
+        push(Type.INT);
+        varInsn(0x15, 0x1a, slot);
+    }
+
+    public void dload(int slot) {
+        push(Type.DOUBLE);
+        varInsn(0x18, 0x26, slot);
+    }
+
+    public void astore(int slot) {
+        setLocal(slot, pop());
+        varInsn(0x3a, 0x4b, slot);
+    }
+
+    public void istore(int slot) {
+        pop();
+        setLocal(slot, Type.INT);
+        varInsn(0x36, 0x3b, slot);
+    }
+
+    public void dstore(int slot) {
+        pop();
+        setLocal(slot, Type.DOUBLE);
+        varInsn(0x39, 0x47, slot);
+    }
+
+    public void iinc(int slot, int increment) {
+        if (slot > 0xff || increment < Byte.MIN_VALUE || increment > Byte.MAX_VALUE) {
+            u1(0xc4);
+            u1(0x84);
+            u2(slot);
+            u2(increment);
+        } else {
+            u1(0x84);
+            u1(slot);
+            u1(increment);
+        }
+    }
+
+    // ---- constants ----
+
+    public void ldc(double value) {
+        push(Type.DOUBLE);
+        if (Double.doubleToRawLongBits(value) == 0L)
+            u1(0x0e);
+        else if (value == 1.0)
+            u1(0x0f);
+        else {
+            u1(0x14);
+            u2(pool.doubleConstant(value));
+        }
+    }
+
+    public void iconst(int value) {
+        push(Type.INT);
+        if (value >= -1 && value <= 5)
+            u1(0x03 + value);
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            u1(0x10);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            u1(0x11);
+            u2(value);
+        } else {
+            u1(0x13);
+            u2(pool.integer(value));
+        }
+    }
+
+    public void aconstNull() {
+        push(Type.NULL);
+        u1(0x01);
+    }
+
+    // ---- arithmetic ----
+
+    public void dadd() { binary(0x63, Type.DOUBLE); }
+    public void dsub() { binary(0x67, Type.DOUBLE); }
+    public void dmul() { binary(0x6b, Type.DOUBLE); }
+    public void ddiv() { binary(0x6f, Type.DOUBLE); }
+    public void drem() { binary(0x73, Type.DOUBLE); }
+    public void dcmpl() { binary(0x97, Type.INT); }
+    public void dcmpg() { binary(0x98, Type.INT); }
+    public void iadd() { binary(0x60, Type.INT); }
+    public void isub() { binary(0x64, Type.INT); }
+    public void imul() { binary(0x68, Type.INT); }
+
+    public void dneg() { unary(0x77, Type.DOUBLE); }
+    public void d2i() { unary(0x8e, Type.INT); }
+    public void d2l() { unary(0x8f, Type.LONG); }
+    public void i2d() { unary(0x87, Type.DOUBLE); }
+    public void l2d() { unary(0x8a, Type.DOUBLE); }
+
+    // ---- stack manipulation ----
+
+    public void dup() {
+        var top = stack.get(stack.size() - 1);
+        push(top);
+        u1(0x59);
+    }
+
+    public void dup2() {
+        var top = stack.get(stack.size() - 1);
+        if (top.size() == 2)
+            push(top);
+        else {
+            var second = stack.get(stack.size() - 2);
+            push(second);
+            push(top);
+        }
+        u1(0x5c);
+    }
+
+    public void pop1() {
+        pop();
+        u1(0x57);
+    }
+
+    public void pop2() {
+        if (pop().size() == 1)
+            pop();
+        u1(0x58);
+    }
+
+    // ---- arrays ----
+
+    public void daload() {
+        pop();
+        pop();
+        push(Type.DOUBLE);
+        u1(0x31);
+    }
+
+    public void dastore() {
+        pop();
+        pop();
+        pop();
+        u1(0x52);
+    }
+
+    public void iaload() {
+        pop();
+        pop();
+        push(Type.INT);
+        u1(0x2e);
+    }
+
+    public void aaload(String elementDescriptor) {
+        pop();
+        pop();
+        push(typeOf(elementDescriptor));
+        u1(0x32);
+    }
+
+    public void arraylength() {
+        unary(0xbe, Type.INT);
+    }
+
+    // ---- fields and methods ----
+
+    public void getstatic(String owner, String name, String descriptor) {
+        push(typeOf(descriptor));
+        u1(0xb2);
+        u2(pool.fieldRef(owner, name, descriptor));
+    }
+
+    public void getfield(String owner, String name, String descriptor) {
+        pop();
+        push(typeOf(descriptor));
+        u1(0xb4);
+        u2(pool.fieldRef(owner, name, descriptor));
+    }
+
+    public void putfield(String owner, String name, String descriptor) {
+        pop();
+        pop();
+        u1(0xb5);
+        u2(pool.fieldRef(owner, name, descriptor));
+    }
+
+    public void invokestatic(String owner, String name, String descriptor) {
+        invoke(0xb8, pool.methodRef(owner, name, descriptor), descriptor, false);
+    }
+
+    public void invokespecial(String owner, String name, String descriptor) {
+        invoke(0xb7, pool.methodRef(owner, name, descriptor), descriptor, true);
+    }
+
+    public void invokevirtual(String owner, String name, String descriptor) {
+        invoke(0xb6, pool.methodRef(owner, name, descriptor), descriptor, true);
+    }
+
+    public void invokeinterface(String owner, String name, String descriptor) {
+        int count = 1;
+        for (var p : parameterDescriptors(descriptor))
+            count += typeOf(p).size();
+        invoke(0xb9, pool.interfaceMethodRef(owner, name, descriptor), descriptor, true);
+        u1(count);
+        u1(0);
+    }
+
+    public void checkcast(String internalName) {
+        pop();
+        int index = pool.classRef(internalName);
+        push(new Type(7, index));
+        u1(0xc0);
+        u2(index);
+    }
+
+    // ---- control flow ----
+
+    public void ifeq(Label target) { branch(0x99, 1, target); }
+    public void ifne(Label target) { branch(0x9a, 1, target); }
+    public void iflt(Label target) { branch(0x9b, 1, target); }
+    public void ifge(Label target) { branch(0x9c, 1, target); }
+    public void ifgt(Label target) { branch(0x9d, 1, target); }
+    public void ifle(Label target) { branch(0x9e, 1, target); }
+    public void ifIcmpeq(Label target) { branch(0x9f, 2, target); }
+    public void ifIcmpne(Label target) { branch(0xa0, 2, target); }
+    public void ifIcmplt(Label target) { branch(0xa1, 2, target); }
+    public void ifIcmpge(Label target) { branch(0xa2, 2, target); }
+    public void ifIcmpgt(Label target) { branch(0xa3, 2, target); }
+    public void ifIcmple(Label target) { branch(0xa4, 2, target); }
+
+    public void goTo(Label target) {
+        branch(0xa7, 0, target);
+        reachable = false;
+    }
+
+    public void bind(Label label) {
+        if (label.isBound())
+            throw new IllegalStateException("Label bound twice");
+
+        if (reachable)
+            mergeInto(label);
+        else if (label.locals == null)
+            throw new IllegalStateException("Unreachable code at label");
+
+        reachable = true;
+        locals = label.locals.clone();
+        stack = new ArrayList<>(label.stack);
+        stackSize = label.stack.stream().mapToInt(Type::size).sum();
+
+        label.offset = length;
+        for (int at : label.fixups)
+            patchBranch(at, label.offset);
+        label.fixups.clear();
+        labels.add(label);
+
+        if (!frames.isEmpty() && frames.get(frames.size() - 1).offset() == length)
+            frames.remove(frames.size() - 1);
+        frames.add(new Frame(length, label.locals.clone(), List.copyOf(label.stack)));
+    }
+
+    // ---- returns ----
+
+    public void dreturn() { terminal(0xaf); }
+    public void ireturn() { terminal(0xac); }
+    public void areturn() { terminal(0xb0); }
+    public void returnVoid() { terminal(0xb1); }
+
+    // ---- attribute output ----
+
+    void writeCodeAttribute(DataOutputStream out, int codeNameIndex, int stackMapTableNameIndex) throws IOException {
+        for (var label : labels)
+            if (!label.fixups.isEmpty())
+                throw new IllegalStateException("Unbound label");
+        if (reachable)
+            throw new IllegalStateException("Code falls off the end of the method");
+
+        byte[] stackMapTable = frames.isEmpty() ? null : stackMapTable();
+
+        out.writeShort(codeNameIndex);
+        int attributeLength = 2 + 2 + 4 + length + 2 + 2;
+        if (stackMapTable != null)
+            attributeLength += 6 + stackMapTable.length;
+        out.writeInt(attributeLength);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(length);
+        out.write(code, 0, length);
+        out.writeShort(0); // exception table
+        if (stackMapTable == null)
+            out.writeShort(0);
+        else {
+            out.writeShort(1);
+            out.writeShort(stackMapTableNameIndex);
+            out.writeInt(stackMapTable.length);
+            out.write(stackMapTable);
+        }
+    }
+
+    private byte[] stackMapTable() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        out.writeShort(frames.size());
+
+        int previousOffset = -1;
+        for (var frame : frames) {
+            // always a full_frame; generated methods are small enough that compression isn't worth it
+            out.writeByte(255);
+            out.writeShort(frame.offset() - previousOffset - 1);
+            previousOffset = frame.offset();
+
+            var frameLocals = frame.locals();
+            int end = frameLocals.length;
+            while (end > 0 && frameLocals[end - 1] == Type.TOP)
+                --end;
+
+            int count = 0;
+            for (int i = 0; i < end; i += frameLocals[i].size())
+                ++count;
+            out.writeShort(count);
+            for (int i = 0; i < end; i += frameLocals[i].size())
+                writeType(out, frameLocals[i]);
+
+            out.writeShort(frame.stack().size());
+            for (var t : frame.stack())
+                writeType(out, t);
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeType(DataOutputStream out, Type type) throws IOException {
+        out.writeByte(type.tag());
+        if (type.tag() == 7)
+            out.writeShort(type.classIndex());
+    }
+
+    // ---- internals ----
+
+    private void binary(int opcode, Type result) {
+        pop();
+        pop();
+        push(result);
+        u1(opcode);
+    }
+
+    private void unary(int opcode, Type result) {
+        pop();
+        push(result);
+        u1(opcode);
+    }
+
+    private void terminal(int opcode) {
+        if (!returnDescriptor.equals("V"))
+            pop();
+        u1(opcode);
+        reachable = false;
+    }
+
+    private void invoke(int opcode, int methodIndex, String descriptor, boolean hasReceiver) {
+        var parameters = parameterDescriptors(descriptor);
+        for (int i = 0; i < parameters.size(); ++i)
+            pop();
+        if (hasReceiver)
+            pop();
+
+        var returnType = descriptor.substring(descriptor.indexOf(')') + 1);
+        if (!returnType.equals("V"))
+            push(typeOf(returnType));
+
+        u1(opcode);
+        u2(methodIndex);
+    }
+
+    private void branch(int opcode, int operands, Label target) {
+        for (int i = 0; i < operands; ++i)
+            pop();
+
+        int at = length;
+        u1(opcode);
+        u2(0);
+        if (target.isBound()) {
+            patchBranch(at, target.offset);
+        } else {
+            mergeInto(target);
+            target.fixups.add(at);
+            if (!labels.contains(target))
+                labels.add(target);
+        }
+    }
+
+    private void mergeInto(Label label) {
+        if (label.locals == null) {
+            label.locals = locals.clone();
+            label.stack = List.copyOf(stack);
+            return;
+        }
+
+        if (label.stack.size() != stack.size())
+            throw new IllegalStateException("Inconsistent stack heights at label");
+
+        int n = Math.max(label.locals.length, locals.length);
+        var merged = new Type[n];
+        for (int i = 0; i < n; ++i) {
+            var a = (i < label.locals.length) ? label.locals[i] : Type.TOP;
+            var b = (i < locals.length) ? locals[i] : Type.TOP;
+            merged[i] = a.equals(b) ? a : Type.TOP;
+        }
+        label.locals = merged;
+    }
+
+    private void patchBranch(int at, int targetOffset) {
+        int delta = targetOffset - at;
+        if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE)
+            throw new IllegalStateException("Branch offset out of range; method too large");
+        code[at + 1] = (byte)(delta >> 8);
+        code[at + 2] = (byte)delta;
+    }
+
+    private void varInsn(int opcode, int shortOpcodeBase, int slot) {
+        if (slot <= 3)
+            u1(shortOpcodeBase + slot);
+        else if (slot <= 0xff) {
+            u1(opcode);
+            u1(slot);
+        } else {
+            u1(0xc4);
+            u1(opcode);
+            u2(slot);
+        }
+    }
+
+    private void push(Type type) {
+        stack.add(type);
+        stackSize += type.size();
+        maxStack = Math.max(maxStack, stackSize);
+    }
+
+    private Type pop() {
+        if (stack.isEmpty())
+            throw new IllegalStateException("Operand stack underflow");
+        var type = stack.remove(stack.size() - 1);
+        stackSize -= type.size();
+        return type;
+    }
+
+    private void setLocal(int slot, Type type) {
+        ensureLocals(slot + type.size());
+        if (slot > 0 && locals[slot - 1].size() == 2)
+            locals[slot - 1] = Type.TOP;
+        locals[slot] = type;
+        if (type.size() == 2)
+            locals[slot + 1] = Type.TOP;
+        maxLocals = Math.max(maxLocals, slot + type.size());
+    }
+
+    private void ensureLocals(int count) {
+        if (count > locals.length) {
+            int oldLength = locals.length;
+            locals = Arrays.copyOf(locals, Math.max(count, 2 * oldLength));
+            Arrays.fill(locals, oldLength, locals.length, Type.TOP);
+        }
+    }
+
+    private Type typeOf(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'D' -> Type.DOUBLE;
+            case 'J' -> Type.LONG;
+            case 'F' -> Type.FLOAT;
+            case 'I', 'Z', 'B', 'C', 'S' -> Type.INT;
+            case 'L' -> new Type(7, pool.classRef(descriptor.substring(1, descriptor.length() - 1)));
+            case '[' -> new Type(7, pool.classRef(descriptor));
+            default -> throw new IllegalArgumentException("Invalid type descriptor: " + descriptor);
+        };
+    }
+
+    static List<String> parameterDescriptors(String methodDescriptor) {
+        var parameters = new ArrayList<String>();
+        int i = 1;
+        while (methodDescriptor.charAt(i) != ')') {
+            int start = i;
+            while (methodDescriptor.charAt(i) == '[')
+                ++i;
+            if (methodDescriptor.charAt(i) == 'L')
+                i = methodDescriptor.indexOf(';', i);
+            ++i;
+            parameters.add(methodDescriptor.substring(start, i));
+        }
+        return parameters;
+    }
+
+    private void u1(int b) {
+        if (length == code.length)
+            code = Arrays.copyOf(code, 2 * code.length);
+        code[length++] = (byte)b;
+    }
+
+    private void u2(int s) {
+        u1(s >> 8);
+        u1(s);
+    }
+}
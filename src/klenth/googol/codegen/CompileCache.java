@@ -0,0 +1,156 @@
+package klenth.googol.codegen;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Compiled functions by the structure of their expression, so that equations that compile to the same code share one
+// instance (and one hidden class). Instances are only held weakly: an entry lasts as long as some graph still uses
+// its function, and once none does the class can be unloaded as FunctionClasses promises, the cache notwithstanding.
+// The capacity bounds the entries on top of that, least recently used first.
+public final class CompileCache {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    // remembers its key, so that the entry can be removed once the instance has been collected
+    private static final class Entry extends WeakReference<Object> {
+        final CompileKey key;
+
+        Entry(CompileKey key, Object function, ReferenceQueue<Object> queue) {
+            super(function, queue);
+            this.key = key;
+        }
+    }
+
+    private int capacity;
+    private long hits = 0, misses = 0, evictions = 0, collected = 0;
+
+    private final ReferenceQueue<Object> collectedFunctions = new ReferenceQueue<>();
+    private final LinkedHashMap<CompileKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CompileKey, Entry> eldest) {
+            if (size() > capacity) {
+                ++evictions;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public CompileCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CompileCache(int capacity) {
+        setCapacity(capacity);
+    }
+
+    public <F> F get(CompileKey key, Class<F> functionInterface, Supplier<? extends F> compiler) {
+        synchronized (this) {
+            var cached = lookUp(key);
+            if (cached != null) {
+                ++hits;
+                return functionInterface.cast(cached);
+            }
+            ++misses;
+        }
+
+        // compile outside the lock; if two threads race on the same key, the first one in wins
+        F compiled = compiler.get();
+        synchronized (this) {
+            var existing = lookUp(key);
+            if (existing != null)
+                return functionInterface.cast(existing);
+            entries.put(key, new Entry(key, compiled, collectedFunctions));
+            return compiled;
+        }
+    }
+
+    // A hit if present; a miss is left to be counted by the get() that eventually compiles it
+    public synchronized <F> F getIfPresent(CompileKey key, Class<F> functionInterface) {
+        var cached = lookUp(key);
+        if (cached == null)
+            return null;
+        ++hits;
+        return functionInterface.cast(cached);
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative cache capacity: " + capacity);
+        this.capacity = capacity;
+
+        var it = entries.entrySet().iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            it.next();
+            it.remove();
+            ++evictions;
+        }
+    }
+
+    public synchronized int size() {
+        expunge();
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // Entries dropped because no graph used their function any more
+    public synchronized long getCollected() {
+        expunge();
+        return collected;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0 : (double)hits / lookups;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized void resetStatistics() {
+        hits = misses = evictions = collected = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        expunge();
+        return String.format("%d/%d entries, %d hits, %d misses (%.1f%% hit rate), %d evictions, %d collected",
+                entries.size(), capacity, hits, misses, 100 * getHitRate(), evictions, collected);
+    }
+
+    // The live instance for key, or null; with the lock held
+    private Object lookUp(CompileKey key) {
+        expunge();
+        var entry = entries.get(key);
+        return (entry != null) ? entry.get() : null;
+    }
+
+    // Removes the entries whose instances have been collected; with the lock held
+    private void expunge() {
+        for (var reference = collectedFunctions.poll(); reference != null; reference = collectedFunctions.poll()) {
+            var entry = (Entry)reference;
+            // the key may have been compiled again since, into a new entry
+            if (entries.remove(entry.key, entry))
+                ++collected;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package klenth.googol.codegen;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.Parameters;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A structural key for a compiled function. The expression is canonicalized: parameters are replaced by their
+ * position, constants by their values, adjustable parameters by their table (by identity) and index, function names by
+ * the functions they are bound to, and the operands of {@code +} and {@code *} are put in a fixed order. Two
+ * expressions that compile to the same code get equal keys.
+ */
+public final class CompileKey {
+
+    private enum Kind {
+        Number, Parameter, Adjustable, Unbound, Add, Subtract, Multiply, Divide, Power, Negate, AbsoluteValue, Call
+    }
+
+    private static final class Canonical implements Comparable<Canonical> {
+        private static final Canonical[] NO_CHILDREN = new Canonical[0];
+
+        final Kind kind;
+        final long bits;
+        final Object symbol;
+        final Canonical[] children;
+        final int hash;
+
+        Canonical(Kind kind, long bits, Object symbol, Canonical... children) {
+            this.kind = kind;
+            this.bits = bits;
+            this.symbol = symbol;
+            this.children = children;
+
+            // computed once here; children already carry their own hashes
+            int h = kind.ordinal();
+            h = 31 * h + Long.hashCode(bits);
+            h = 31 * h + Objects.hashCode(symbol);
+            for (var child : children)
+                h = 31 * h + child.hash;
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            return obj instanceof Canonical c
+                    && hash == c.hash
+                    && kind == c.kind
+                    && bits == c.bits
+                    && Objects.equals(symbol, c.symbol)
+                    && Arrays.equals(children, c.children);
+        }
+
+        @Override
+        public int compareTo(Canonical o) {
+            if (this == o)
+                return 0;
+            int c = Integer.compare(hash, o.hash);
+            if (c == 0)
+                c = kind.compareTo(o.kind);
+            if (c == 0)
+                c = Long.compare(bits, o.bits);
+            if (c == 0)
+                c = String.valueOf(symbol).compareTo(String.valueOf(o.symbol));
+            if (c == 0)
+                c = Integer.compare(children.length, o.children.length);
+            for (int i = 0; c == 0 && i < children.length; ++i)
+                c = children[i].compareTo(o.children[i]);
+            return c;
+        }
+    }
+
+    private final Class<?> functionInterface;
+    private final Canonical expr;
+    private final int hash;
+
+    private CompileKey(Class<?> functionInterface, Canonical expr) {
+        this.functionInterface = functionInterface;
+        this.expr = expr;
+        this.hash = 31 * functionInterface.hashCode() + expr.hash;
+    }
+
+    public static CompileKey of(Class<?> functionInterface, Node.Expr expr, List<String> variableNames, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        return of(functionInterface, expr, variableNames, constantValues, envFunctions, Parameters.NONE);
+    }
+
+    public static CompileKey of(Class<?> functionInterface, Node.Expr expr, List<String> variableNames, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        return new CompileKey(functionInterface, canonicalize(expr, variableNames, constantValues, envFunctions, parameters));
+    }
+
+    private static Canonical canonicalize(Node.Expr expr, List<String> variableNames, Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        return switch (expr) {
+            case Node.Number(double value) -> number(value);
+
+            case Node.Variable(String name) -> {
+                int index = variableNames.indexOf(name);
+                if (index >= 0)
+                    yield new Canonical(Kind.Parameter, index, null, Canonical.NO_CHILDREN);
+                Double value = constantValues.get(name);
+                if (value != null)
+                    yield number(value);
+                int parameter = parameters.indexOf(name);
+                yield (parameter >= 0)
+                        ? new Canonical(Kind.Adjustable, parameter, parameters, Canonical.NO_CHILDREN)
+                        : new Canonical(Kind.Unbound, 0, name, Canonical.NO_CHILDREN);
+            }
+
+            case Node.BinaryOp bop -> {
+                var left = canonicalize(bop.left(), variableNames, constantValues, envFunctions, parameters);
+                var right = canonicalize(bop.right(), variableNames, constantValues, envFunctions, parameters);
+                yield switch (bop) {
+                    // IEEE addition and multiplication are commutative (but not associative), so only swap operands
+                    case Node.Add a -> commutative(Kind.Add, left, right);
+                    case Node.Multiply m -> commutative(Kind.Multiply, left, right);
+                    case Node.Subtract s -> new Canonical(Kind.Subtract, 0, null, left, right);
+                    case Node.Divide d -> new Canonical(Kind.Divide, 0, null, left, right);
+                    case Node.Power p -> new Canonical(Kind.Power, 0, null, left, right);
+                };
+            }
+
+            case Node.Negate(var e) -> new Canonical(Kind.Negate, 0, null, canonicalize(e, variableNames, constantValues, envFunctions, parameters));
+
+            case Node.AbsoluteValue(var e) -> new Canonical(Kind.AbsoluteValue, 0, null, canonicalize(e, variableNames, constantValues, envFunctions, parameters));
+
+            case Node.FunctionCall(String functionName, List<Node.Expr> arguments) -> {
+                var children = new Canonical[arguments.size()];
+                for (int i = 0; i < children.length; ++i)
+                    children[i] = canonicalize(arguments.get(i), variableNames, constantValues, envFunctions, parameters);
+                Object binding = envFunctions.get(functionName);
+                yield new Canonical(Kind.Call, 0, (binding != null) ? binding : functionName, children);
+            }
+        };
+    }
+
+    private static Canonical number(double value) {
+        return new Canonical(Kind.Number, Double.doubleToLongBits(value), null, Canonical.NO_CHILDREN);
+    }
+
+    private static Canonical commutative(Kind kind, Canonical left, Canonical right) {
+        return (left.compareTo(right) <= 0)
+                ? new Canonical(kind, 0, null, left, right)
+                : new Canonical(kind, 0, null, right, left);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CompileKey k
+                && hash == k.hash
+                && functionInterface == k.functionInterface
+                && expr.equals(k.expr);
+    }
+}
@@ -0,0 +1,74 @@
+package klenth.googol.codegen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class CompileStatistics {
+
+    public enum Phase {
+        Parse, Generate, Define
+    }
+
+    private final LongAdder[] counts = new LongAdder[Phase.values().length];
+    private final LongAdder[] totalNanos = new LongAdder[Phase.values().length];
+    private final AtomicLong[] maxNanos = new AtomicLong[Phase.values().length];
+    private final LongAdder bytecodeBytes = new LongAdder();
+
+    public CompileStatistics() {
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = new LongAdder();
+            totalNanos[i] = new LongAdder();
+            maxNanos[i] = new AtomicLong();
+        }
+    }
+
+    public void record(Phase phase, long nanos) {
+        counts[phase.ordinal()].increment();
+        totalNanos[phase.ordinal()].add(nanos);
+        maxNanos[phase.ordinal()].accumulateAndGet(nanos, Math::max);
+    }
+
+    public void recordClassSize(int bytes) {
+        bytecodeBytes.add(bytes);
+    }
+
+    public long getCount(Phase phase) {
+        return counts[phase.ordinal()].sum();
+    }
+
+    public long getTotalNanos(Phase phase) {
+        return totalNanos[phase.ordinal()].sum();
+    }
+
+    public long getMaxNanos(Phase phase) {
+        return maxNanos[phase.ordinal()].get();
+    }
+
+    public double getMeanMicros(Phase phase) {
+        long count = getCount(phase);
+        return (count == 0) ? 0 : getTotalNanos(phase) / 1000.0 / count;
+    }
+
+    public long getBytecodeBytes() {
+        return bytecodeBytes.sum();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i].reset();
+            totalNanos[i].reset();
+            maxNanos[i].set(0);
+        }
+        bytecodeBytes.reset();
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        for (var phase : Phase.values())
+            sb.append(String.format("%-9s n=%-8d mean=%9.2fus max=%9.2fus\n",
+                    phase, getCount(phase), getMeanMicros(phase), getMaxNanos(phase) / 1000.0));
+        sb.append(String.format("Bytecode  %d bytes total", getBytecodeBytes()));
+        return sb.toString();
+    }
+}
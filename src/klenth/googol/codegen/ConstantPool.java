@@ -0,0 +1,108 @@
+package klenth.googol.codegen;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class ConstantPool {
+
+    private static final int
+            TAG_UTF8 = 1,
+            TAG_INTEGER = 3,
+            TAG_DOUBLE = 6,
+            TAG_CLASS = 7,
+            TAG_STRING = 8,
+            TAG_FIELDREF = 9,
+            TAG_METHODREF = 10,
+            TAG_INTERFACE_METHODREF = 11,
+            TAG_NAME_AND_TYPE = 12;
+
+    private record Key(int tag, Object value) {}
+    private record Ref(int first, int second) {}
+
+    private final Map<Key, Integer> indices = new HashMap<>();
+    private final List<Key> entries = new ArrayList<>();
+    private int nextIndex = 1;
+
+    int utf8(String s) {
+        return add(TAG_UTF8, s);
+    }
+
+    int integer(int i) {
+        return add(TAG_INTEGER, i);
+    }
+
+    int doubleConstant(double d) {
+        // keyed by raw bits so that -0.0 and NaN payloads get their own entries
+        return add(TAG_DOUBLE, Double.doubleToRawLongBits(d));
+    }
+
+    int classRef(String internalName) {
+        return add(TAG_CLASS, utf8(internalName));
+    }
+
+    int string(String s) {
+        return add(TAG_STRING, utf8(s));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return add(TAG_FIELDREF, new Ref(classRef(owner), nameAndType(name, descriptor)));
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return add(TAG_METHODREF, new Ref(classRef(owner), nameAndType(name, descriptor)));
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return add(TAG_INTERFACE_METHODREF, new Ref(classRef(owner), nameAndType(name, descriptor)));
+    }
+
+    int nameAndType(String name, String descriptor) {
+        return add(TAG_NAME_AND_TYPE, new Ref(utf8(name), utf8(descriptor)));
+    }
+
+    int size() {
+        return nextIndex;
+    }
+
+    private int add(int tag, Object value) {
+        var key = new Key(tag, value);
+        var index = indices.get(key);
+        if (index != null)
+            return index;
+
+        index = nextIndex;
+        // long and double constants take up two slots in the pool
+        nextIndex += (tag == TAG_DOUBLE) ? 2 : 1;
+        if (nextIndex > 0xffff)
+            throw new IllegalStateException("Constant pool overflow");
+        indices.put(key, index);
+        entries.add(key);
+        return index;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeShort(nextIndex);
+        for (var entry : entries) {
+            out.writeByte(entry.tag());
+            switch (entry.value()) {
+                case String s -> out.writeUTF(s);
+                case Integer i -> {
+                    if (entry.tag() == TAG_INTEGER)
+                        out.writeInt(i);
+                    else
+                        out.writeShort(i);
+                }
+                case Long bits -> out.writeLong(bits);
+                case Ref(int first, int second) -> {
+                    out.writeShort(first);
+                    out.writeShort(second);
+                }
+                default -> throw new IllegalStateException("Unexpected constant: " + entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package klenth.googol.codegen;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class FunctionClasses {
+
+    public record Statistics(
+            long definedClasses,
+            long liveClasses,
+            long jvmLoadedClasses,
+            long jvmUnloadedClasses,
+            long metaspaceUsedBytes,
+            long metaspaceCommittedBytes
+    ) {
+        @Override
+        public String toString() {
+            return String.format("compiled: %d defined, %d live; JVM: %d loaded, %d unloaded; metaspace: %.1f MiB used, %.1f MiB committed",
+                    definedClasses, liveClasses, jvmLoadedClasses, jvmUnloadedClasses,
+                    metaspaceUsedBytes / 1048576.0, metaspaceCommittedBytes / 1048576.0);
+        }
+    }
+
+    // generated classes must be named into this package, since that's where the defining lookup lives
+    public static final String PACKAGE = FunctionClasses.class.getPackageName().replace('.', '/');
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final Cleaner cleaner = Cleaner.create();
+    private static final LongAdder defined = new LongAdder();
+    private static final LongAdder unloaded = new LongAdder();
+
+    private FunctionClasses() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Defines a hidden class from the given bytecode and instantiates it through its no-argument constructor. The class
+     * is not strongly tied to any class loader, so it is unloaded once the returned instance is unreachable. The
+     * compile cache only holds instances weakly, so caching one doesn't keep its class loaded (see {@link CompileCache}).
+     */
+    public static <F> F define(byte[] bytecode, Class<F> functionInterface) {
+        return define(bytecode, functionInterface, null);
+    }
+
+    /**
+     * As {@link #define(byte[], Class)}, but if parameters is not null the class is instantiated through a constructor
+     * taking the {@code double[]} its code reads adjustable parameters from.
+     */
+    public static <F> F define(byte[] bytecode, Class<F> functionInterface, double[] parameters) {
+        try {
+            var hiddenLookup = lookup.defineHiddenClass(bytecode, true);
+            var clazz = hiddenLookup.lookupClass();
+            var constructor = (parameters == null)
+                    ? hiddenLookup.findConstructor(clazz, MethodType.methodType(void.class))
+                    : hiddenLookup.findConstructor(clazz, MethodType.methodType(void.class, double[].class));
+
+            defined.increment();
+            // the Class object only becomes phantom reachable once the class itself has been unloaded
+            cleaner.register(clazz, unloaded::increment);
+
+            return functionInterface.cast((parameters == null) ? constructor.invoke() : constructor.invoke(parameters));
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    public static Statistics getStatistics() {
+        var classLoading = ManagementFactory.getClassLoadingMXBean();
+        long metaspaceUsed = 0, metaspaceCommitted = 0;
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.NON_HEAP && pool.getName().equals("Metaspace")) {
+                metaspaceUsed += pool.getUsage().getUsed();
+                metaspaceCommitted += pool.getUsage().getCommitted();
+            }
+        }
+
+        long definedCount = defined.sum();
+        return new Statistics(
+                definedCount,
+                definedCount - unloaded.sum(),
+                classLoading.getLoadedClassCount(),
+                classLoading.getUnloadedClassCount(),
+                metaspaceUsed,
+                metaspaceCommitted
+        );
+    }
+}
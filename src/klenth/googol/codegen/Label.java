@@ -0,0 +1,18 @@
+package klenth.googol.codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Label {
+
+    int offset = -1;
+    final List<Integer> fixups = new ArrayList<>();
+
+    // the frame state recorded at the first jump to this label
+    CodeBuilder.Type[] locals = null;
+    List<CodeBuilder.Type> stack = null;
+
+    boolean isBound() {
+        return offset >= 0;
+    }
+}
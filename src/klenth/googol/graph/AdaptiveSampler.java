@@ -0,0 +1,314 @@
+package klenth.googol.graph;
+
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+// Traces y = f(x) as a polyline in screen coordinates, sampling more densely where the curve bends and less where it's
+// straight. f is first sampled every INITIAL_SPACING pixels; then, a batch at a time, every interval whose samples turn
+// by more than MAX_ANGLE or stray more than MAX_ERROR pixels from the chord is halved, down to MIN_WIDTH pixels.
+// Intervals with a value on one side and NaN or ±∞ on the other are halved the same way, which finds the edge of the
+// domain by bisection.
+//
+// An interval left spanning more than JUMP_PIXELS vertically is then bisected toward its steepest half. A continuous
+// function's jump shrinks as the interval does; one across an asymptote or a step doesn't, and the curve is broken
+// there rather than drawn across it.
+//
+// Evaluations, bisections included, stop at the budget; whatever is left unrefined is drawn as sampled. A sampler keeps
+// its buffers from one trace to the next, so reusing one doesn't allocate once they have grown; it is not thread-safe.
+public final class AdaptiveSampler {
+
+    public static final int INITIAL_SPACING = 4;
+    public static final double MAX_ANGLE = Math.toRadians(8);
+    public static final double MAX_ERROR = 0.25;
+    public static final double MIN_WIDTH = 1.0 / 64;
+    public static final double JUMP_PIXELS = 2;
+    public static final int DEFAULT_BUDGET = 16384;
+
+    // the share of the budget held back for bisecting jumps
+    private static final int BISECTION_RESERVE_DIVISOR = 8;
+    private static final int MAX_BISECTIONS = 40;
+    // a jump that still has more than this fraction of itself after halving isn't shrinking like a continuous one
+    private static final double JUMP_RATIO = 0.75;
+    // how far off the screen a point may be drawn; farther ones are pulled in to it, keeping coordinates sane for Java2D
+    private static final double DRAW_LIMIT = 1e6;
+    private static final double TAN_MAX_ANGLE = Math.tan(MAX_ANGLE);
+
+    // samples in order of x; world coordinates
+    private double[] xs = new double[0], ys = new double[0];
+    private double[] nextXs = new double[0], nextYs = new double[0];
+    private double[] midXs = new double[0], midYs = new double[0];
+    private double[] scores = new double[0], sortedScores = new double[0];
+    private boolean[] refine = new boolean[0];
+    private int count;
+
+    // discontinuities: between samples breakIndex and breakIndex + 1, the curve runs to (leftX, leftY) and resumes from
+    // (rightX, rightY)
+    private int[] breakIndex = new int[0];
+    private double[] leftXs = new double[0], leftYs = new double[0], rightXs = new double[0], rightYs = new double[0];
+    private int breakCount;
+
+    private XFunction function;
+    private double xMin, yMax, xScale, yScale;
+    private int height;
+    private long evaluations;
+    private long budget;
+
+    // Screen pixel (i, j) corresponds to the same point as in ViewWindow.screenToMath. path is reset first.
+    // Returns the number of evaluations.
+    public long trace(XFunction function, double xMin, double xMax, double yMin, double yMax, int width, int height, long budget, Path2D path) {
+        this.function = function;
+        this.xMin = xMin;
+        this.yMax = yMax;
+        this.xScale = (xMax - xMin) / width;
+        this.yScale = (yMax - yMin) / height;
+        this.height = height;
+        this.budget = budget;
+        evaluations = 0;
+        breakCount = 0;
+        path.reset();
+        if (width <= 0 || height <= 0)
+            return 0;
+
+        count = (int)Math.max(2, Math.min(width / INITIAL_SPACING + 1, budget));
+        ensureCapacity(count);
+        for (int i = 0; i < count; ++i)
+            xs[i] = xMin + (xMax - xMin) * i / (count - 1);
+        function.evaluate(xs, ys, 0, count);
+        evaluations += count;
+
+        refine(budget - budget / BISECTION_RESERVE_DIVISOR);
+        findBreaks();
+        draw(path);
+        return evaluations;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public int getBreakCount() {
+        return breakCount;
+    }
+
+    private void refine(long refineBudget) {
+        while (evaluations < refineBudget) {
+            int flagged = flagIntervals();
+            if (flagged == 0)
+                return;
+
+            // with too little budget for all of them, halve the worst first
+            long remaining = refineBudget - evaluations;
+            double cutoff = Double.NEGATIVE_INFINITY;
+            if (flagged > remaining) {
+                System.arraycopy(scores, 0, sortedScores, 0, count - 1);
+                Arrays.sort(sortedScores, 0, count - 1);
+                cutoff = sortedScores[(int)(count - 1 - remaining)];
+            }
+
+            int midCount = 0;
+            for (int i = 0; i < count - 1; ++i) {
+                if (refine[i] && scores[i] >= cutoff && midCount < remaining)
+                    midXs[midCount++] = (xs[i] + xs[i + 1]) / 2;
+                else
+                    refine[i] = false;
+            }
+            function.evaluate(midXs, midYs, 0, midCount);
+            evaluations += midCount;
+
+            int n = 0, m = 0;
+            for (int i = 0; i < count; ++i) {
+                nextXs[n] = xs[i];
+                nextYs[n++] = ys[i];
+                if (i < count - 1 && refine[i]) {
+                    nextXs[n] = midXs[m];
+                    nextYs[n++] = midYs[m++];
+                }
+            }
+            swap();
+            count = n;
+            ensureCapacity(count);
+        }
+    }
+
+    // Sets refine[i] (and scores[i], its error in pixels, which orders them) for each interval that should be halved; returns how many are
+    private int flagIntervals() {
+        Arrays.fill(refine, 0, count - 1, false);
+        Arrays.fill(scores, 0, count - 1, Double.NEGATIVE_INFINITY);
+        int flagged = 0;
+
+        for (int i = 0; i < count - 1; ++i) {
+            double width = (xs[i + 1] - xs[i]) / xScale;
+            if (width <= MIN_WIDTH)
+                continue;
+            boolean leftFinite = Double.isFinite(ys[i]), rightFinite = Double.isFinite(ys[i + 1]);
+            if (leftFinite != rightFinite) {
+                flagged += flag(i, width);
+                continue;
+            }
+            if (!leftFinite || i == 0)
+                continue;
+
+            // the turn at sample i, between intervals i - 1 and i
+            if (!Double.isFinite(ys[i - 1]))
+                continue;
+            double ax = screenX(xs[i - 1]), ay = screenY(ys[i - 1]);
+            double bx = screenX(xs[i]), by = screenY(ys[i]);
+            double cx = screenX(xs[i + 1]), cy = screenY(ys[i + 1]);
+            if (ay < 0 && by < 0 && cy < 0 || ay > height && by > height && cy > height)
+                continue;
+
+            // the angle between u and v is over MAX_ANGLE when cross / dot is over its tangent
+            double ux = bx - ax, uy = by - ay, vx = cx - bx, vy = cy - by;
+            double cross = ux * vy - uy * vx, dot = ux * vx + uy * vy;
+            double chordLength = Math.sqrt((cx - ax) * (cx - ax) + (cy - ay) * (cy - ay));
+            double error = Math.abs(cross) / chordLength;
+            boolean visibleTurn = (dot < 0 || Math.abs(cross) > TAN_MAX_ANGLE * dot)
+                    && Math.max(ux * ux + uy * uy, vx * vx + vy * vy) > 1;
+            if (error > MAX_ERROR || visibleTurn) {
+                // a sample that doubles back onto the one before has no chord to measure from
+                double score = (chordLength > 0) ? error : Math.sqrt(ux * ux + uy * uy);
+                if ((xs[i] - xs[i - 1]) / xScale > MIN_WIDTH)
+                    flagged += flag(i - 1, score);
+                flagged += flag(i, score);
+            }
+        }
+        return flagged;
+    }
+
+    private int flag(int interval, double score) {
+        scores[interval] = Math.max(scores[interval], score);
+        if (refine[interval])
+            return 0;
+        refine[interval] = true;
+        return 1;
+    }
+
+    // Bisects each interval that still jumps, and records a break wherever the jump doesn't shrink
+    private void findBreaks() {
+        for (int i = 0; i < count - 1; ++i) {
+            double a = xs[i], fa = ys[i], b = xs[i + 1], fb = ys[i + 1];
+            if (!Double.isFinite(fa) || !Double.isFinite(fb))
+                continue;
+            double sa = screenY(fa), sb = screenY(fb);
+            if (Math.abs(sb - sa) <= JUMP_PIXELS || sa < 0 && sb < 0 || sa > height && sb > height)
+                continue;
+
+            // short of budget to bisect, a jump from off one edge of the view to off the other is taken for a break, and
+            // one that didn't shrink at the last halving still is
+            boolean broken = sa < 0 && sb > height || sa > height && sb < 0;
+            for (int k = 0; k < MAX_BISECTIONS && evaluations < budget; ++k) {
+                double m = (a + b) / 2;
+                if (m <= a || m >= b) {
+                    broken = true;
+                    break;
+                }
+                double fm = function.evaluate(m);
+                ++evaluations;
+                if (!Double.isFinite(fm)) {
+                    // a hole in the domain inside the interval
+                    broken = true;
+                    break;
+                }
+
+                double sm = screenY(fm);
+                double jump = Math.abs(sb - sa), left = Math.abs(sm - sa), right = Math.abs(sb - sm);
+                if (Math.max(left, right) < JUMP_RATIO * jump || Math.max(left, right) <= JUMP_PIXELS) {
+                    broken = false;
+                    break;
+                }
+                if (left >= right) {
+                    b = m;
+                    fb = fm;
+                    sb = sm;
+                } else {
+                    a = m;
+                    fa = fm;
+                    sa = sm;
+                }
+                broken = true;
+            }
+
+            if (broken)
+                addBreak(i, a, fa, b, fb);
+        }
+    }
+
+    private void addBreak(int index, double leftX, double leftY, double rightX, double rightY) {
+        if (breakCount == breakIndex.length) {
+            int capacity = Math.max(8, 2 * breakCount);
+            breakIndex = Arrays.copyOf(breakIndex, capacity);
+            leftXs = Arrays.copyOf(leftXs, capacity);
+            leftYs = Arrays.copyOf(leftYs, capacity);
+            rightXs = Arrays.copyOf(rightXs, capacity);
+            rightYs = Arrays.copyOf(rightYs, capacity);
+        }
+        breakIndex[breakCount] = index;
+        leftXs[breakCount] = leftX;
+        leftYs[breakCount] = leftY;
+        rightXs[breakCount] = rightX;
+        rightYs[breakCount] = rightY;
+        ++breakCount;
+    }
+
+    private void draw(Path2D path) {
+        boolean penDown = false;
+        int b = 0;
+        for (int i = 0; i < count; ++i) {
+            if (b < breakCount && breakIndex[b] == i - 1) {
+                if (penDown && Double.isFinite(leftYs[b]))
+                    path.lineTo(screenX(leftXs[b]), drawY(leftYs[b]));
+                penDown = Double.isFinite(rightYs[b]);
+                if (penDown)
+                    path.moveTo(screenX(rightXs[b]), drawY(rightYs[b]));
+                ++b;
+            }
+
+            if (!Double.isFinite(ys[i])) {
+                penDown = false;
+                continue;
+            }
+            if (penDown)
+                path.lineTo(screenX(xs[i]), drawY(ys[i]));
+            else
+                path.moveTo(screenX(xs[i]), drawY(ys[i]));
+            penDown = true;
+        }
+    }
+
+    private double screenX(double x) {
+        return (x - xMin) / xScale;
+    }
+
+    private double screenY(double y) {
+        return (yMax - y) / yScale;
+    }
+
+    private double drawY(double y) {
+        return Math.max(-DRAW_LIMIT, Math.min(height + DRAW_LIMIT, screenY(y)));
+    }
+
+    private void swap() {
+        var swapXs = xs;
+        xs = nextXs;
+        nextXs = swapXs;
+        var swapYs = ys;
+        ys = nextYs;
+        nextYs = swapYs;
+    }
+
+    // room for count samples, and for a pass that halves every interval
+    private void ensureCapacity(int count) {
+        int capacity = 2 * count;
+        if (xs.length >= capacity)
+            return;
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        nextXs = new double[capacity];
+        nextYs = new double[capacity];
+        midXs = new double[capacity];
+        midYs = new double[capacity];
+        scores = new double[capacity];
+        sortedScores = new double[capacity];
+        refine = new boolean[capacity];
+    }
+}
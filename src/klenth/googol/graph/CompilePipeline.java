@@ -0,0 +1,60 @@
+package klenth.googol.graph;
+
+import klenth.googol.math.MathContext;
+
+import javax.swing.*;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Compiles equations on background threads so that the event thread never parses or generates code. A compile that
+// is cancelled before it starts never runs; one already running finishes, and its result is simply dropped.
+public class CompilePipeline {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            r -> {
+                var thread = new Thread(r, "googol-compile-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final MathContext mathContext;
+
+    public CompilePipeline(MathContext mathContext) {
+        this.mathContext = mathContext;
+    }
+
+    // Completes exceptionally with a CompletionException wrapping the SyntaxException if the equation doesn't compile
+    public CompletableFuture<CompiledGraph> submit(String equation) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return CompiledGraph.compile(equation, mathContext);
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+    }
+
+    // Recompiles each graph in graphSet that depends on one of the named functions (see CompiledGraph.dependsOn) and
+    // puts the result in its place, unless the graph has been edited or moved in the meantime. Graphs that don't use
+    // the functions are left alone, compiled code and all. Call on the event thread.
+    public void recompileDependents(GraphSet graphSet, Set<String> functionNames) {
+        for (int number = 0; number < graphSet.getGraphCount(); ++number) {
+            if (!(graphSet.getGraph(number) instanceof CompiledGraph expected) || !expected.dependsOn(functionNames))
+                continue;
+
+            int n = number;
+            submit(expected.equation()).whenComplete((compiled, ex) -> SwingUtilities.invokeLater(() -> {
+                // an equation that no longer compiles (say, a function it calls was removed) is shown as one that
+                // never did
+                var replacement = (ex == null) ? compiled : new CompiledGraph(expected.equation(), new EmptyGraph());
+                graphSet.replaceGraph(n, expected, replacement);
+            }));
+        }
+    }
+}
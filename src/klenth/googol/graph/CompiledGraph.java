@@ -3,17 +3,48 @@ package klenth.googol.graph;
 import edu.westminstercollege.cs.jade.SyntaxException;
 import klenth.googol.Equations;
 import klenth.googol.Expressions;
+import klenth.googol.Inliner;
 import klenth.googol.ast.Node;
 import klenth.googol.math.MathContext;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-public record CompiledGraph(String equation, Graph graph) implements Graph {
+// functionDependencies are the user-defined functions the equation calls, directly or through other functions; the
+// graph has to be recompiled when any of them is redefined. parameterDependencies are the parameters it uses; the graph
+// only has to be re-rendered when one of them is set.
+public record CompiledGraph(String equation, Graph graph, Set<String> functionDependencies, Set<String> parameterDependencies) implements Graph {
+
+    public CompiledGraph {
+        functionDependencies = Set.copyOf(functionDependencies);
+        parameterDependencies = Set.copyOf(parameterDependencies);
+    }
+
+    public CompiledGraph(String equation, Graph graph) {
+        this(equation, graph, Set.of(), Set.of());
+    }
+
+    public boolean usesParameter(String name) {
+        return parameterDependencies.contains(name);
+    }
+
+    // Whether a change to any of the named functions may change this graph. A placeholder for an equation that hasn't
+    // compiled (yet) always may, since it could have failed for want of one of them.
+    public boolean dependsOn(Set<String> functionNames) {
+        if (graph instanceof EmptyGraph && !equation.isBlank())
+            return true;
+        for (var name : functionNames)
+            if (functionDependencies.contains(name))
+                return true;
+        return false;
+    }
 
     public static CompiledGraph compile(String equation, MathContext mathContext) throws SyntaxException {
         var constantValues = mathContext.getConstantValues();
         var envFunctions = mathContext.getEnvFunctions();
+        var parameters = mathContext.getParameters();
 
         if (equation.isBlank())
             return new CompiledGraph(equation, new EmptyGraph());
@@ -22,36 +53,41 @@ public record CompiledGraph(String equation, Graph graph) implements Graph {
         varNames.add("x");
         varNames.add("y");
         varNames.addAll(constantValues.keySet());
+        varNames.addAll(parameters.getNames());
 
         var relation = Equations.parseRelation(equation, varNames, envFunctions.keySet());
         Graph graph = null;
         if (relation instanceof Node.Equation eqn) {
             var maybeFunc = Equations.solvedFor(eqn, "y");
             if (maybeFunc.isPresent()) {
-                var function = Expressions.compileUnaryFunction(maybeFunc.get(), "x", constantValues, envFunctions);
-                graph = (XFunction)function::evaluate;
+                var function = Expressions.tieredUnaryFunction(maybeFunc.get(), "x", constantValues, envFunctions, parameters);
+                graph = new ExplicitPlot(function);
             }
 
             else {
-                var function = Expressions.compileBinaryFunction(new Node.Subtract(relation.lhs(), relation.rhs()), "x", "y", constantValues, envFunctions);
-                graph = (TruthPlot) (x, y) -> {
-                    return Math.abs(function.evaluate(x, y)) < 1e-8;
-                };
+                var function = Expressions.tieredBinaryFunction(new Node.Subtract(relation.lhs(), relation.rhs()), "x", "y", constantValues, envFunctions, parameters);
+                graph = new ImplicitCurve(function);
             }
         } else if (relation instanceof Node.Inequality ineq) {
-            var function = Expressions.compileBinaryFunction(new Node.Subtract(relation.lhs(), relation.rhs()), "x", "y", constantValues, envFunctions);
-            graph = switch (ineq.type()) {
-                case LessThan -> (TruthPlot) (x, y) -> function.evaluate(x, y) < 0;
-                case GreaterThanEqual -> (TruthPlot) (x, y) -> function.evaluate(x, y) >= 0;
-                case LessThanEqual -> (TruthPlot) (x, y) -> function.evaluate(x, y) <= 0;
-                case GreaterThan -> (TruthPlot) (x, y) -> function.evaluate(x, y) > 0;
-                case NotEqual -> (TruthPlot) (x, y) -> Math.abs(function.evaluate(x, y)) >= 1e-8;
-            };
+            var function = Expressions.tieredBinaryFunction(new Node.Subtract(relation.lhs(), relation.rhs()), "x", "y", constantValues, envFunctions, parameters);
+            graph = new ImplicitPlot(function, switch (ineq.type()) {
+                case LessThan -> ImplicitPlot.Test.Negative;
+                case GreaterThanEqual -> ImplicitPlot.Test.NonNegative;
+                case LessThanEqual -> ImplicitPlot.Test.NonPositive;
+                case GreaterThan -> ImplicitPlot.Test.Positive;
+                case NotEqual -> ImplicitPlot.Test.NonZero;
+            });
         }
 
         if (graph == null)
             throw new SyntaxException("Unknown equation type");
 
-        return new CompiledGraph(equation, graph);
+        // function bodies can only use their own parameters and constants, so the relation names every parameter used
+        var parameterDependencies = new HashSet<String>();
+        for (var name : Equations.freeVariables(relation))
+            if (parameters.contains(name))
+                parameterDependencies.add(name);
+
+        return new CompiledGraph(equation, graph, Inliner.dependencies(relation, envFunctions), parameterDependencies);
     }
 }
@@ -0,0 +1,16 @@
+package klenth.googol.graph;
+
+import klenth.googol.math.UnaryFunction;
+
+public record ExplicitPlot(UnaryFunction function) implements XFunction {
+
+    @Override
+    public double evaluate(double x) {
+        return function.evaluate(x);
+    }
+
+    @Override
+    public void evaluate(double[] xs, double[] out, int from, int to) {
+        function.evaluate(xs, out, from, to);
+    }
+}
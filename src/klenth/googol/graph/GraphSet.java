@@ -73,6 +73,15 @@ public class GraphSet {
         fireGraphReplaced(oldGraph, newGraph, number);
     }
 
+    // Replaces the graph only if it is still expected, i.e. nobody else has replaced or moved it since; for results
+    // computed in the background from a graph that may be out of date by the time they're ready
+    public boolean replaceGraph(int number, Graph expected, Graph newGraph) {
+        if (number < 0 || number >= graphs.size() || graphs.get(number) != expected)
+            return false;
+        setGraph(number, newGraph);
+        return true;
+    }
+
     public void setGraphEnabled(int number, boolean enabled) {
         var graph = graphs.get(number);
         if (enabled) {
@@ -0,0 +1,7 @@
+package klenth.googol.graph;
+
+import klenth.googol.math.BinaryFunction;
+
+// The curve function(x, y) = 0, for equations that can't be solved for y
+public record ImplicitCurve(BinaryFunction function) implements Graph {
+}
@@ -0,0 +1,75 @@
+package klenth.googol.graph;
+
+import klenth.googol.math.BinaryFunction;
+import klenth.googol.math.Interval;
+
+public record ImplicitPlot(BinaryFunction function, Test test) implements TruthPlot {
+
+    public enum Test {
+        Zero, NonZero, Negative, NonNegative, Positive, NonPositive;
+
+        public boolean accepts(double value) {
+            return switch (this) {
+                case Zero -> Math.abs(value) < 1e-8;
+                case NonZero -> Math.abs(value) >= 1e-8;
+                case Negative -> value < 0;
+                case NonNegative -> value >= 0;
+                case Positive -> value > 0;
+                case NonPositive -> value <= 0;
+            };
+        }
+
+        // NaN is never accepted, so a value that might be NaN can still rule a region out, but never in
+        public Region classify(Interval values) {
+            if (values.isEmpty())
+                return Region.Outside;
+
+            double lo = values.lo(), hi = values.hi();
+            boolean all = switch (this) {
+                case Zero -> lo > -1e-8 && hi < 1e-8;
+                case NonZero -> lo >= 1e-8 || hi <= -1e-8;
+                case Negative -> hi < 0;
+                case NonNegative -> lo >= 0;
+                case Positive -> lo > 0;
+                case NonPositive -> hi <= 0;
+            };
+            boolean none = switch (this) {
+                case Zero -> lo >= 1e-8 || hi <= -1e-8;
+                case NonZero -> lo > -1e-8 && hi < 1e-8;
+                case Negative -> lo >= 0;
+                case NonNegative -> hi < 0;
+                case Positive -> hi <= 0;
+                case NonPositive -> lo > 0;
+            };
+
+            if (none)
+                return Region.Outside;
+            return (all && !values.maybeNaN()) ? Region.Inside : Region.Mixed;
+        }
+    }
+
+    private static final ThreadLocal<double[]> scratch = ThreadLocal.withInitial(() -> new double[0]);
+
+    @Override
+    public boolean satisfies(double x, double y) {
+        return test.accepts(function.evaluate(x, y));
+    }
+
+    @Override
+    public Region classify(double xMin, double xMax, double yMin, double yMax) {
+        return test.classify(function.evaluate(new Interval(xMin, xMax), new Interval(yMin, yMax)));
+    }
+
+    @Override
+    public void satisfies(double[] xs, double y, boolean[] out, int from, int to) {
+        var values = scratch.get();
+        if (values.length < to) {
+            values = new double[Math.max(to, xs.length)];
+            scratch.set(values);
+        }
+
+        function.evaluateRow(xs, y, values, from, to);
+        for (int i = from; i < to; ++i)
+            out[i] = test.accepts(values[i]);
+    }
+}
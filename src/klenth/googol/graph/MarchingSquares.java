@@ -0,0 +1,183 @@
+package klenth.googol.graph;
+
+import klenth.googol.math.BinaryFunction;
+import klenth.googol.math.Interval;
+
+import java.awt.geom.Path2D;
+
+// Traces f(x, y) = 0 as line segments in screen coordinates. f is sampled at the corners of a grid of BLOCK_SIZE
+// blocks; blocks whose corners change sign, or whose interval bound still includes 0, are split into quarters until
+// they are LEAF_SIZE pixels across, and the leaves are contoured with marching squares. The number of evaluations grows
+// with the length of the curve rather than with the area of the screen.
+public final class MarchingSquares {
+
+    public static final int BLOCK_SIZE = 128;
+    // cells at most this size without a sign change are dropped when their bound is useless (-∞, ∞), which happens
+    // near poles; larger ones are split regardless, since tan() and the like only have useful bounds on small cells
+    public static final int COARSE_SIZE = 16;
+    public static final double LEAF_SIZE = 1;
+
+    private final BinaryFunction function;
+    private final double xMin, yMax, xScale, yScale;
+    private final int width, height;
+    private final double leafSize;
+    private final Path2D.Double path;
+    private long evaluations = 0;
+
+    // Screen pixel (i, j) corresponds to the same point as in ViewWindow.screenToMath
+    public MarchingSquares(BinaryFunction function, double xMin, double xMax, double yMin, double yMax, int width, int height) {
+        this(function, xMin, xMax, yMin, yMax, width, height, new Path2D.Double());
+    }
+
+    // Appends the segments to path rather than a new one, so a caller tracing repeatedly can reset and reuse it
+    public MarchingSquares(BinaryFunction function, double xMin, double xMax, double yMin, double yMax, int width, int height, Path2D.Double path) {
+        this(function, xMin, xMax, yMin, yMax, width, height, LEAF_SIZE, path);
+    }
+
+    // Stops splitting at leafSize pixels rather than LEAF_SIZE, for a coarser trace that takes fewer evaluations
+    public MarchingSquares(BinaryFunction function, double xMin, double xMax, double yMin, double yMax, int width, int height, double leafSize, Path2D.Double path) {
+        this.function = function;
+        this.leafSize = leafSize;
+        this.path = path;
+        this.xMin = xMin;
+        this.yMax = yMax;
+        this.xScale = (xMax - xMin) / width;
+        this.yScale = (yMax - yMin) / height;
+        this.width = width;
+        this.height = height;
+    }
+
+    public Path2D trace() {
+        int columns = (width + BLOCK_SIZE - 1) / BLOCK_SIZE, rows = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (columns == 0 || rows == 0)
+            return path;
+
+        double[] xs = new double[columns + 1];
+        for (int i = 0; i <= columns; ++i)
+            xs[i] = mathX(i * BLOCK_SIZE);
+        double[] above = new double[columns + 1], below = new double[columns + 1];
+        function.evaluateRow(xs, mathY(0), above, 0, columns + 1);
+        evaluations += columns + 1;
+
+        for (int j = 0; j < rows; ++j) {
+            function.evaluateRow(xs, mathY((j + 1) * BLOCK_SIZE), below, 0, columns + 1);
+            evaluations += columns + 1;
+
+            for (int i = 0; i < columns; ++i)
+                refine(i * BLOCK_SIZE, j * BLOCK_SIZE, BLOCK_SIZE, above[i], above[i + 1], below[i], below[i + 1], Double.POSITIVE_INFINITY);
+
+            var swap = above;
+            above = below;
+            below = swap;
+        }
+
+        return path;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    private double mathX(double sx) {
+        return xMin + sx * xScale;
+    }
+
+    private double mathY(double sy) {
+        return yMax - sy * yScale;
+    }
+
+    private double evaluate(double sx, double sy) {
+        ++evaluations;
+        return function.evaluate(mathX(sx), mathY(sy));
+    }
+
+    // (sx, sy) is the top left corner; v00 top left, v10 top right, v01 bottom left, v11 bottom right
+    private void refine(double sx, double sy, double size, double v00, double v10, double v01, double v11, double parentMagnitude) {
+        boolean signChange = hasSignChange(v00, v10, v01, v11);
+        double magnitude = Math.max(Math.max(Math.abs(v00), Math.abs(v10)), Math.max(Math.abs(v01), Math.abs(v11)));
+
+        if (size <= leafSize) {
+            // For a zero crossing the corner values shrink along with the cell; if they grew, the sign change is a
+            // pole (tan(x), 1/x, ...) rather than the curve.
+            if (signChange && !Double.isNaN(magnitude) && magnitude <= parentMagnitude)
+                contour(sx, sy, size, v00, v10, v01, v11);
+            return;
+        }
+
+        if (!signChange) {
+            // a small loop or a tangent crossing can fit between the corners; only the interval bound can rule that out
+            var bound = function.evaluate(
+                    new Interval(mathX(sx), mathX(sx + size)),
+                    new Interval(mathY(sy + size), mathY(sy)));
+            if (!bound.contains(0))
+                return;
+            if (size <= COARSE_SIZE && bound.lo() == Double.NEGATIVE_INFINITY && bound.hi() == Double.POSITIVE_INFINITY)
+                return;
+        }
+
+        double half = size / 2;
+        double top = evaluate(sx + half, sy),
+                left = evaluate(sx, sy + half),
+                center = evaluate(sx + half, sy + half),
+                right = evaluate(sx + size, sy + half),
+                bottom = evaluate(sx + half, sy + size);
+
+        if (Double.isNaN(magnitude))
+            magnitude = Double.POSITIVE_INFINITY;
+        refine(sx, sy, half, v00, top, left, center, magnitude);
+        refine(sx + half, sy, half, top, v10, center, right, magnitude);
+        refine(sx, sy + half, half, left, center, v01, bottom, magnitude);
+        refine(sx + half, sy + half, half, center, right, bottom, v11, magnitude);
+    }
+
+    private static boolean hasSignChange(double v00, double v10, double v01, double v11) {
+        boolean positive = false, negative = false;
+        for (double v : new double[] { v00, v10, v01, v11 }) {
+            if (v >= 0)
+                positive = true;
+            else if (v < 0)
+                negative = true;
+        }
+        return positive && negative;
+    }
+
+    private void contour(double sx, double sy, double size, double v00, double v10, double v01, double v11) {
+        int index = ((v00 >= 0) ? 1 : 0) | ((v10 >= 0) ? 2 : 0) | ((v11 >= 0) ? 4 : 0) | ((v01 >= 0) ? 8 : 0);
+
+        // crossing points on each edge, by linear interpolation
+        double topX = sx + size * v00 / (v00 - v10),
+                bottomX = sx + size * v01 / (v01 - v11),
+                leftY = sy + size * v00 / (v00 - v01),
+                rightY = sy + size * v10 / (v10 - v11);
+        double x0 = sx, x1 = sx + size, y0 = sy, y1 = sy + size;
+
+        switch (index) {
+            case 1, 14 -> segment(x0, leftY, topX, y0);
+            case 2, 13 -> segment(topX, y0, x1, rightY);
+            case 3, 12 -> segment(x0, leftY, x1, rightY);
+            case 4, 11 -> segment(x1, rightY, bottomX, y1);
+            case 6, 9 -> segment(topX, y0, bottomX, y1);
+            case 7, 8 -> segment(x0, leftY, bottomX, y1);
+            case 5, 10 -> {
+                // saddle: the center decides which pair of opposite corners is connected
+                boolean centerPositive = evaluate(sx + size / 2, sy + size / 2) >= 0;
+                if (centerPositive == (index == 5)) {
+                    segment(topX, y0, x1, rightY);
+                    segment(x0, leftY, bottomX, y1);
+                } else {
+                    segment(x0, leftY, topX, y0);
+                    segment(x1, rightY, bottomX, y1);
+                }
+            }
+            default -> { /* no crossing */ }
+        }
+    }
+
+    private void segment(double ax, double ay, double bx, double by) {
+        // continue the previous segment when it ends where this one starts
+        var last = path.getCurrentPoint();
+        if (last == null || last.getX() != ax || last.getY() != ay)
+            path.moveTo(ax, ay);
+        path.lineTo(bx, by);
+    }
+}
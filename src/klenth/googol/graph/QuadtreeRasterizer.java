@@ -0,0 +1,114 @@
+package klenth.googol.graph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Rasterizes a TruthPlot by recursively splitting the viewport into quarters. Blocks that TruthPlot.classify can decide
+// are filled without evaluating any of their pixels; only the blocks it can't (in practice, those along the boundary
+// of the region) are tested pixel by pixel. rasterizeTiles does the same for each tile of a grid in parallel.
+public final class QuadtreeRasterizer {
+
+    // blocks with no more pixels than this are evaluated directly, as classifying them costs more than it saves
+    public static final int LEAF_PIXELS = 64;
+    // tiles are TILE_SIZE pixels square: small enough that a 1080p canvas has over a hundred to share among the cores,
+    // big enough that the quadtree still gets to skip most of a tile away from the boundary
+    public static final int TILE_SIZE = 128;
+
+    private static final ThreadLocal<boolean[]> scratch = ThreadLocal.withInitial(() -> new boolean[0]);
+
+    private final TruthPlot plot;
+    private final double[] xs, ys;
+    private final int[] pixels;
+    private final int yesColor, noColor;
+    private final boolean[] satisfied;
+    private long evaluatedPixels = 0;
+
+    private QuadtreeRasterizer(TruthPlot plot, double[] xs, double[] ys, int[] pixels, int yesColor, int noColor) {
+        this.plot = plot;
+        this.xs = xs;
+        this.ys = ys;
+        this.pixels = pixels;
+        this.yesColor = yesColor;
+        this.noColor = noColor;
+
+        var satisfied = scratch.get();
+        if (satisfied.length < xs.length) {
+            satisfied = new boolean[xs.length];
+            scratch.set(satisfied);
+        }
+        this.satisfied = satisfied;
+    }
+
+    // Pixel (i, j) is (xs[i], ys[j]) and is written to pixels[j * xs.length + i]. Both coordinate arrays must be
+    // monotone (either direction), since a block's bounds are taken from its corner samples.
+    // Returns the number of pixels that had to be evaluated individually.
+    public static long rasterize(TruthPlot plot, double[] xs, double[] ys, int[] pixels, int yesColor, int noColor) {
+        if (pixels.length < xs.length * ys.length)
+            throw new IllegalArgumentException(String.format("Pixel buffer too small for %d×%d", xs.length, ys.length));
+
+        var rasterizer = new QuadtreeRasterizer(plot, xs, ys, pixels, yesColor, noColor);
+        if (xs.length > 0 && ys.length > 0)
+            rasterizer.rasterize(0, xs.length, 0, ys.length);
+        return rasterizer.evaluatedPixels;
+    }
+
+    // As rasterize, but splits the grid into tiles and rasterizes them in parallel on the common fork/join pool. Each
+    // tile writes only its own pixels, so they need no coordination; plot has to be safe to call from several threads
+    // at once, which compiled and interpreted functions are.
+    public static long rasterizeTiles(TruthPlot plot, double[] xs, double[] ys, int[] pixels, int yesColor, int noColor) {
+        if (pixels.length < xs.length * ys.length)
+            throw new IllegalArgumentException(String.format("Pixel buffer too small for %d×%d", xs.length, ys.length));
+
+        int columns = (xs.length + TILE_SIZE - 1) / TILE_SIZE, rows = (ys.length + TILE_SIZE - 1) / TILE_SIZE;
+        return IntStream.range(0, columns * rows).parallel().mapToLong(tile -> {
+            int i0 = (tile % columns) * TILE_SIZE, j0 = (tile / columns) * TILE_SIZE;
+            var rasterizer = new QuadtreeRasterizer(plot, xs, ys, pixels, yesColor, noColor);
+            rasterizer.rasterize(i0, Math.min(i0 + TILE_SIZE, xs.length), j0, Math.min(j0 + TILE_SIZE, ys.length));
+            return rasterizer.evaluatedPixels;
+        }).sum();
+    }
+
+    private void rasterize(int i0, int i1, int j0, int j1) {
+        int w = i1 - i0, h = j1 - j0;
+        if (w * h <= LEAF_PIXELS) {
+            evaluate(i0, i1, j0, j1);
+            return;
+        }
+
+        var region = plot.classify(
+                Math.min(xs[i0], xs[i1 - 1]), Math.max(xs[i0], xs[i1 - 1]),
+                Math.min(ys[j0], ys[j1 - 1]), Math.max(ys[j0], ys[j1 - 1]));
+        switch (region) {
+            case Inside -> fill(i0, i1, j0, j1, yesColor);
+            case Outside -> fill(i0, i1, j0, j1, noColor);
+            case Mixed -> {
+                int im = (w > 1) ? (i0 + i1) >>> 1 : i1;
+                int jm = (h > 1) ? (j0 + j1) >>> 1 : j1;
+                rasterize(i0, im, j0, jm);
+                if (im < i1)
+                    rasterize(im, i1, j0, jm);
+                if (jm < j1) {
+                    rasterize(i0, im, jm, j1);
+                    if (im < i1)
+                        rasterize(im, i1, jm, j1);
+                }
+            }
+        }
+    }
+
+    private void evaluate(int i0, int i1, int j0, int j1) {
+        int width = xs.length;
+        for (int j = j0; j < j1; ++j) {
+            plot.satisfies(xs, ys[j], satisfied, i0, i1);
+            for (int i = i0; i < i1; ++i)
+                pixels[j * width + i] = satisfied[i] ? yesColor : noColor;
+        }
+        evaluatedPixels += (long)(i1 - i0) * (j1 - j0);
+    }
+
+    private void fill(int i0, int i1, int j0, int j1, int color) {
+        int width = xs.length;
+        for (int j = j0; j < j1; ++j)
+            Arrays.fill(pixels, j * width + i0, j * width + i1, color);
+    }
+}
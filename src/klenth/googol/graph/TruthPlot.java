@@ -3,5 +3,19 @@ package klenth.googol.graph;
 @FunctionalInterface
 public interface TruthPlot extends Graph {
 
+    enum Region {
+        Inside, Outside, Mixed
+    }
+
     boolean satisfies(double x, double y);
+
+    // Whether all of the points in [xMin, xMax] × [yMin, yMax] satisfy the plot, none do, or it can't tell
+    default Region classify(double xMin, double xMax, double yMin, double yMax) {
+        return Region.Mixed;
+    }
+
+    default void satisfies(double[] xs, double y, boolean[] out, int from, int to) {
+        for (int i = from; i < to; ++i)
+            out[i] = satisfies(xs[i], y);
+    }
 }
@@ -3,4 +3,9 @@ package klenth.googol.graph;
 public interface XFunction extends Graph {
 
     double evaluate(double x);
+
+    default void evaluate(double[] xs, double[] out, int from, int to) {
+        for (int i = from; i < to; ++i)
+            out[i] = evaluate(xs[i]);
+    }
 }
@@ -0,0 +1,307 @@
+package klenth.googol.gui;
+
+import klenth.googol.PipelineEvents;
+import klenth.googol.graph.*;
+import klenth.googol.math.Parameters;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Animates the graphs that use a time parameter. A Swing timer ticks at a fixed rate; on each tick the graphs using the
+// parameter are rendered for the next frame on a background thread while the canvas goes on showing the current one,
+// and the two frames swap when the new one is done. A tick that comes while a frame is still being rendered is
+// dropped, not queued, so a slow graph lowers the frame rate instead of falling further and further behind.
+//
+// Each frame keeps its paths, samplers, coordinate arrays and images from one frame to the next; they are only
+// reallocated when the canvas is resized or a graph changes kind. Graphs that don't use the parameter are rendered and cached by the
+// canvas as usual.
+public class Animator {
+
+    public static final int DEFAULT_FRAMES_PER_SECOND = 60;
+    // frames the rate and render times are averaged over
+    private static final int HISTORY = 60;
+
+    public record Statistics(
+            long framesShown,
+            long framesDropped,
+            double framesPerSecond,
+            double lastRenderMillis,
+            double meanRenderMillis,
+            double maxRenderMillis,
+            long lastFunctionSamples
+    ) {
+        @Override
+        public String toString() {
+            return String.format("%.1f fps; render %.1f ms (mean %.1f, max %.1f); %d function samples; %d shown, %d dropped",
+                    framesPerSecond, lastRenderMillis, meanRenderMillis, maxRenderMillis, lastFunctionSamples,
+                    framesShown, framesDropped);
+        }
+    }
+
+    public interface Listener {
+        // Called on the event thread after each frame is shown
+        void frameShown(Animator source, long frameNumber, double time);
+    }
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "googol-animation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // One graph's render in a frame, and the storage it was rendered into
+    private static final class Slot {
+        Graph graph;
+        int number;
+        Object render;
+
+        double[] xs = new double[0], ys = new double[0];
+        AdaptiveSampler sampler;
+        GeneralPath functionPath;
+        Path2D.Double curvePath;
+        BufferedImage image;
+    }
+
+    private static final class Frame {
+        final List<Slot> slots = new ArrayList<>();
+        int slotCount;
+        ViewWindow window;
+        final Dimension size = new Dimension();
+        long samplingBudget;
+        double time;
+        long renderNanos;
+        // evaluations spent on function graphs
+        long functionSamples;
+    }
+
+    private final GraphCanvas canvas;
+    private final Timer timer;
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Runnable renderTask = this::renderBack;
+    private final Runnable presentTask = this::present;
+
+    private Parameters parameters;
+    private String timeName;
+    private long startNanos;
+    private double startTime;
+
+    // front is shown by the canvas; back is being rendered whenever rendering is true. Both flags, and the swap, are
+    // only touched on the event thread.
+    private Frame front = new Frame(), back = new Frame();
+    private boolean running = false;
+    private boolean rendering = false;
+
+    private long framesShown = 0, framesDropped = 0;
+    private final long[] shownNanos = new long[HISTORY];
+    private final long[] renderNanos = new long[HISTORY];
+
+    Animator(GraphCanvas canvas) {
+        this.canvas = canvas;
+        this.timer = new Timer(1000 / DEFAULT_FRAMES_PER_SECOND, e -> tick());
+        timer.setCoalesce(true);
+    }
+
+    // Starts animating the graphs that use the parameter timeName, which counts seconds up from its current value.
+    // Call on the event thread.
+    public void start(Parameters parameters, String timeName) {
+        if (!parameters.contains(timeName))
+            throw new IllegalArgumentException("No parameter named " + timeName);
+        if (running)
+            stop();
+
+        this.parameters = parameters;
+        this.timeName = timeName;
+        startTime = parameters.get(timeName);
+        startNanos = System.nanoTime();
+        framesShown = framesDropped = 0;
+        running = true;
+        timer.start();
+    }
+
+    // Stops after the frame being rendered, if any, leaving the parameter at its last value. Call on the event thread.
+    public void stop() {
+        if (!running)
+            return;
+        timer.stop();
+        running = false;
+        front.slotCount = 0;
+        canvas.invalidateRenders(timeName);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setFramesPerSecond(int framesPerSecond) {
+        if (framesPerSecond <= 0)
+            throw new IllegalArgumentException("Frame rate must be positive: " + framesPerSecond);
+        timer.setDelay(1000 / framesPerSecond);
+    }
+
+    public String getTimeName() {
+        return timeName;
+    }
+
+    // Whether graph is being animated, so the canvas should draw it from the current frame
+    public boolean animates(CompiledGraph graph) {
+        return running && graph.usesParameter(timeName);
+    }
+
+    // The render of graph in the frame being shown, or null if the frame doesn't have one (it predates the graph, say)
+    Object getRender(int number, Graph graph) {
+        for (int i = 0; i < front.slotCount; ++i) {
+            var slot = front.slots.get(i);
+            if (slot.number == number && slot.graph == graph)
+                return slot.render;
+        }
+        return null;
+    }
+
+    // Call on the event thread
+    public Statistics getStatistics() {
+        int count = (int)Math.min(framesShown, HISTORY);
+        if (count == 0)
+            return new Statistics(framesShown, framesDropped, 0, 0, 0, 0, 0);
+
+        int newest = (int)((framesShown - 1) % HISTORY), oldest = (int)((framesShown - count) % HISTORY);
+        double framesPerSecond = (count > 1) ? (count - 1) / ((shownNanos[newest] - shownNanos[oldest]) / 1e9) : 0;
+        long total = 0, max = 0;
+        for (int i = 0; i < count; ++i) {
+            total += renderNanos[i];
+            max = Math.max(max, renderNanos[i]);
+        }
+        return new Statistics(framesShown, framesDropped, framesPerSecond,
+                renderNanos[newest] / 1e6, total / 1e6 / count, max / 1e6, front.functionSamples);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void tick() {
+        // while zooming the canvas draws a snapshot, which a frame wouldn't change
+        if (!running || canvas.isZooming())
+            return;
+        if (rendering) {
+            ++framesDropped;
+            return;
+        }
+
+        // snapshot what to render on the event thread; the render thread sees it through the executor
+        back.window = canvas.getViewWindow();
+        canvas.getSize(back.size);
+        back.samplingBudget = canvas.getSamplingBudget();
+        back.time = startTime + (System.nanoTime() - startNanos) / 1e9;
+        back.slotCount = 0;
+        var graphs = canvas.getGraphSet();
+        for (int number = 0; number < graphs.getGraphCount(); ++number) {
+            if (graphs.isGraphEnabled(number) && graphs.getGraph(number) instanceof CompiledGraph cg && animates(cg)) {
+                if (back.slotCount == back.slots.size())
+                    back.slots.add(new Slot());
+                var slot = back.slots.get(back.slotCount++);
+                slot.number = number;
+                slot.graph = cg.graph();
+            }
+        }
+
+        rendering = true;
+        executor.execute(renderTask);
+    }
+
+    // On the render thread
+    private void renderBack() {
+        var frame = back;
+        var event = new PipelineEvents.Frame();
+        event.begin();
+        long start = System.nanoTime();
+        long evaluations = 0;
+        frame.functionSamples = 0;
+        try {
+            parameters.set(timeName, frame.time);
+            for (int i = 0; i < frame.slotCount; ++i)
+                evaluations += render(frame.slots.get(i), frame);
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        } finally {
+            frame.renderNanos = System.nanoTime() - start;
+            event.end();
+            if (event.shouldCommit()) {
+                event.time = frame.time;
+                event.graphs = frame.slotCount;
+                event.width = frame.size.width;
+                event.height = frame.size.height;
+                event.evaluations = evaluations;
+                event.functionSamples = frame.functionSamples;
+                event.commit();
+            }
+            SwingUtilities.invokeLater(presentTask);
+        }
+    }
+
+    private long render(Slot slot, Frame frame) {
+        var window = frame.window;
+        var size = frame.size;
+        switch (slot.graph) {
+            case XFunction xf -> {
+                if (slot.sampler == null) {
+                    slot.sampler = new AdaptiveSampler();
+                    slot.functionPath = new GeneralPath();
+                }
+                slot.render = slot.functionPath;
+                long samples = Rendering.renderFunction(xf, window, size, slot.sampler, frame.samplingBudget, slot.functionPath);
+                frame.functionSamples += samples;
+                return samples;
+            }
+            case ImplicitCurve ic -> {
+                if (slot.curvePath == null)
+                    slot.curvePath = new Path2D.Double();
+                slot.render = slot.curvePath;
+                return Rendering.renderCurve(ic, window, size, slot.curvePath);
+            }
+            case TruthPlot tp -> {
+                if (slot.xs.length != size.width || slot.ys.length != size.height) {
+                    slot.xs = new double[size.width];
+                    slot.ys = new double[size.height];
+                }
+                if (slot.image == null || slot.image.getWidth() != size.width || slot.image.getHeight() != size.height)
+                    slot.image = new BufferedImage(Math.max(1, size.width), Math.max(1, size.height), BufferedImage.TYPE_INT_ARGB);
+                slot.render = slot.image;
+                return Rendering.renderPlot(tp, window, size, slot.xs, slot.ys, slot.image);
+            }
+            default -> {
+                slot.render = null;
+                return 0;
+            }
+        }
+    }
+
+    private void present() {
+        rendering = false;
+        if (!running)
+            return;
+
+        var shown = back;
+        back = front;
+        front = shown;
+
+        int index = (int)(framesShown % HISTORY);
+        shownNanos[index] = System.nanoTime();
+        renderNanos[index] = shown.renderNanos;
+        ++framesShown;
+
+        canvas.frameShown();
+        for (var listener : listeners)
+            listener.frameShown(this, framesShown, shown.time);
+    }
+}
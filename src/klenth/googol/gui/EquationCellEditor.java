@@ -1,34 +1,95 @@
 package klenth.googol.gui;
 
 import edu.westminstercollege.cs.jade.SyntaxException;
+import klenth.googol.graph.CompilePipeline;
 import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.EmptyGraph;
+import klenth.googol.graph.Graph;
+import klenth.googol.graph.GraphSet;
 import klenth.googol.math.MathContext;
 
 import javax.swing.*;
 import javax.swing.event.CellEditorListener;
 import javax.swing.event.ChangeEvent;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableCellRenderer;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.EventObject;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class EquationCellEditor extends JTextField implements TableCellRenderer, TableCellEditor {
 
+    // how long typing has to pause before the equation is compiled
+    public static final int DEBOUNCE_MILLIS = 200;
+
+    // One background compile of the text in a row. expected is the graph the result may replace; if the row holds
+    // anything else by the time the compile is done, the result is stale and dropped.
+    private static class Submission {
+        final int row;
+        final String text;
+        final CompletableFuture<CompiledGraph> future;
+        Graph expected;
+
+        Submission(int row, String text, CompletableFuture<CompiledGraph> future, Graph expected) {
+            this.row = row;
+            this.text = text;
+            this.future = future;
+            this.expected = expected;
+        }
+    }
+
     private MathContext mathContext;
+    private GraphSet graphSet;
+    private CompilePipeline pipeline;
     private List<CellEditorListener> listeners = new ArrayList<>();
     private CompiledGraph initialValue = null;
     private CompiledGraph editedValue = null;
 
+    private int editingRow = -1;
+    private Graph installed = null;
+    private Submission current = null;
+    private final Timer debounce = new Timer(DEBOUNCE_MILLIS, e -> compileAsYouType());
+    private final Color normalForeground = getForeground();
+
+    // a renderer, or an editor that shows nothing while the user types and compiles the equation, on the event thread,
+    // when editing stops
     public EquationCellEditor(MathContext context) {
+        this(context, null);
+    }
+
+    // an editor that compiles as the user types and shows each result in graphSet as soon as it is ready
+    public EquationCellEditor(MathContext context, GraphSet graphSet) {
         this.mathContext = context;
+        this.graphSet = graphSet;
+        this.pipeline = new CompilePipeline(context);
+        debounce.setRepeats(false);
 
         setFont(new Font(getFont().getName(), Font.PLAIN, 24));
         setBorder(BorderFactory.createEmptyBorder());
         setHorizontalAlignment(CENTER);
         addActionListener(e -> stopCellEditing());
 
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
 
         addCellEditorListener(new CellEditorListener() {
             @Override
@@ -65,8 +126,16 @@ public class EquationCellEditor extends JTextField implements TableCellRenderer,
 
     @Override
     public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
+        editingRow = -1;
+        cancelCompile();
         initialValue = (value instanceof CompiledGraph cg) ? cg : null;
-        return getTableCellRendererComponent(table, value, isSelected, true, row, column);
+        var component = getTableCellRendererComponent(table, value, isSelected, true, row, column);
+
+        editingRow = row;
+        installed = (value instanceof Graph g) ? g : null;
+        setForeground(normalForeground);
+        setToolTipText(null);
+        return component;
     }
 
     @Override
@@ -86,18 +155,43 @@ public class EquationCellEditor extends JTextField implements TableCellRenderer,
 
     @Override
     public boolean stopCellEditing() {
+        debounce.stop();
+        var text = getText();
         editedValue = null;
-        if (initialValue != null && getText().equals(initialValue.equation()))
-            editedValue = initialValue;
-        else {
+
+        if (installed instanceof CompiledGraph cg && text.equals(cg.equation()))
+            editedValue = cg;
+        else if (current != null && current.text.equals(text) && current.future.isDone() && !current.future.isCancelled()) {
+            try {
+                editedValue = current.future.join();
+            } catch (CompletionException ex) {
+                System.err.println(ex.getCause().getMessage());
+                return false;
+            }
+        } else if (graphSet == null) {
+            // nothing would put a later result in place of an empty graph, so the compile can't be left running
+            cancelCompile();
             try {
-                editedValue = CompiledGraph.compile(getText(), mathContext);
-            } catch (SyntaxException ex) {
+                editedValue = CompiledGraph.compile(text, mathContext);
+            } catch (SyntaxException | RuntimeException ex) {
+                // ANTLR recovers from syntax errors with holes in the tree, which can fail anywhere in compiling
                 System.err.println(ex.getMessage());
                 return false;
             }
+        } else {
+            // Still compiling: show the equation now with nothing drawn, and let the compile fill in the graph when it
+            // finishes. A syntax error then leaves the row empty instead of keeping the editor open.
+            if (current == null || !current.text.equals(text) || current.future.isCancelled())
+                submit(text);
+            editedValue = new CompiledGraph(text, new EmptyGraph());
+            current.expected = editedValue;
         }
 
+        // any compile still running belongs to the row now, not to the next edit
+        current = null;
+        editingRow = -1;
+        installed = null;
+
         var tempListeners = new ArrayList<>(listeners);
         for (var listener : tempListeners)
             onEventThread(() -> listener.editingStopped(new ChangeEvent(this)));
@@ -107,6 +201,15 @@ public class EquationCellEditor extends JTextField implements TableCellRenderer,
 
     @Override
     public void cancelCellEditing() {
+        debounce.stop();
+        cancelCompile();
+        int row = editingRow;
+        editingRow = -1;
+        // take back anything shown while typing
+        if (graphSet != null && initialValue != null && installed != initialValue)
+            graphSet.replaceGraph(row, installed, initialValue);
+        installed = null;
+
         if (initialValue != null)
             setText(initialValue.equation());
         var tempListeners = new ArrayList<>(listeners);
@@ -124,6 +227,60 @@ public class EquationCellEditor extends JTextField implements TableCellRenderer,
         listeners.remove(l);
     }
 
+    private void textChanged() {
+        if (editingRow >= 0)
+            debounce.restart();
+    }
+
+    private void compileAsYouType() {
+        if (editingRow < 0)
+            return;
+        var text = getText();
+        if (current != null && current.text.equals(text))
+            return;
+
+        cancelCompile();
+        if (installed instanceof CompiledGraph cg && text.equals(cg.equation()))
+            return;
+        submit(text);
+    }
+
+    private void submit(String text) {
+        cancelCompile();
+        var submission = new Submission(editingRow, text, pipeline.submit(text), installed);
+        current = submission;
+        submission.future.whenComplete((graph, ex) -> SwingUtilities.invokeLater(() -> compiled(submission, graph, ex)));
+    }
+
+    private void cancelCompile() {
+        if (current != null) {
+            current.future.cancel(false);
+            current = null;
+        }
+    }
+
+    private void compiled(Submission submission, CompiledGraph graph, Throwable ex) {
+        if (submission.future.isCancelled())
+            return;
+
+        boolean editing = (submission == current);
+        if (ex != null) {
+            if (editing) {
+                setForeground(Color.red.darker());
+                setToolTipText((ex.getCause() != null) ? ex.getCause().getMessage() : ex.getMessage());
+            } else
+                System.err.println((ex.getCause() != null) ? ex.getCause().getMessage() : ex.getMessage());
+            return;
+        }
+
+        if (editing) {
+            setForeground(normalForeground);
+            setToolTipText(null);
+        }
+        if (graphSet != null && graphSet.replaceGraph(submission.row, submission.expected, graph) && editing)
+            installed = graph;
+    }
+
     private void onEventThread(Runnable r) {
         if (SwingUtilities.isEventDispatchThread())
             r.run();
@@ -1,5 +1,6 @@
 package klenth.googol.gui;
 
+import klenth.googol.PipelineEvents;
 import klenth.googol.graph.*;
 import klenth.util.Zipper;
 
@@ -7,15 +8,24 @@ import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
 import java.awt.geom.GeneralPath;
-import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Supplier;
+import java.util.function.Function;
 
 public class GraphCanvas extends JComponent {
 
+    // a wheel gesture ends once it has been idle this long
+    public static final int ZOOM_IDLE_MILLIS = 250;
+    // one notch of the wheel towards the user zooms out by this much, and away zooms in by its reciprocal
+    private static final double WHEEL_ZOOM = 1.25;
+    // zooming stops short of spans where the tiles' pixel grid would run out of precision, or of range: the grid is
+    // counted from the origin, so besides MIN_SPAN a span can't be less than MIN_RELATIVE_SPAN of the view's distance
+    // from it, which keeps its pixels below 2^52 on screens up to 4096 pixels across
+    private static final double MIN_SPAN = 1e-9, MIN_RELATIVE_SPAN = 0x1p-40, MAX_SPAN = 1e12;
+
     private GraphSet graphs = new GraphSet();
     private List<Object> graphRenders = new ArrayList<>();
     private ViewWindow window = new ViewWindow(-4, 4, 0.5, -4, 4, 0.5);
@@ -24,148 +34,287 @@ public class GraphCanvas extends JComponent {
     private ViewWindow dragOriginalWindow = null;
     private Point dragPoint = null;
     private BufferedImage dragSnapshot = null;
+    // while a wheel gesture is under way: the graphs as painted for zoomOriginalWindow, drawn scaled to window
+    private BufferedImage zoomSnapshot = null;
+    private ViewWindow zoomOriginalWindow = null;
+    private final Timer zoomIdleTimer = new Timer(ZOOM_IDLE_MILLIS, e -> endZoom());
+    private final Animator animator = new Animator(this);
+    // curves and plots are drawn from world-space tiles; graphRenders only holds XFunction renders and animation frames
+    private final TileCache tileCache = new TileCache();
+    private final AdaptiveSampler sampler = new AdaptiveSampler();
+    private long samplingBudget = AdaptiveSampler.DEFAULT_BUDGET;
+    // when progressive, painting only draws what has been rendered and leaves the rest to progressiveRenderer
+    private final ProgressiveRenderer progressiveRenderer = new ProgressiveRenderer(this);
+    private boolean progressive = true;
+    // the background (grid and axes) and each graph are kept in layers, which are only drawn again where they've been
+    // invalidated; graphLayers parallels graphRenders
+    private final Layer backgroundLayer = new Layer(false);
+    private ViewWindow backgroundWindow = null;
+    private final List<Layer> graphLayers = new ArrayList<>();
+    private final ImagePool imagePool = new ImagePool();
 
     private GraphSet.Listener graphListener = new GraphSet.Listener() {
         @Override
         public void graphAdded(GraphSet source, Graph newGraph, int number) {
+            cancelRendering(true);
             graphRenders.add(null);
+            graphLayers.add(new Layer(true));
             repaint();
         }
 
         @Override
         public void graphRemoved(GraphSet source, Graph removedGraph, int number) {
+            cancelRendering(true);
             graphRenders.remove(number);
+            graphLayers.remove(number).dispose();
+            forgetTiles(removedGraph);
             repaint();
         }
 
         @Override
         public void graphReplaced(GraphSet source, Graph oldGraph, Graph newGraph, int number) {
+            cancelRendering(true);
             graphRenders.set(number, null);
+            graphLayers.get(number).invalidate();
+            forgetTiles(oldGraph);
             repaint();
         }
 
         @Override
         public void graphAbled(GraphSet source, Graph abledGraph, int number, boolean enabled) {
+            cancelRendering(true);
+            graphLayers.get(number).invalidate();
             repaint();
         }
 
         @Override
         public void graphsCleared(GraphSet source, int graphCount) {
+            cancelRendering(true);
             graphRenders.clear();
+            graphLayers.forEach(Layer::dispose);
+            graphLayers.clear();
+            tileCache.clear();
             repaint();
         }
     };
 
     {
-        //enableEvents(AWTEvent.MOUSE_WHEEL_EVENT_MASK);
+        enableEvents(AWTEvent.MOUSE_WHEEL_EVENT_MASK);
         enableEvents(AWTEvent.MOUSE_EVENT_MASK);
         enableEvents(AWTEvent.MOUSE_MOTION_EVENT_MASK);
         enableEvents(AWTEvent.COMPONENT_EVENT_MASK);
         graphs.addListener(graphListener);
+        zoomIdleTimer.setRepeats(false);
     }
 
     public GraphSet getGraphSet() {
         return graphs;
     }
 
-    @Override
-    protected void paintComponent(Graphics _g) {
-        super.paintComponent(_g);
-        _g.setColor(getBackground());
-        _g.fillRect(0, 0, getWidth(), getHeight());
+    public ViewWindow getViewWindow() {
+        return window;
+    }
 
-        if (isDragging()) {
-            _g.drawImage(dragSnapshot, dragPoint.x - dragOriginScreen.x, dragPoint.y - dragOriginScreen.y, null);
-            return;
-        }
+    // Tiles at the new window's scale are reused; nothing else is
+    public void setViewWindow(ViewWindow window) {
+        stopZoom();
+        this.window = window;
+        cancelRendering(false);
+        rerender();
+    }
 
-        Graphics2D g = (Graphics2D)_g.create();
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    public Animator getAnimator() {
+        return animator;
+    }
+
+    // Only the statistics: the layers are drawn from the tiles, so emptying the cache has to go through
+    // invalidateRenders
+    public TileCache.Statistics getTileStatistics() {
+        return tileCache.getStatistics();
+    }
+
+    TileCache getTileCache() {
+        return tileCache;
+    }
+
+    public ProgressiveRenderer getProgressiveRenderer() {
+        return progressiveRenderer;
+    }
+
+    public boolean isProgressive() {
+        return progressive;
+    }
+
+    // Whether to paint what has been rendered so far and render the rest in the background, rather than render it all
+    // before painting returns
+    public void setProgressive(boolean progressive) {
+        this.progressive = progressive;
+        cancelRendering(true);
+        invalidateGraphLayers();
+        repaint();
+    }
+
+    public long getSamplingBudget() {
+        return samplingBudget;
+    }
+
+    // The most evaluations a function graph may take per render
+    public void setSamplingBudget(long samplingBudget) {
+        if (samplingBudget < 2)
+            throw new IllegalArgumentException("Sampling budget must be at least 2: " + samplingBudget);
+        this.samplingBudget = samplingBudget;
+        invalidateRenders();
+    }
 
-        paintGrid(g);
-        paintAxes(g);
-        paintAxesTicks(g);
+    // Throws away every render, for when the graphs' values have changed without the graphs themselves changing
+    public void invalidateRenders() {
+        cancelRendering(true);
+        tileCache.clear();
+        rerender();
+    }
 
+    // Throws away the renders of the graphs that use a parameter, for when it has been set; the other graphs' renders,
+    // finished or not, are left alone. Animated graphs are drawn from the animator's frames while it runs, and the
+    // animator invalidates them when it stops.
+    public void invalidateRenders(String parameterName) {
+        boolean invalidated = false;
         for (int i = 0; i < graphs.getGraphCount(); ++i) {
-            if (graphs.isGraphEnabled(i)) {
-                var graph = graphs.getGraph(i);
-                paintGraph(i, graph, g);
+            if (graphs.getGraph(i) instanceof CompiledGraph cg && cg.usesParameter(parameterName) && !animator.animates(cg)) {
+                graphRenders.set(i, null);
+                graphLayers.get(i).invalidate();
+                tileCache.invalidate(cg.graph());
+                progressiveRenderer.forget(i, cg.graph());
+                invalidated = true;
             }
         }
+        if (invalidated)
+            repaint();
     }
 
-    private void paintGrid(Graphics2D g) {
-        g.setStroke(new BasicStroke(1f));
-        g.setPaint(Color.lightGray);
-        Line2D line = new Line2D.Double();
-        double bx = window.xMin() - window.xMin() % window.xStep();
+    // Called by the progressive renderer with a function graph's finished render
+    void functionRendered(int number, Shape render) {
+        graphRenders.set(number, render);
+    }
 
-        Dimension size = getSize();
-        Point2D sMin = window.mathToScreen(size, new Point2D.Double(window.xMin(), window.yMin()));
-        Point2D sMax = window.mathToScreen(size, new Point2D.Double(window.xMax(), window.yMax()));
-        for (double x = bx; x <= window.xMax(); x += window.xStep()) {
-            double sx = (x - window.xMin()) / (window.xMax() - window.xMin()) * size.width;
-            line.setLine(sx, sMin.getY(), sx, sMax.getY());
-            g.draw(line);
-        }
+    // Called by the progressive renderer once it has handed over a pass: the function graphs it covered are drawn
+    // again, and the other graphs only where its tiles are
+    void passRendered(List<Integer> functionNumbers, List<TileCache.Key> tiles) {
+        for (int number : functionNumbers)
+            graphLayers.get(number).invalidate();
+        if (!functionNumbers.isEmpty())
+            repaint();
 
-        double by = window.yMin() - window.yMin() % window.yStep();
-        for (double y = by; y <= window.yMax(); y += window.yStep()) {
-            double sy = size.height - (y - window.yMin()) / (window.yMax() - window.yMin()) * size.height;
-            line.setLine(sMin.getX(), sy, sMax.getX(), sy);
-            g.draw(line);
+        Dimension size = getSize();
+        long originX = Rendering.gridOriginX(window, size), originY = Rendering.gridOriginY(window, size);
+        for (var key : tiles) {
+            var region = new Rectangle((int)(key.column() * TileCache.TILE_SIZE - originX),
+                    (int)(key.row() * TileCache.TILE_SIZE - originY), TileCache.TILE_SIZE, TileCache.TILE_SIZE);
+            for (int i = 0; i < graphs.getGraphCount(); ++i)
+                if (renderedGraph(graphs.getGraph(i)) == key.graph())
+                    graphLayers.get(i).invalidate(region);
+            repaint(region);
         }
     }
 
-    private void paintAxes(Graphics2D g) {
-        g.setPaint(new Color(0x102040));
-        g.setStroke(new BasicStroke(3f));
-
-        Dimension size = getSize();
-        Line2D line = new Line2D.Double();
-        Point2D sMin = window.mathToScreen(size, new Point2D.Double(window.xMin(), window.yMin()));
-        Point2D sMax = window.mathToScreen(size, new Point2D.Double(window.xMax(), window.yMax()));
-        Point2D sOrigin = window.mathToScreen(size, new Point2D.Double(0, 0));
+    // Called by the animator once it has swapped in a new frame
+    void frameShown() {
+        for (int i = 0; i < graphs.getGraphCount(); ++i)
+            if (graphs.getGraph(i) instanceof CompiledGraph cg && animator.animates(cg))
+                graphLayers.get(i).invalidate();
+        repaint();
+    }
 
-        line.setLine(sMin.getX(), sOrigin.getY(), sMax.getX(), sOrigin.getY());
-        g.draw(line);
+    // Throws away the renders of the whole view, for when it has changed; tiles are still good
+    private void rerender() {
+        graphRenders.replaceAll(r -> null);
+        invalidateGraphLayers();
+        repaint();
+    }
 
-        line.setLine(sOrigin.getX(), sMin.getY(), sOrigin.getX(), sMax.getY());
-        g.draw(line);
+    private void invalidateGraphLayers() {
+        for (var layer : graphLayers)
+            layer.invalidate();
     }
 
-    private void paintAxesTicks(Graphics2D g) {
-        g.setPaint(new Color(0x102040));
-        g.setStroke(new BasicStroke(3f));
+    // Abandons the progressive renderer's work. The layers it would have drawn into are drawn again, which asks for it
+    // afresh if it's still needed.
+    private void cancelRendering(boolean dropPreviews) {
+        if (!progressiveRenderer.isIdle())
+            invalidateGraphLayers();
+        if (dropPreviews)
+            progressiveRenderer.reset();
+        else
+            progressiveRenderer.cancel();
+    }
 
-        Line2D line = new Line2D.Double();
-        double bx = window.xMin() - window.xMin() % window.xStep();
+    @Override
+    protected void paintComponent(Graphics _g) {
+        super.paintComponent(_g);
+        var clip = _g.getClipBounds();
+        clip = (clip == null) ? new Rectangle(getSize()) : clip.intersection(new Rectangle(getSize()));
+        if (clip.isEmpty())
+            return;
 
-        double asx = window.mathToScreenX(getSize(), 0);
-        double asy = window.mathToScreenY(getSize(), 0);
+        if (isDragging()) {
+            _g.setColor(getBackground());
+            _g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            _g.drawImage(dragSnapshot, dragPoint.x - dragOriginScreen.x, dragPoint.y - dragOriginScreen.y, null);
+            return;
+        }
 
-        Dimension size = getSize();
-        Point2D sMin = window.mathToScreen(size, new Point2D.Double(window.xMin(), window.yMin()));
-        Point2D sMax = window.mathToScreen(size, new Point2D.Double(window.xMax(), window.yMax()));
-        for (double x = bx; x <= window.xMax(); x += window.xStep()) {
-            double sx = (x - window.xMin()) / (window.xMax() - window.xMin()) * size.width;
-            line.setLine(sx, asy - 4, sx, asy + 4);
-            g.draw(line);
+        Graphics2D g = (Graphics2D)_g.create();
+        if (!window.equals(backgroundWindow)) {
+            backgroundLayer.invalidate();
+            backgroundWindow = window;
+        }
+        backgroundLayer.paint(g, clip, this, layerGraphics -> Rendering.paintBackground(layerGraphics, window, getSize(), getBackground()));
+
+        if (isZooming())
+            g.drawImage(zoomSnapshot, window.transformFrom(zoomOriginalWindow, getSize()), null);
+        else {
+            paintGraphLayers(g, clip);
+            if (progressive)
+                progressiveRenderer.submit();
         }
+        g.dispose();
+    }
 
-        double by = window.yMin() - window.yMin() % window.yStep();
-        for (double y = by; y <= window.yMax(); y += window.yStep()) {
-            double sy = size.height - (y - window.yMin()) / (window.yMax() - window.yMin()) * size.height;
-            line.setLine(asx - 4, sy, asx + 4, sy);
-            g.draw(line);
+    private void paintGraphLayers(Graphics2D g, Rectangle clip) {
+        for (int i = 0; i < graphs.getGraphCount(); ++i) {
+            if (graphs.isGraphEnabled(i)) {
+                int number = i;
+                var graph = graphs.getGraph(i);
+                graphLayers.get(i).paint(g, clip, this, layerGraphics -> {
+                    layerGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    paintGraph(number, graph, layerGraphics);
+                });
+            }
         }
     }
 
+    // The renderer fills in the event's pixel and evaluation counts. An animated graph is drawn from the animator's
+    // current frame instead, and only rendered here if the frame doesn't have it yet.
     @SuppressWarnings("unchecked")
-    private <R> R findRender(int number, Supplier<R> renderer) {
+    private <R> R findRender(int number, Graph graph, Function<PipelineEvents.Render, R> renderer) {
+        if (animator.isRunning()) {
+            var frameRender = animator.getRender(number, graph);
+            if (frameRender != null)
+                return (R)frameRender;
+        }
+
         R render = (R)graphRenders.get(number);
         if (render == null) {
-            render = renderer.get();
+            var event = new PipelineEvents.Render();
+            event.begin();
+            render = renderer.apply(event);
+            event.end();
+            if (event.shouldCommit()) {
+                event.graphNumber = number;
+                event.kind = graph.getClass().getSimpleName();
+                event.width = getWidth();
+                event.height = getHeight();
+                event.commit();
+            }
             graphRenders.set(number, render);
         }
 
@@ -174,79 +323,134 @@ public class GraphCanvas extends JComponent {
 
     private void paintGraph(int number, Graph graph, Graphics2D g) {
         switch (graph) {
-            case CompiledGraph(var eqn, Graph actualGraph) -> paintGraph(number, actualGraph, g);
+            case CompiledGraph(var eqn, Graph actualGraph, var functions, var parameters) -> paintGraph(number, actualGraph, g);
             case XFunction xf -> paintGraph(number, xf, g);
             case TruthPlot tp -> paintGraph(number, tp, g);
+            case ImplicitCurve ic -> paintGraph(number, ic, g);
             case EmptyGraph eg -> { /* do nothing */ }
             default -> throw new RuntimeException("No rendering implemented for graph " + graph);
         }
     }
 
     private void paintGraph(int number, XFunction graph, Graphics2D g) {
-        g.setPaint(Color.red.darker());
-        g.setStroke(new BasicStroke(2f));
-
-        Shape render = findRender(number, () -> {
-            double yMax = window.screenToMath(getSize(), new Point2D.Float(0, 0)).getY(),
-                    yMin = window.screenToMath(getSize(), new Point2D.Float(0, getHeight() - 1)).getY();
-
-            Dimension size = getSize();
-            var path = new GeneralPath();
-            var lastY = Double.NaN;
-            for (int i = 0; i < size.width; ++i) {
-                double x = ((double) i) / size.width * (window.xMax() - window.xMin()) + window.xMin();
-                double y = graph.evaluate(x);
-                Point2D screen = window.mathToScreen(size, new Point2D.Double(x, y));
-
-                if (i == 0)
-                    path.moveTo(screen.getX(), screen.getY());
-                else {
-                    if (lastY > yMax && y < yMin
-                            || lastY < yMin && y > yMax)
-                        path.moveTo(screen.getX(), screen.getY());
-                    else
-                        path.lineTo(screen.getX(), screen.getY());
-                }
-
-                lastY = y;
-            }
+        g.setPaint(Rendering.GRAPH_COLOR);
+        g.setStroke(Rendering.GRAPH_STROKE);
+
+        Shape render;
+        if (progressive && !(animator.isRunning() && animator.getRender(number, graph) != null)) {
+            render = (Shape)graphRenders.get(number);
+            if (render == null)
+                render = progressiveRenderer.requestFunction(number, graph, window, getSize(), samplingBudget);
+            if (render == null)
+                return;
+        } else {
+            render = findRender(number, graph, event -> {
+                Dimension size = getSize();
+                var path = new GeneralPath();
+                event.evaluations = Rendering.renderFunction(graph, window, size, sampler, samplingBudget, path);
+                event.pixels = size.width;
+                return path;
+            });
+        }
 
-            return path;
-        });
+        g.draw(render);
+    }
 
-        if (isDragging()) {
-            g = (Graphics2D)g.create();
-            g.translate(dragPoint.x - dragOriginScreen.x, dragPoint.y - dragOriginScreen.y);
-            g.draw(render);
-            g.dispose();
-        } else
-            g.draw(render);
+    private void paintGraph(int number, ImplicitCurve graph, Graphics2D g) {
+        g.setPaint(Rendering.GRAPH_COLOR);
+        g.setStroke(Rendering.GRAPH_STROKE);
+
+        if (animator.isRunning() && animator.getRender(number, graph) instanceof Shape frameRender)
+            g.draw(frameRender);
+        else
+            paintTiles(number, graph, g);
     }
 
     private void paintGraph(int number, TruthPlot graph, Graphics2D g) {
-        Image render = findRender(number, () -> {
-            var image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
-
-            int yesColor = 0x40ff0000;
-            int noColor = 0x00000000;
-
-            for (int j = 0; j < getHeight(); ++j) {
-                for (int i = 0; i < getWidth(); ++i) {
-                    Point2D math = window.screenToMath(getSize(), new Point2D.Float(i, j));
-                    if (graph.satisfies(math.getX(), math.getY()))
-                        image.setRGB(i, j, yesColor);
-                    else
-                        image.setRGB(i, j, noColor);
-                }
+        if (animator.isRunning() && animator.getRender(number, graph) instanceof Image frameRender)
+            g.drawImage(frameRender, 0, 0, null);
+        else
+            paintTiles(number, graph, g);
+    }
+
+    // Draws graph from the tiles covering the part of the view inside g's clip. Tiles that aren't cached are rendered in
+    // parallel, or if progressive asked for and drawn from their latest coarse pass, scaled up, if there is one.
+    private void paintTiles(int number, Graph graph, Graphics2D g) {
+        final int tileSize = TileCache.TILE_SIZE;
+        Dimension size = getSize();
+        var visible = new Rectangle(size);
+        if (g.getClipBounds() != null)
+            visible = visible.intersection(g.getClipBounds());
+        if (visible.isEmpty())
+            return;
+
+        double xScale = window.xSpan() / size.width, yScale = window.ySpan() / size.height;
+        long originX = Rendering.gridOriginX(window, size), originY = Rendering.gridOriginY(window, size);
+        long column0 = Math.floorDiv(originX + visible.x, tileSize),
+                column1 = Math.floorDiv(originX + visible.x + visible.width - 1, tileSize);
+        long row0 = Math.floorDiv(originY + visible.y, tileSize),
+                row1 = Math.floorDiv(originY + visible.y + visible.height - 1, tileSize);
+        int columns = (int)(column1 - column0 + 1), rows = (int)(row1 - row0 + 1);
+
+        var keys = new TileCache.Key[columns * rows];
+        var renders = new Object[keys.length];
+        var missing = new ArrayList<Integer>();
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < columns; ++c) {
+                int index = r * columns + c;
+                keys[index] = TileCache.Key.of(graph, xScale, yScale, column0 + c, row0 + r);
+                renders[index] = tileCache.get(keys[index]);
+                if (renders[index] == null && progressive)
+                    renders[index] = progressiveRenderer.requestTile(graph, keys[index], xScale, yScale);
+                else if (renders[index] == null)
+                    missing.add(index);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            var event = new PipelineEvents.Render();
+            event.begin();
+            long evaluations = missing.parallelStream().mapToLong(index -> {
+                var key = keys[index];
+                var tile = Rendering.renderTile(graph, xScale, yScale, key.column(), key.row(), 1);
+                renders[index] = tile.render();
+                return tile.evaluations();
+            }).sum();
+            for (int index : missing)
+                tileCache.put(keys[index], renders[index], Rendering.estimateBytes(renders[index]));
+            event.end();
+            if (event.shouldCommit()) {
+                event.graphNumber = number;
+                event.kind = graph.getClass().getSimpleName();
+                event.width = size.width;
+                event.height = size.height;
+                event.pixels = (long)missing.size() * tileSize * tileSize;
+                event.evaluations = evaluations;
+                event.tilesReused = keys.length - missing.size();
+                event.tilesRendered = missing.size();
+                event.commit();
             }
+        }
 
-            return image;
-        });
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < columns; ++c) {
+                int x = (int)((column0 + c) * tileSize - originX), y = (int)((row0 + r) * tileSize - originY);
+                var render = renders[r * columns + c];
+                if (render instanceof ProgressiveRenderer.Preview preview)
+                    render = preview.render();
+                Rendering.drawTile(g, render, x, y);
+            }
+        }
+    }
 
-        if (isDragging())
-            g.drawImage(render, dragPoint.x - dragOriginScreen.x, dragPoint.y - dragOriginScreen.y, null);
-        else
-            g.drawImage(render, 0, 0, null);
+    private void forgetTiles(Graph graph) {
+        tileCache.invalidate(renderedGraph(graph));
+    }
+
+    // The graph that tiles of graph are keyed by: paintGraph unwraps a CompiledGraph before drawing, so its tiles are
+    // cached under the graph inside it
+    private static Graph renderedGraph(Graph graph) {
+        return (graph instanceof CompiledGraph cg) ? cg.graph() : graph;
     }
 
     @Override
@@ -256,24 +460,29 @@ public class GraphCanvas extends JComponent {
 
     @Override
     protected void processMouseWheelEvent(MouseWheelEvent e) {
+        if (isDragging())
+            return;
         Point2D c = window.screenToMath(getSize(), new Point2D.Float(e.getX(), e.getY()));
-        zoom(c.getX(), c.getY(), (e.getWheelRotation() < 0) ? 0.8 : 1.25);
+        zoom(c.getX(), c.getY(), Math.pow(WHEEL_ZOOM, e.getPreciseWheelRotation()));
     }
 
     @Override
     protected void processComponentEvent(ComponentEvent e) {
         if (e.getID() == ComponentEvent.COMPONENT_RESIZED) {
-            graphRenders.replaceAll(o -> null);
-            repaint();
+            stopZoom();
+            cancelRendering(false);
+            rerender();
         }
     }
 
     @Override
     protected void processMouseEvent(MouseEvent e) {
         if (e.getID() == MouseEvent.MOUSE_PRESSED && e.getButton() == MouseEvent.BUTTON1) {
-            dragSnapshot = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+            endZoom();
+            dragSnapshot = imagePool.acquire(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
             var snapshotGraphics = dragSnapshot.getGraphics();
             paintComponent(snapshotGraphics);
+            snapshotGraphics.dispose();
             dragOriginScreen = e.getPoint();
             dragOriginMath = window.screenToMath(getSize(), new Point2D.Double(e.getX(), e.getY()));
             dragOriginalWindow = window;
@@ -292,12 +501,14 @@ public class GraphCanvas extends JComponent {
                 dragOriginMath = null;
                 dragOriginalWindow = null;
                 dragPoint = null;
+                imagePool.release(dragSnapshot);
                 dragSnapshot = null;
             }
 
+            // the tiles are still good where they are; only the renders of the whole view have to go
             if (dragged) {
-                graphRenders.replaceAll(r -> null);
-                repaint();
+                cancelRendering(false);
+                rerender();
             }
         }
         super.processMouseEvent(e);
@@ -312,6 +523,7 @@ public class GraphCanvas extends JComponent {
             double Δy = dragOriginMath.getY() - pMath.getY();
             window = dragOriginalWindow.translate(Δx, Δy);
             dragPoint = p;
+            cancelRendering(false);
             repaint();
         }
     }
@@ -320,7 +532,51 @@ public class GraphCanvas extends JComponent {
         return dragOriginScreen != null;
     }
 
+    // Zooms by factor (less than 1 to zoom in) about the math point (cx, cy). Zooms in quick succession make up a
+    // gesture: until it has been idle for ZOOM_IDLE_MILLIS the graphs are drawn scaled from how they looked when it
+    // began, and only then are they rendered again, for the window it ended at.
     public void zoom(double cx, double cy, double factor) {
-        throw new RuntimeException("Unimplemented");
+        var zoomed = window.zoom(cx, cy, factor);
+        if (!isZoomable(zoomed.xMin(), zoomed.xMax()) || !isZoomable(zoomed.yMin(), zoomed.yMax()))
+            return;
+
+        if (!isZooming()) {
+            zoomSnapshot = imagePool.acquire(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+            var g = zoomSnapshot.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, zoomSnapshot.getWidth(), zoomSnapshot.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            paintGraphLayers(g, new Rectangle(getSize()));
+            g.dispose();
+            zoomOriginalWindow = window;
+        }
+        window = zoomed;
+        cancelRendering(false);
+        zoomIdleTimer.restart();
+        repaint();
+    }
+
+    private static boolean isZoomable(double min, double max) {
+        double span = max - min;
+        return span >= MIN_SPAN && span >= MIN_RELATIVE_SPAN * Math.max(Math.abs(min), Math.abs(max)) && span <= MAX_SPAN;
+    }
+
+    public boolean isZooming() {
+        return zoomSnapshot != null;
+    }
+
+    // Ends a wheel gesture, rendering the graphs for where it left the window
+    private void endZoom() {
+        if (!isZooming())
+            return;
+        stopZoom();
+        rerender();
+    }
+
+    private void stopZoom() {
+        zoomIdleTimer.stop();
+        imagePool.release(zoomSnapshot);
+        zoomSnapshot = null;
+        zoomOriginalWindow = null;
     }
 }
@@ -1,5 +1,7 @@
 package klenth.googol.gui;
 
+import edu.westminstercollege.cs.jade.SyntaxException;
+import klenth.googol.Equations;
 import klenth.googol.graph.CompiledGraph;
 import klenth.googol.graph.EmptyGraph;
 import klenth.googol.graph.Graph;
@@ -36,8 +38,7 @@ public class GraphSetDialog extends JDialog {
         }
 
         table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
-        var equationCellEditor = new EquationCellEditor(mathContext);
-        table.setDefaultEditor(Graph.class, new EquationCellEditor(mathContext));
+        table.setDefaultEditor(Graph.class, new EquationCellEditor(mathContext, graphSet));
         table.setDefaultRenderer(Graph.class, new EquationCellEditor(mathContext));
         table.setRowHeight(32);
         table.getColumnModel().getColumn(0).setMaxWidth(32);
@@ -56,5 +57,25 @@ public class GraphSetDialog extends JDialog {
                 graphSet.addGraph(new CompiledGraph("", new EmptyGraph()));
             }
         });
+        toolbar.add(new AbstractAction("Define function") {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                defineFunction();
+            }
+        });
+    }
+
+    private void defineFunction() {
+        var definition = JOptionPane.showInputDialog(this, "Function, like f(a, b) = a^2 + b:", "Define Function", JOptionPane.PLAIN_MESSAGE);
+        if (definition == null || definition.isBlank())
+            return;
+
+        try {
+            var function = Equations.parseFunctionDefinition(definition, mathContext.getConstantValues(), mathContext.getEnvFunctions());
+            mathContext.defineFunction(function);
+        } catch (SyntaxException | IllegalArgumentException ex) {
+            var message = (ex.getMessage() != null) ? ex.getMessage() : ex.toString();
+            JOptionPane.showMessageDialog(this, message, "Define Function", JOptionPane.ERROR_MESSAGE);
+        }
     }
 }
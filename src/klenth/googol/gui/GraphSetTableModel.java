@@ -21,6 +21,11 @@ public class GraphSetTableModel extends AbstractTableModel {
             fireTableRowsDeleted(number, number);
         }
 
+        @Override
+        public void graphReplaced(GraphSet source, Graph oldGraph, Graph newGraph, int number) {
+            fireTableRowsUpdated(number, number);
+        }
+
         @Override
         public void graphAbled(GraphSet source, Graph abledGraph, int number, boolean enabled) {
             fireTableRowsUpdated(number, number);
@@ -88,7 +93,9 @@ public class GraphSetTableModel extends AbstractTableModel {
         } else if (columnIndex == 1) {
             if (!(aValue instanceof Graph graph))
                 throw new IllegalArgumentException("Value not instanceof Graph");
-            graphSet.setGraph(rowIndex, graph);
+            // the editor may already have installed this graph while the user was typing
+            if (graphSet.getGraph(rowIndex) != graph)
+                graphSet.setGraph(rowIndex, graph);
         }
     }
 }
@@ -0,0 +1,37 @@
+package klenth.googol.gui;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+// Images kept for reuse, so that one the canvas only needs for a moment (the snapshot for a drag or a zoom) doesn't mean
+// allocating a screenful of pixels every time. Releasing an image drops any of another size, since they're no use once
+// the canvas has been resized.
+//
+// Only used on the event thread.
+final class ImagePool {
+
+    private static final int CAPACITY = 2;
+
+    private final List<BufferedImage> free = new ArrayList<>();
+
+    // An image of the given size and type, holding whatever it was last left holding
+    BufferedImage acquire(int width, int height, int type) {
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+        for (int i = 0; i < free.size(); ++i) {
+            var image = free.get(i);
+            if (image.getWidth() == width && image.getHeight() == height && image.getType() == type)
+                return free.remove(i);
+        }
+        return new BufferedImage(width, height, type);
+    }
+
+    void release(BufferedImage image) {
+        if (image == null)
+            return;
+        free.removeIf(other -> other.getWidth() != image.getWidth() || other.getHeight() != image.getHeight());
+        if (free.size() < CAPACITY)
+            free.add(image);
+    }
+}
@@ -0,0 +1,112 @@
+package klenth.googol.gui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.function.Consumer;
+
+// One layer of the canvas, kept in an offscreen image from paint to paint: a VolatileImage when the component has a
+// graphics configuration to make one with, and a BufferedImage otherwise (when headless, or before the component is
+// shown). The layer remembers which part of it is out of date, and only that part is drawn again; compositing copies
+// only the part of the layer inside the clip.
+//
+// Only used on the event thread.
+final class Layer {
+
+    // a VolatileImage can lose its contents while being drawn; past this many tries, it's left for the next paint
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final boolean translucent;
+    private Image image = null;
+    // the part that has to be drawn again, or null if none of it does
+    private Rectangle dirty = null;
+
+    Layer(boolean translucent) {
+        this.translucent = translucent;
+    }
+
+    void invalidate() {
+        dirty = new Rectangle(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    void invalidate(Rectangle region) {
+        if (dirty == null)
+            dirty = new Rectangle(region);
+        else
+            dirty.add(region);
+    }
+
+    boolean isDirty() {
+        return dirty != null;
+    }
+
+    // Brings the layer up to date, with painter drawing into the out-of-date part (which it's clipped to, and which has
+    // been cleared first), and composites the part of it inside clip onto g
+    void paint(Graphics2D g, Rectangle clip, Component component, Consumer<Graphics2D> painter) {
+        int width = component.getWidth(), height = component.getHeight();
+        if (width <= 0 || height <= 0)
+            return;
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            prepare(component, width, height);
+            if (dirty != null)
+                redraw(width, height, painter);
+            g.drawImage(image, clip.x, clip.y, clip.x + clip.width, clip.y + clip.height,
+                    clip.x, clip.y, clip.x + clip.width, clip.y + clip.height, null);
+            if (!(image instanceof VolatileImage volatileImage) || !volatileImage.contentsLost())
+                return;
+            invalidate();
+        }
+    }
+
+    // Frees the image, for when the layer won't be painted again
+    void dispose() {
+        if (image != null)
+            image.flush();
+        image = null;
+        dirty = null;
+    }
+
+    private void prepare(Component component, int width, int height) {
+        var configuration = component.getGraphicsConfiguration();
+        boolean accelerated = configuration != null && !GraphicsEnvironment.isHeadless();
+        if (image != null && image.getWidth(null) == width && image.getHeight(null) == height
+                && (image instanceof VolatileImage) == accelerated) {
+            if (!(image instanceof VolatileImage volatileImage))
+                return;
+            switch (volatileImage.validate(configuration)) {
+                case VolatileImage.IMAGE_OK -> { return; }
+                case VolatileImage.IMAGE_RESTORED -> {
+                    invalidate();
+                    return;
+                }
+                default -> { /* incompatible with the configuration now; make a new one */ }
+            }
+        }
+
+        if (image != null)
+            image.flush();
+        int transparency = translucent ? Transparency.TRANSLUCENT : Transparency.OPAQUE;
+        image = accelerated
+                ? configuration.createCompatibleVolatileImage(width, height, transparency)
+                : new BufferedImage(width, height, translucent ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_RGB);
+        invalidate();
+    }
+
+    private void redraw(int width, int height, Consumer<Graphics2D> painter) {
+        var region = dirty.intersection(new Rectangle(0, 0, width, height));
+        dirty = null;
+        if (region.isEmpty())
+            return;
+
+        var g = (Graphics2D)image.getGraphics();
+        g.setClip(region);
+        if (translucent) {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(region.x, region.y, region.width, region.height);
+            g.setComposite(AlphaComposite.SrcOver);
+        }
+        painter.accept(g);
+        g.dispose();
+    }
+}
@@ -5,31 +5,27 @@ import klenth.googol.Equations;
 import klenth.googol.Expressions;
 import klenth.googol.ast.Node;
 import klenth.googol.graph.*;
-import klenth.googol.math.EnvFunction;
 import klenth.googol.math.MathContext;
+import klenth.googol.math.Parameters;
 
 import java.awt.*;
 import java.awt.event.*;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 import javax.swing.*;
 
 public class MainWindow extends JFrame {
 
-    private MathContext mathContext = new MathContext(
-            Map.of(
-                    "pi", Math.PI,
-                    "π", Math.PI,
-                    "e", Math.E
-            ),
-            Arrays.stream(EnvFunction.Builtin.values())
-                    .collect(Collectors.toMap(EnvFunction.Builtin::getName, f -> f))
-    );
+    // the parameter that animation advances
+    private static final String TIME = "t";
 
+    private MathContext mathContext = MathContext.standard(new Parameters(Map.of(TIME, 0.0)));
+
+    private CompilePipeline pipeline = new CompilePipeline(mathContext);
     private GraphCanvas canvas = new GraphCanvas();
     private GraphSetDialog dialog = new GraphSetDialog(this, canvas.getGraphSet(), mathContext);
+    private JToggleButton animateButton = new JToggleButton("Animate " + TIME);
+    private JLabel animationLabel = new JLabel();
 
     private Graph graph = null;
 
@@ -41,11 +37,32 @@ public class MainWindow extends JFrame {
         cPane.setLayout(new BorderLayout(5, 5));
         cPane.add(BorderLayout.CENTER, canvas);
 
+        var animationPanel = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        animationPanel.add(animateButton);
+        animationPanel.add(animationLabel);
+        cPane.add(BorderLayout.SOUTH, animationPanel);
+
         pack();
 
         setDefaultCloseOperation(EXIT_ON_CLOSE);
 
         canvas.getGraphSet().addGraph(new CompiledGraph("", new EmptyGraph()));
+        // only the graphs that call a function are recompiled when it changes
+        mathContext.addListener((source, names) -> SwingUtilities.invokeLater(
+                () -> pipeline.recompileDependents(canvas.getGraphSet(), names)));
+        // and none at all when a parameter changes, only re-rendered
+        mathContext.getParameters().addListener((source, name, value) -> SwingUtilities.invokeLater(
+                () -> canvas.invalidateRenders(name)));
+
+        var animator = canvas.getAnimator();
+        animateButton.addActionListener(e -> {
+            if (animateButton.isSelected())
+                animator.start(mathContext.getParameters(), TIME);
+            else
+                animator.stop();
+        });
+        animator.addListener((source, frameNumber, time) -> animationLabel.setText(
+                String.format("%s = %.2f    %s", TIME, time, source.getStatistics())));
 
         enableEvents(AWTEvent.WINDOW_EVENT_MASK);
     }
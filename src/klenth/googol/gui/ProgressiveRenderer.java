@@ -0,0 +1,276 @@
+package klenth.googol.gui;
+
+import klenth.googol.PipelineEvents;
+import klenth.googol.graph.AdaptiveSampler;
+import klenth.googol.graph.Graph;
+import klenth.googol.graph.XFunction;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.GeneralPath;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+// Renders what the canvas is missing off the event thread, in passes from coarse to fine, so that painting never
+// waits on an equation: it draws whatever has been rendered so far and asks for the rest. Everything asked for in one
+// paint goes into the same job, whose first pass samples curve and plot tiles at every TILE_STEPS[0]th pixel and
+// functions every FUNCTION_STEP pixels; later passes sample tiles more finely and trace functions adaptively. Each
+// pass is handed to the canvas as soon as it's done. The first samples plots 1/64 as densely as the last and contours
+// curves in cells 8 pixels across, so it shows after a small fraction of the work however costly the equation.
+//
+// Changing the view or the graphs cancels whatever is outstanding. A job checks the generation it was started in
+// before each tile and gives up once that has moved on, and passes from an old generation are thrown away on arrival.
+// Setting a parameter only forgets the work for the graphs that use it: jobs submitted before then skip those graphs'
+// tiles and functions, and everything else goes on being rendered.
+//
+// Everything here but the job itself runs on the event thread.
+public class ProgressiveRenderer {
+
+    private static final int[] TILE_STEPS = { 8, 2, 1 };
+    public static final int PASSES = TILE_STEPS.length;
+    public static final int FUNCTION_STEP = 8;
+    // a sparse pass and an adaptive one
+    private static final int FUNCTION_PASSES = 2;
+    // previews of tiles that never got finished are dropped past this many, rather than kept however far the view goes
+    private static final int MAX_PREVIEWS = 4096;
+
+    public record Statistics(long jobs, long cancelled, long passesShown, double lastFirstPassMillis, double lastCompleteMillis) {
+        @Override
+        public String toString() {
+            return String.format("first pass %.1f ms, complete %.1f ms; %d jobs, %d cancelled, %d passes shown",
+                    lastFirstPassMillis, lastCompleteMillis, jobs, cancelled, passesShown);
+        }
+    }
+
+    public interface Listener {
+        // Called on the event thread after the canvas has been handed a pass; complete is true for a job's last
+        void passShown(ProgressiveRenderer source, int pass, boolean complete);
+    }
+
+    // A coarse render standing in for a tile until the full one is done; only every step-th pixel was sampled
+    record Preview(int step, Object render) {}
+
+    private record TileRequest(Graph graph, TileCache.Key key, double xScale, double yScale) {}
+
+    private record FunctionRequest(int number, XFunction graph, ViewWindow window, Dimension size, long budget) {}
+
+    private record Job(long number, long generation, long startNanos, List<TileRequest> tiles, List<FunctionRequest> functions) {}
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "googol-progressive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final GraphCanvas canvas;
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private final Map<TileCache.Key, Preview> tilePreviews = new HashMap<>();
+    private final Set<TileCache.Key> pendingTiles = new HashSet<>();
+    private final Map<Integer, Shape> functionPreviews = new HashMap<>();
+    private final Set<Integer> pendingFunctions = new HashSet<>();
+    private List<TileRequest> tileRequests = new ArrayList<>();
+    private List<FunctionRequest> functionRequests = new ArrayList<>();
+
+    // written on the event thread, read by the job to notice it's been cancelled
+    private volatile long generation = 0;
+    // the graphs forgotten in this generation, each with the number of the last job submitted before it was; read by
+    // the job too
+    private final Map<Graph, Long> forgotten = new ConcurrentHashMap<>();
+    private long jobs = 0, cancelled = 0, passesShown = 0;
+    private long lastFirstPassNanos = 0, lastCompleteNanos = 0;
+
+    // only used by the job, which runs on the executor's one thread
+    private final AdaptiveSampler sampler = new AdaptiveSampler();
+
+    ProgressiveRenderer(GraphCanvas canvas) {
+        this.canvas = canvas;
+    }
+
+    // The best render of the tile so far, or null if there's none yet; asks for it unless it has already been
+    Preview requestTile(Graph graph, TileCache.Key key, double xScale, double yScale) {
+        if (pendingTiles.add(key))
+            tileRequests.add(new TileRequest(graph, key, xScale, yScale));
+        return tilePreviews.get(key);
+    }
+
+    // As requestTile, for a function graph over the whole view
+    Shape requestFunction(int number, XFunction graph, ViewWindow window, Dimension size, long budget) {
+        if (pendingFunctions.add(number))
+            functionRequests.add(new FunctionRequest(number, graph, window, new Dimension(size), budget));
+        return functionPreviews.get(number);
+    }
+
+    // Starts rendering everything asked for since the last submit
+    void submit() {
+        if (tileRequests.isEmpty() && functionRequests.isEmpty())
+            return;
+        var job = new Job(++jobs, generation, System.nanoTime(), tileRequests, functionRequests);
+        tileRequests = new ArrayList<>();
+        functionRequests = new ArrayList<>();
+        executor.execute(() -> {
+            try {
+                run(job);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        });
+    }
+
+    // Abandons everything outstanding, for when the view has changed. Tile previews are kept, being anchored to the
+    // world rather than the view.
+    void cancel() {
+        if (!isIdle())
+            ++cancelled;
+        ++generation;
+        forgotten.clear();
+        pendingTiles.clear();
+        pendingFunctions.clear();
+        tileRequests.clear();
+        functionRequests.clear();
+        functionPreviews.clear();
+        if (tilePreviews.size() > MAX_PREVIEWS)
+            tilePreviews.clear();
+    }
+
+    // As cancel, dropping every preview too, for when the graphs or their values have changed
+    void reset() {
+        cancel();
+        tilePreviews.clear();
+    }
+
+    // As reset, for graph number alone, for when its values have changed. graph is what it's rendered as (see
+    // GraphCanvas.renderedGraph), which its tiles are keyed by.
+    void forget(int number, Graph graph) {
+        forgotten.put(graph, jobs);
+        pendingTiles.removeIf(key -> key.graph() == graph);
+        tilePreviews.keySet().removeIf(key -> key.graph() == graph);
+        tileRequests.removeIf(request -> request.key().graph() == graph);
+        pendingFunctions.remove(number);
+        functionPreviews.remove(number);
+        functionRequests.removeIf(request -> request.number() == number);
+    }
+
+    // Whether everything asked for has been rendered
+    public boolean isIdle() {
+        return pendingTiles.isEmpty() && pendingFunctions.isEmpty();
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(jobs, cancelled, passesShown, lastFirstPassNanos / 1e6, lastCompleteNanos / 1e6);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // On the render thread
+    private void run(Job job) {
+        for (int pass = 0; pass < PASSES; ++pass) {
+            var event = new PipelineEvents.Pass();
+            event.begin();
+            int step = TILE_STEPS[pass];
+
+            var functionRenders = new Shape[job.functions().size()];
+            long functionEvaluations = 0;
+            if (pass < FUNCTION_PASSES) {
+                for (int i = 0; i < functionRenders.length && job.generation() == generation; ++i) {
+                    var request = job.functions().get(i);
+                    if (isForgotten(job, request.graph()))
+                        continue;
+                    long budget = (pass == 0) ? request.size().width / FUNCTION_STEP + 1 : request.budget();
+                    var path = new GeneralPath();
+                    functionEvaluations += Rendering.renderFunction(request.graph(), request.window(), request.size(), sampler, budget, path);
+                    functionRenders[i] = path;
+                }
+            }
+
+            var tileRenders = new Object[job.tiles().size()];
+            long tileEvaluations = IntStream.range(0, tileRenders.length).parallel().mapToLong(i -> {
+                var request = job.tiles().get(i);
+                if (job.generation() != generation || isForgotten(job, request.key().graph()))
+                    return 0;
+                var tile = Rendering.renderTile(request.graph(), request.xScale(), request.yScale(),
+                        request.key().column(), request.key().row(), step);
+                tileRenders[i] = tile.render();
+                return tile.evaluations();
+            }).sum();
+
+            boolean current = job.generation() == generation;
+            event.end();
+            if (event.shouldCommit()) {
+                event.pass = pass;
+                event.step = step;
+                event.tiles = tileRenders.length;
+                event.functions = functionRenders.length;
+                event.evaluations = functionEvaluations + tileEvaluations;
+                event.cancelled = !current;
+                event.commit();
+            }
+            if (!current)
+                return;
+
+            int shownPass = pass;
+            SwingUtilities.invokeLater(() -> show(job, shownPass, functionRenders, tileRenders));
+        }
+    }
+
+    private boolean isForgotten(Job job, Graph graph) {
+        return job.number() <= forgotten.getOrDefault(graph, 0L);
+    }
+
+    private void show(Job job, int pass, Shape[] functionRenders, Object[] tileRenders) {
+        if (job.generation() != generation)
+            return;
+        boolean complete = (pass == PASSES - 1);
+
+        for (int i = 0; i < functionRenders.length; ++i) {
+            var request = job.functions().get(i);
+            int number = request.number();
+            if (functionRenders[i] == null || isForgotten(job, request.graph()))
+                continue;
+            if (pass == FUNCTION_PASSES - 1) {
+                canvas.functionRendered(number, functionRenders[i]);
+                functionPreviews.remove(number);
+                pendingFunctions.remove(number);
+            } else
+                functionPreviews.put(number, functionRenders[i]);
+        }
+
+        var tileCache = canvas.getTileCache();
+        for (int i = 0; i < tileRenders.length; ++i) {
+            var key = job.tiles().get(i).key();
+            if (tileRenders[i] == null || isForgotten(job, key.graph()))
+                continue;
+            if (complete) {
+                tileCache.put(key, tileRenders[i], Rendering.estimateBytes(tileRenders[i]));
+                tilePreviews.remove(key);
+                pendingTiles.remove(key);
+            } else
+                tilePreviews.put(key, new Preview(TILE_STEPS[pass], tileRenders[i]));
+        }
+
+        ++passesShown;
+        long elapsed = System.nanoTime() - job.startNanos();
+        if (pass == 0)
+            lastFirstPassNanos = elapsed;
+        if (complete)
+            lastCompleteNanos = elapsed;
+        canvas.passRendered((pass < FUNCTION_PASSES) ? job.functions().stream().map(FunctionRequest::number).toList() : List.of(),
+                job.tiles().stream().map(TileRequest::key).toList());
+        for (var listener : listeners)
+            listener.passShown(this, pass, complete);
+    }
+}
@@ -0,0 +1,168 @@
+package klenth.googol.gui;
+
+import edu.westminstercollege.cs.jade.SyntaxException;
+import klenth.googol.graph.AdaptiveSampler;
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.EmptyGraph;
+import klenth.googol.graph.Graph;
+import klenth.googol.graph.GraphSet;
+import klenth.googol.graph.ImplicitCurve;
+import klenth.googol.graph.TruthPlot;
+import klenth.googol.graph.XFunction;
+import klenth.googol.math.MathContext;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.GeneralPath;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+// Renders graphs into images without a component: nothing here touches the AWT toolkit or the event thread, so it works
+// headless, for drawing plots in bulk. Images come out as GraphCanvas would paint the same graphs and view, with the
+// background, grid and axes, and curves and plots drawn from the same tiles.
+//
+// Renders share no state beyond the statistics, and nothing is cached from one to the next, so a Renderer can be used
+// from any number of threads at once. A GraphSet isn't safe to change while it's being rendered, though, and neither
+// are the values of the parameters the graphs use.
+public final class Renderer {
+
+    public record Statistics(long images, long evaluations, double renderMillis) {
+        @Override
+        public String toString() {
+            return String.format("%d images, %d evaluations, %.1f ms rendering", images, evaluations, renderMillis);
+        }
+    }
+
+    private final Color background;
+    private final long samplingBudget;
+
+    private final LongAdder images = new LongAdder(), evaluations = new LongAdder(), renderNanos = new LongAdder();
+
+    public Renderer() {
+        this(Color.white, AdaptiveSampler.DEFAULT_BUDGET);
+    }
+
+    // samplingBudget is the most evaluations a function graph may take per image (see AdaptiveSampler)
+    public Renderer(Color background, long samplingBudget) {
+        if (background == null)
+            throw new IllegalArgumentException("Null background");
+        if (samplingBudget < 2)
+            throw new IllegalArgumentException("Sampling budget must be at least 2: " + samplingBudget);
+        this.background = background;
+        this.samplingBudget = samplingBudget;
+    }
+
+    public Color getBackground() {
+        return background;
+    }
+
+    public long getSamplingBudget() {
+        return samplingBudget;
+    }
+
+    // The set's enabled graphs
+    public BufferedImage render(GraphSet graphs, ViewWindow window, int width, int height) {
+        var enabled = new ArrayList<Graph>();
+        graphs.enabledGraphs().forEach(enabled::add);
+        return render(enabled, window, width, height);
+    }
+
+    public BufferedImage renderEquations(List<String> equations, MathContext mathContext, ViewWindow window, int width, int height) throws SyntaxException {
+        var graphs = new ArrayList<Graph>();
+        for (var equation : equations)
+            graphs.add(CompiledGraph.compile(equation, mathContext));
+        return render(graphs, window, width, height);
+    }
+
+    // Graphs are drawn in order, each over the ones before it
+    public BufferedImage render(List<? extends Graph> graphs, ViewWindow window, int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException(String.format("Image size must be positive: %dx%d", width, height));
+        long start = System.nanoTime();
+        var size = new Dimension(width, height);
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        Rendering.paintBackground(g, window, size, background);
+
+        long imageEvaluations = 0;
+        for (var graph : graphs)
+            imageEvaluations += renderGraph(graph, window, size, g);
+        g.dispose();
+
+        images.increment();
+        evaluations.add(imageEvaluations);
+        renderNanos.add(System.nanoTime() - start);
+        return image;
+    }
+
+    public byte[] renderPng(List<? extends Graph> graphs, ViewWindow window, int width, int height) {
+        return encodePng(render(graphs, window, width, height));
+    }
+
+    public static byte[] encodePng(BufferedImage image) {
+        var out = new ByteArrayOutputStream();
+        try {
+            if (!ImageIO.write(image, "png", out))
+                throw new RuntimeException("No PNG writer available");
+        } catch (IOException ex) {
+            throw new RuntimeException("Couldn't encode PNG", ex);
+        }
+        return out.toByteArray();
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(images.sum(), evaluations.sum(), renderNanos.sum() / 1e6);
+    }
+
+    // Returns the evaluations it took
+    private long renderGraph(Graph graph, ViewWindow window, Dimension size, Graphics2D g) {
+        return switch (graph) {
+            case CompiledGraph cg -> renderGraph(cg.graph(), window, size, g);
+            case XFunction xf -> {
+                var path = new GeneralPath();
+                // a sampler keeps state while tracing, so each render needs its own
+                long functionEvaluations = Rendering.renderFunction(xf, window, size, new AdaptiveSampler(), samplingBudget, path);
+                g.setPaint(Rendering.GRAPH_COLOR);
+                g.setStroke(Rendering.GRAPH_STROKE);
+                g.draw(path);
+                yield functionEvaluations;
+            }
+            case TruthPlot tp -> renderTiles(tp, window, size, g);
+            case ImplicitCurve ic -> renderTiles(ic, window, size, g);
+            case EmptyGraph eg -> 0;
+            default -> throw new RuntimeException("No rendering implemented for graph " + graph);
+        };
+    }
+
+    // Draws graph from the tiles covering the view, rendered in parallel
+    private long renderTiles(Graph graph, ViewWindow window, Dimension size, Graphics2D g) {
+        final int tileSize = TileCache.TILE_SIZE;
+        double xScale = window.xSpan() / size.width, yScale = window.ySpan() / size.height;
+        long originX = Rendering.gridOriginX(window, size), originY = Rendering.gridOriginY(window, size);
+        long column0 = Math.floorDiv(originX, tileSize), column1 = Math.floorDiv(originX + size.width - 1, tileSize);
+        long row0 = Math.floorDiv(originY, tileSize), row1 = Math.floorDiv(originY + size.height - 1, tileSize);
+        int columns = (int)(column1 - column0 + 1), rows = (int)(row1 - row0 + 1);
+
+        var renders = new Object[columns * rows];
+        long tileEvaluations = IntStream.range(0, renders.length).parallel().mapToLong(index -> {
+            var tile = Rendering.renderTile(graph, xScale, yScale, column0 + index % columns, row0 + index / columns, 1);
+            renders[index] = tile.render();
+            return tile.evaluations();
+        }).sum();
+
+        g.setPaint(Rendering.GRAPH_COLOR);
+        g.setStroke(Rendering.GRAPH_STROKE);
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < columns; ++c) {
+                int x = (int)((column0 + c) * tileSize - originX), y = (int)((row0 + r) * tileSize - originY);
+                Rendering.drawTile(g, renders[r * columns + c], x, y);
+            }
+        }
+        return tileEvaluations;
+    }
+}
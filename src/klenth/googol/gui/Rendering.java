@@ -0,0 +1,220 @@
+package klenth.googol.gui;
+
+import klenth.googol.graph.AdaptiveSampler;
+import klenth.googol.graph.Graph;
+import klenth.googol.graph.ImplicitCurve;
+import klenth.googol.graph.MarchingSquares;
+import klenth.googol.graph.QuadtreeRasterizer;
+import klenth.googol.graph.TruthPlot;
+import klenth.googol.graph.XFunction;
+
+import java.awt.*;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+// Renders graphs for a view window into storage the caller provides, so that GraphCanvas can render into fresh buffers
+// and Animator into the same ones frame after frame. Each method returns the number of evaluations it took. Also draws
+// the background and tiles the same way for GraphCanvas and Renderer.
+//
+// Curves and plots are sampled on a pixel grid anchored at the origin rather than at the view's corner, with the view
+// snapped to the nearest whole pixel of it, so a render of the whole view samples the same points as the TileCache tiles
+// covering it.
+final class Rendering {
+
+    static final int PLOT_YES_COLOR = 0x40ff0000;
+    static final int PLOT_NO_COLOR = 0x00000000;
+    static final BasicStroke GRAPH_STROKE = new BasicStroke(2f);
+    static final Color GRAPH_COLOR = Color.red.darker();
+    private static final BasicStroke GRID_STROKE = new BasicStroke(1f), AXIS_STROKE = new BasicStroke(3f);
+    private static final Color AXIS_COLOR = new Color(0x102040);
+
+    // A tile rendered into new storage, and the evaluations it took
+    record Tile(Object render, long evaluations) {}
+
+    private Rendering() {
+        throw new IllegalStateException();
+    }
+
+    // path is reset first; budget bounds the evaluations (see AdaptiveSampler)
+    static long renderFunction(XFunction graph, ViewWindow window, Dimension size, AdaptiveSampler sampler, long budget, GeneralPath path) {
+        return sampler.trace(graph, window.xMin(), window.xMax(), window.yMin(), window.yMax(), size.width, size.height, budget, path);
+    }
+
+    // path is reset first
+    static long renderCurve(ImplicitCurve graph, ViewWindow window, Dimension size, Path2D.Double path) {
+        double xScale = window.xSpan() / size.width, yScale = window.ySpan() / size.height;
+        long x0 = gridOriginX(window, size), y0 = gridOriginY(window, size);
+        path.reset();
+        var tracer = new MarchingSquares(graph.function(),
+                x0 * xScale, (x0 + size.width) * xScale, -(y0 + size.height) * yScale, -y0 * yScale, size.width, size.height, path);
+        tracer.trace();
+        return tracer.getEvaluations();
+    }
+
+    // xs needs size.width elements and ys size.height; image must be a TYPE_INT_ARGB image of the same size, whose
+    // pixels are written in place
+    static long renderPlot(TruthPlot graph, ViewWindow window, Dimension size, double[] xs, double[] ys, BufferedImage image) {
+        double xScale = window.xSpan() / size.width, yScale = window.ySpan() / size.height;
+        long x0 = gridOriginX(window, size), y0 = gridOriginY(window, size);
+        for (int i = 0; i < size.width; ++i)
+            xs[i] = (x0 + i) * xScale;
+        for (int j = 0; j < size.height; ++j)
+            ys[j] = -(y0 + j) * yScale;
+
+        int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        return QuadtreeRasterizer.rasterizeTiles(graph, xs, ys, pixels, PLOT_YES_COLOR, PLOT_NO_COLOR);
+    }
+
+    // The view's top left pixel, counted in pixels of the grid
+    static long gridOriginX(ViewWindow window, Dimension size) {
+        return Math.round(window.xMin() / (window.xSpan() / size.width));
+    }
+
+    static long gridOriginY(ViewWindow window, Dimension size) {
+        return Math.round(-window.yMax() / (window.ySpan() / size.height));
+    }
+
+    // Tile (column, row) of the grid in TileCache: its pixel (i, j) is the point ((column * TILE_SIZE + i) * xScale,
+    // -(row * TILE_SIZE + j) * yScale). Only every step-th pixel is sampled, so xs and ys need TILE_SIZE / step elements
+    // and image has to be TILE_SIZE / step square, to be drawn step times its size.
+    static long renderPlotTile(TruthPlot graph, double xScale, double yScale, long column, long row, int step, double[] xs, double[] ys, BufferedImage image) {
+        final int size = TileCache.TILE_SIZE / step;
+        long x0 = column * TileCache.TILE_SIZE, y0 = row * TileCache.TILE_SIZE;
+        for (int i = 0; i < size; ++i)
+            xs[i] = (x0 + (long)i * step) * xScale;
+        for (int j = 0; j < size; ++j)
+            ys[j] = -(y0 + (long)j * step) * yScale;
+
+        int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        return QuadtreeRasterizer.rasterize(graph, xs, ys, pixels, PLOT_YES_COLOR, PLOT_NO_COLOR);
+    }
+
+    // As renderPlotTile, with the path in the tile's own pixel coordinates and contoured in cells step pixels across;
+    // path is reset first
+    static long renderCurveTile(ImplicitCurve graph, double xScale, double yScale, long column, long row, int step, Path2D.Double path) {
+        final int size = TileCache.TILE_SIZE;
+        long x0 = column * size, y0 = row * size;
+        path.reset();
+        var tracer = new MarchingSquares(graph.function(),
+                x0 * xScale, (x0 + size) * xScale, -(y0 + size) * yScale, -y0 * yScale, size, size, step, path);
+        tracer.trace();
+        return tracer.getEvaluations();
+    }
+
+    // renderPlotTile or renderCurveTile, whichever graph needs
+    static Tile renderTile(Graph graph, double xScale, double yScale, long column, long row, int step) {
+        final int size = TileCache.TILE_SIZE / step;
+        return switch (graph) {
+            case TruthPlot tp -> {
+                var image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                yield new Tile(image, renderPlotTile(tp, xScale, yScale, column, row, step, new double[size], new double[size], image));
+            }
+            case ImplicitCurve ic -> {
+                var path = new Path2D.Double();
+                yield new Tile(path, renderCurveTile(ic, xScale, yScale, column, row, step, path));
+            }
+            default -> throw new IllegalArgumentException("No tiled rendering for graph " + graph);
+        };
+    }
+
+    // A rough count of the memory a render holds on to, for TileCache's budget
+    static long estimateBytes(Object render) {
+        return switch (render) {
+            case BufferedImage image -> 4L * image.getWidth() * image.getHeight();
+            case Shape shape -> {
+                long segments = 0;
+                for (var iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next())
+                    ++segments;
+                // two coordinates and a type per segment
+                yield 64 + 17 * segments;
+            }
+            default -> 64;
+        };
+    }
+
+    // Draws a tile's render with its top left corner at (x, y); a coarse pass's image is smaller than the tile, and is
+    // scaled up to cover it
+    static void drawTile(Graphics2D g, Object render, int x, int y) {
+        switch (render) {
+            case Image image -> g.drawImage(image, x, y, TileCache.TILE_SIZE, TileCache.TILE_SIZE, null);
+            case Shape shape -> {
+                g.translate(x, y);
+                g.draw(shape);
+                g.translate(-x, -y);
+            }
+            case null, default -> { }
+        }
+    }
+
+    // Fills the view with background (unless it's null) and draws the grid and axes; leaves antialiasing on
+    static void paintBackground(Graphics2D g, ViewWindow window, Dimension size, Color background) {
+        g.setColor(background);
+        g.fillRect(0, 0, size.width, size.height);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        paintGrid(g, window, size);
+        paintAxes(g, window, size);
+        paintAxesTicks(g, window, size);
+    }
+
+    private static void paintGrid(Graphics2D g, ViewWindow window, Dimension size) {
+        g.setStroke(GRID_STROKE);
+        g.setPaint(Color.lightGray);
+        Line2D line = new Line2D.Double();
+        double bx = window.xMin() - window.xMin() % window.xStep();
+
+        for (double x = bx; x <= window.xMax(); x += window.xStep()) {
+            double sx = (x - window.xMin()) / (window.xMax() - window.xMin()) * size.width;
+            line.setLine(sx, size.height, sx, 0);
+            g.draw(line);
+        }
+
+        double by = window.yMin() - window.yMin() % window.yStep();
+        for (double y = by; y <= window.yMax(); y += window.yStep()) {
+            double sy = size.height - (y - window.yMin()) / (window.yMax() - window.yMin()) * size.height;
+            line.setLine(0, sy, size.width, sy);
+            g.draw(line);
+        }
+    }
+
+    private static void paintAxes(Graphics2D g, ViewWindow window, Dimension size) {
+        g.setPaint(AXIS_COLOR);
+        g.setStroke(AXIS_STROKE);
+
+        Line2D line = new Line2D.Double();
+        double originX = window.mathToScreenX(size, 0), originY = window.mathToScreenY(size, 0);
+
+        line.setLine(0, originY, size.width, originY);
+        g.draw(line);
+
+        line.setLine(originX, size.height, originX, 0);
+        g.draw(line);
+    }
+
+    private static void paintAxesTicks(Graphics2D g, ViewWindow window, Dimension size) {
+        g.setPaint(AXIS_COLOR);
+        g.setStroke(AXIS_STROKE);
+
+        Line2D line = new Line2D.Double();
+        double bx = window.xMin() - window.xMin() % window.xStep();
+
+        double asx = window.mathToScreenX(size, 0);
+        double asy = window.mathToScreenY(size, 0);
+
+        for (double x = bx; x <= window.xMax(); x += window.xStep()) {
+            double sx = (x - window.xMin()) / (window.xMax() - window.xMin()) * size.width;
+            line.setLine(sx, asy - 4, sx, asy + 4);
+            g.draw(line);
+        }
+
+        double by = window.yMin() - window.yMin() % window.yStep();
+        for (double y = by; y <= window.yMax(); y += window.yStep()) {
+            double sy = size.height - (y - window.yMin()) / (window.yMax() - window.yMin()) * size.height;
+            line.setLine(asx - 4, sy, asx + 4, sy);
+            g.draw(line);
+        }
+    }
+}
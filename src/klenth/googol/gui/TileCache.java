@@ -0,0 +1,108 @@
+package klenth.googol.gui;
+
+import klenth.googol.graph.Graph;
+import klenth.googol.graph.QuadtreeRasterizer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Renders of graphs cut into square tiles fixed in world space. At a given scale (math units per pixel) the plane is
+// divided into TILE_SIZE-pixel tiles counted from the origin, so a tile stays valid however the view is panned, and a
+// pan only has to render the tiles that came into view. Tiles are dropped least recently used first once their
+// estimated size passes the capacity.
+//
+// Not thread-safe; the canvas only uses it from the event thread.
+public class TileCache {
+
+    public static final int TILE_SIZE = QuadtreeRasterizer.TILE_SIZE;
+    public static final long DEFAULT_CAPACITY_BYTES = 128L << 20;
+
+    public record Statistics(long hits, long misses, long evictions, int tiles, long bytes, long capacityBytes) {
+        @Override
+        public String toString() {
+            return String.format("tiles: %d hits, %d misses (%.1f%% hit), %d evicted; %d cached, %.1f of %.1f MiB",
+                    hits, misses, (hits + misses == 0) ? 0 : 100.0 * hits / (hits + misses), evictions,
+                    tiles, bytes / 1048576.0, capacityBytes / 1048576.0);
+        }
+    }
+
+    // Scales are compared with the last 20 bits of their mantissa rounded off, since panning moves both edges of the
+    // view window and can leave its span an ulp or two from where it was. Columns and rows are longs, like the grid's
+    // pixels: tiles are counted from the origin, and a view 1e-7 across around x = 100 is already past 2^31 tiles out.
+    public record Key(Graph graph, long xScale, long yScale, long column, long row) {
+        public static Key of(Graph graph, double xScale, double yScale, long column, long row) {
+            return new Key(graph, quantize(xScale), quantize(yScale), column, row);
+        }
+
+        private static long quantize(double scale) {
+            return (Double.doubleToLongBits(scale) + (1L << 19)) >>> 20;
+        }
+    }
+
+    private record Entry(Object render, long bytes) {}
+
+    private final long capacityBytes;
+    private final LinkedHashMap<Key, Entry> tiles = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0, misses = 0, evictions = 0;
+
+    public TileCache() {
+        this(DEFAULT_CAPACITY_BYTES);
+    }
+
+    public TileCache(long capacityBytes) {
+        if (capacityBytes <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacityBytes);
+        this.capacityBytes = capacityBytes;
+    }
+
+    // The tile's render, or null (a miss) if it isn't cached
+    public Object get(Key key) {
+        var entry = tiles.get(key);
+        if (entry == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return entry.render();
+    }
+
+    public void put(Key key, Object render, long renderBytes) {
+        var old = tiles.put(key, new Entry(render, renderBytes));
+        if (old != null)
+            bytes -= old.bytes();
+        bytes += renderBytes;
+
+        Iterator<Map.Entry<Key, Entry>> eldest = tiles.entrySet().iterator();
+        while (bytes > capacityBytes && eldest.hasNext()) {
+            var entry = eldest.next();
+            if (entry.getKey().equals(key))
+                continue;
+            bytes -= entry.getValue().bytes();
+            eldest.remove();
+            ++evictions;
+        }
+    }
+
+    // Drops every tile of graph, for when it has been replaced or its values have changed
+    public void invalidate(Graph graph) {
+        var iterator = tiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.getKey().graph().equals(graph)) {
+                bytes -= entry.getValue().bytes();
+                iterator.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(hits, misses, evictions, tiles.size(), bytes, capacityBytes);
+    }
+}
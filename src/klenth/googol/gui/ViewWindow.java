@@ -1,11 +1,14 @@
 package klenth.googol.gui;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 
 public record ViewWindow(double xMin, double xMax, double xStep, double yMin, double yMax, double yStep) {
 
     public static final ViewWindow DEFAULT = new ViewWindow(-10, 10, 1, -10, 10, 1);
+    // zooming picks grid steps that put about this many lines across the window
+    public static final int GRID_LINES = 16;
 
     public Point2D mathToScreen(Dimension screenSize, Point2D p) {
         return new Point2D.Double(
@@ -48,4 +51,35 @@ public record ViewWindow(double xMin, double xMax, double xStep, double yMin, do
     public ViewWindow translate(double dx, double dy) {
         return new ViewWindow(xMin + dx, xMax + dx, xStep, yMin + dy, yMax + dy, yStep);
     }
+
+    // Scales the spans by factor about (cx, cy), which stays put on the screen, with the grid steps rescaled to suit
+    public ViewWindow zoom(double cx, double cy, double factor) {
+        if (!(factor > 0) || Double.isInfinite(factor))
+            throw new IllegalArgumentException("Zoom factor must be positive: " + factor);
+        double xMin = cx + (this.xMin - cx) * factor, xMax = cx + (this.xMax - cx) * factor;
+        double yMin = cy + (this.yMin - cy) * factor, yMax = cy + (this.yMax - cy) * factor;
+        return new ViewWindow(xMin, xMax, gridStep(xMax - xMin), yMin, yMax, gridStep(yMax - yMin));
+    }
+
+    // Whichever of 1, 2 or 5 times a power of 10 comes nearest to dividing span into GRID_LINES parts
+    public static double gridStep(double span) {
+        double target = span / GRID_LINES;
+        double power = Math.pow(10, Math.floor(Math.log10(target)));
+        double step = power;
+        for (double multiple : new double[] { 2, 5, 10 }) {
+            if (Math.abs(Math.log(multiple * power / target)) < Math.abs(Math.log(step / target)))
+                step = multiple * power;
+        }
+        return step;
+    }
+
+    // Takes screen coordinates in from to screen coordinates in this window, for drawing what was rendered for from
+    public AffineTransform transformFrom(ViewWindow from, Dimension screenSize) {
+        double x0 = mathToScreenX(screenSize, from.xMin), x1 = mathToScreenX(screenSize, from.xMax);
+        double y0 = mathToScreenY(screenSize, from.yMax), y1 = mathToScreenY(screenSize, from.yMin);
+        return new AffineTransform(
+                (x1 - x0) / screenSize.width, 0,
+                0, (y1 - y0) / screenSize.height,
+                x0, y0);
+    }
 }
@@ -3,4 +3,24 @@ package klenth.googol.math;
 public interface BinaryFunction {
 
     double evaluate(double x, double y);
+
+    default void evaluateRow(double[] xs, double y, double[] out, int from, int to) {
+        for (int i = from; i < to; ++i)
+            out[i] = evaluate(xs[i], y);
+    }
+
+    // Encloses every value evaluate(x, y) can return for x in xs and y in ys. Compiled functions generate a real
+    // bound; this default knows nothing about the function.
+    default Interval evaluate(Interval xs, Interval ys) {
+        return Interval.ENTIRE;
+    }
+
+    // out is row-major: out[j * xs.length + i] = f(xs[i], ys[j])
+    default void evaluateGrid(double[] xs, double[] ys, double[] out) {
+        var row = new double[xs.length];
+        for (int j = 0; j < ys.length; ++j) {
+            evaluateRow(xs, ys[j], row, 0, xs.length);
+            System.arraycopy(row, 0, out, j * xs.length, xs.length);
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package klenth.googol.math;
 
-import java.io.PrintWriter;
+import klenth.googol.ast.Node;
+import klenth.googol.codegen.CodeBuilder;
+
+import java.util.List;
 
 public sealed interface EnvFunction {
 
@@ -29,18 +32,34 @@ public sealed interface EnvFunction {
             return this.name().toLowerCase();
         }
 
-        public void generateCode(PrintWriter out) {
+        public void generateCode(CodeBuilder code) {
             switch (this) {
                 case Round -> {
-                    out.println("invokestatic java/lang/Math/round (D)J");
-                    out.println("l2d");
-                }
-                case Min -> {
-
+                    code.invokestatic("java/lang/Math", "round", "(D)J");
+                    code.l2d();
                 }
-                default -> out.printf("invokestatic java/lang/Math/%s (%s)D\n",
-                        getName(), String.join("", "D".repeat(1)));
+                case Min, Max -> code.invokestatic("java/lang/Math", getName(), "(DD)D");
+                default -> code.invokestatic("java/lang/Math", getName(), "(D)D");
             }
         }
     }
+
+    // A function defined by the user, like f(a, b) = a^2 + b. Calls to it never reach code generation or the
+    // interpreter: Inliner replaces them with the body first.
+    record UserDefined(String name, List<String> parameterNames, Node.Expr body) implements EnvFunction {
+
+        public UserDefined {
+            parameterNames = List.copyOf(parameterNames);
+        }
+
+        @Override
+        public boolean acceptsParameters(int count) {
+            return count == parameterNames.size();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
 }
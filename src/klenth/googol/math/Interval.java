@@ -0,0 +1,259 @@
+package klenth.googol.math;
+
+// A closed range [lo, hi] that encloses every value a compiled expression can produce when its inputs range over the
+// argument intervals, plus whether NaN is among those values. Bounds are sound for the double computation as actually
+// performed: +, -, *, / and sqrt are correctly rounded and therefore monotone, so their endpoints need no widening;
+// the Math library functions are only guaranteed to within an ulp, so their endpoints are pushed out by two.
+// An interval with lo > hi holds no numbers at all, only NaN.
+public record Interval(double lo, double hi, boolean maybeNaN) {
+
+    public static final Interval ENTIRE = new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true);
+    public static final Interval UNDEFINED = new Interval(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, true);
+
+    private static final double HALF_PI = Math.PI / 2, TWO_PI = 2 * Math.PI;
+
+    public Interval(double lo, double hi) {
+        this(lo, hi, false);
+    }
+
+    public static Interval of(double d) {
+        return Double.isNaN(d) ? UNDEFINED : new Interval(d, d, false);
+    }
+
+    public boolean isEmpty() {
+        return !(lo <= hi);
+    }
+
+    public boolean contains(double d) {
+        return lo <= d && d <= hi;
+    }
+
+    public double width() {
+        return hi - lo;
+    }
+
+    private static Interval range(double a, double b, double c, double d, boolean maybeNaN) {
+        return new Interval(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)), maybeNaN);
+    }
+
+    private static double down(double d) {
+        return Math.nextDown(Math.nextDown(d));
+    }
+
+    private static double up(double d) {
+        return Math.nextUp(Math.nextUp(d));
+    }
+
+    public static Interval negate(Interval a) {
+        return a.isEmpty() ? a : new Interval(-a.hi, -a.lo, a.maybeNaN);
+    }
+
+    public static Interval add(Interval a, Interval b) {
+        if (a.isEmpty() || b.isEmpty())
+            return UNDEFINED;
+        boolean nan = a.maybeNaN || b.maybeNaN
+                || (a.lo == Double.NEGATIVE_INFINITY && b.hi == Double.POSITIVE_INFINITY)
+                || (a.hi == Double.POSITIVE_INFINITY && b.lo == Double.NEGATIVE_INFINITY);
+        double lo = a.lo + b.lo, hi = a.hi + b.hi;
+        if (Double.isNaN(lo) || Double.isNaN(hi))
+            return ENTIRE;
+        return new Interval(lo, hi, nan);
+    }
+
+    public static Interval subtract(Interval a, Interval b) {
+        return add(a, negate(b));
+    }
+
+    public static Interval multiply(Interval a, Interval b) {
+        if (a.isEmpty() || b.isEmpty())
+            return UNDEFINED;
+        // 0 * ∞ is the only way a product of non-NaN values becomes NaN
+        if (a.contains(0) && isUnbounded(b) || b.contains(0) && isUnbounded(a))
+            return ENTIRE;
+        return range(a.lo * b.lo, a.lo * b.hi, a.hi * b.lo, a.hi * b.hi, a.maybeNaN || b.maybeNaN);
+    }
+
+    public static Interval divide(Interval a, Interval b) {
+        if (a.isEmpty() || b.isEmpty())
+            return UNDEFINED;
+        if (b.contains(0) || isUnbounded(a) && isUnbounded(b))
+            return ENTIRE;
+        return range(a.lo / b.lo, a.lo / b.hi, a.hi / b.lo, a.hi / b.hi, a.maybeNaN || b.maybeNaN);
+    }
+
+    public static Interval pow(Interval a, Interval b) {
+        // pow(x, 0) is 1 even for NaN x, but pow(x, NaN) is NaN
+        if (b.isEmpty())
+            return UNDEFINED;
+        if (a.isEmpty())
+            return b.contains(0) ? new Interval(1, 1, true) : UNDEFINED;
+
+        boolean nan = a.maybeNaN || b.maybeNaN;
+        Interval result;
+
+        if (b.lo == b.hi && b.lo == Math.rint(b.lo) && Math.abs(b.lo) < 0x1p53) {
+            double n = b.lo;
+            if (n == 0)
+                result = new Interval(1, 1);
+            else if (n < 0 && a.contains(0))
+                return ENTIRE;
+            else {
+                double pl = Math.pow(a.lo, n), ph = Math.pow(a.hi, n);
+                boolean even = (n % 2 == 0);
+                if (even && a.contains(0))
+                    result = new Interval(0, up(Math.max(pl, ph)));
+                else
+                    result = new Interval(down(Math.min(pl, ph)), up(Math.max(pl, ph)));
+            }
+        } else if (a.lo > 0 || a.lo == 0 && b.lo >= 0) {
+            // for a non-negative base pow is monotone in each argument, so its extremes are at the corners
+            // (|x| == 1 to an infinite power is NaN, and -0.0 to a negative odd power is -∞)
+            if (a.contains(1) && isUnbounded(b))
+                nan = true;
+            var corners = range(Math.pow(a.lo, b.lo), Math.pow(a.lo, b.hi), Math.pow(a.hi, b.lo), Math.pow(a.hi, b.hi), false);
+            if (Double.isNaN(corners.lo) || Double.isNaN(corners.hi))
+                return ENTIRE;
+            result = new Interval(Math.max(0, down(corners.lo)), up(corners.hi));
+        } else
+            return ENTIRE;
+
+        if (a.maybeNaN && b.contains(0))
+            result = hull(result, new Interval(1, 1));
+        return new Interval(result.lo, result.hi, nan);
+    }
+
+    public static Interval abs(Interval a) {
+        if (a.isEmpty())
+            return a;
+        if (a.lo >= 0)
+            return a;
+        if (a.hi <= 0)
+            return negate(a);
+        return new Interval(0, Math.max(-a.lo, a.hi), a.maybeNaN);
+    }
+
+    public static Interval signum(Interval a) {
+        return a.isEmpty() ? a : new Interval(Math.signum(a.lo), Math.signum(a.hi), a.maybeNaN);
+    }
+
+    public static Interval floor(Interval a) {
+        return a.isEmpty() ? a : new Interval(Math.floor(a.lo), Math.floor(a.hi), a.maybeNaN);
+    }
+
+    public static Interval ceil(Interval a) {
+        return a.isEmpty() ? a : new Interval(Math.ceil(a.lo), Math.ceil(a.hi), a.maybeNaN);
+    }
+
+    // Math.round(NaN) is 0
+    public static Interval round(Interval a) {
+        if (a.isEmpty())
+            return new Interval(0, 0);
+        var result = new Interval(Math.round(a.lo), Math.round(a.hi));
+        return a.maybeNaN ? hull(result, new Interval(0, 0)) : result;
+    }
+
+    public static Interval min(Interval a, Interval b) {
+        if (a.isEmpty() || b.isEmpty())
+            return UNDEFINED;
+        return new Interval(Math.min(a.lo, b.lo), Math.min(a.hi, b.hi), a.maybeNaN || b.maybeNaN);
+    }
+
+    public static Interval max(Interval a, Interval b) {
+        if (a.isEmpty() || b.isEmpty())
+            return UNDEFINED;
+        return new Interval(Math.max(a.lo, b.lo), Math.max(a.hi, b.hi), a.maybeNaN || b.maybeNaN);
+    }
+
+    public static Interval sqrt(Interval a) {
+        if (a.isEmpty() || a.hi < 0)
+            return UNDEFINED;
+        return new Interval(Math.sqrt(Math.max(a.lo, 0)), Math.sqrt(a.hi), a.maybeNaN || a.lo < 0);
+    }
+
+    public static Interval exp(Interval a) {
+        if (a.isEmpty())
+            return a;
+        return new Interval(Math.max(0, down(Math.exp(a.lo))), up(Math.exp(a.hi)), a.maybeNaN);
+    }
+
+    public static Interval sin(Interval a) {
+        // sin(x) = cos(x - π/2), but shifting would round; test the critical points of sin directly instead
+        return periodic(a, Math::sin, HALF_PI, -HALF_PI);
+    }
+
+    public static Interval cos(Interval a) {
+        return periodic(a, Math::cos, 0, Math.PI);
+    }
+
+    public static Interval tan(Interval a) {
+        if (a.isEmpty())
+            return a;
+        if (isUnbounded(a))
+            return ENTIRE;
+        if (a.width() >= Math.PI || containsCriticalPoint(a, HALF_PI, Math.PI))
+            return new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, a.maybeNaN);
+        return new Interval(down(Math.tan(a.lo)), up(Math.tan(a.hi)), a.maybeNaN);
+    }
+
+    public static Interval asin(Interval a) {
+        if (a.isEmpty() || a.lo > 1 || a.hi < -1)
+            return UNDEFINED;
+        return new Interval(Math.max(-HALF_PI, down(Math.asin(Math.max(a.lo, -1)))), up(Math.asin(Math.min(a.hi, 1))),
+                a.maybeNaN || a.lo < -1 || a.hi > 1);
+    }
+
+    public static Interval acos(Interval a) {
+        if (a.isEmpty() || a.lo > 1 || a.hi < -1)
+            return UNDEFINED;
+        return new Interval(Math.max(0, down(Math.acos(Math.min(a.hi, 1)))), up(Math.acos(Math.max(a.lo, -1))),
+                a.maybeNaN || a.lo < -1 || a.hi > 1);
+    }
+
+    public static Interval atan(Interval a) {
+        if (a.isEmpty())
+            return a;
+        return new Interval(down(Math.atan(a.lo)), up(Math.atan(a.hi)), a.maybeNaN);
+    }
+
+    public static Interval hull(Interval a, Interval b) {
+        if (a.isEmpty())
+            return new Interval(b.lo, b.hi, a.maybeNaN || b.maybeNaN);
+        if (b.isEmpty())
+            return new Interval(a.lo, a.hi, a.maybeNaN || b.maybeNaN);
+        return new Interval(Math.min(a.lo, b.lo), Math.max(a.hi, b.hi), a.maybeNaN || b.maybeNaN);
+    }
+
+    private static boolean isUnbounded(Interval a) {
+        return a.lo == Double.NEGATIVE_INFINITY || a.hi == Double.POSITIVE_INFINITY;
+    }
+
+    private interface DoubleOp {
+        double apply(double d);
+    }
+
+    // f has period 2π with its maximum (1) at maxAt + 2kπ and its minimum (-1) at minAt + 2kπ
+    private static Interval periodic(Interval a, DoubleOp f, double maxAt, double minAt) {
+        if (a.isEmpty())
+            return a;
+        if (isUnbounded(a))
+            return new Interval(-1, 1, true);
+        if (a.width() >= TWO_PI)
+            return new Interval(-1, 1, a.maybeNaN);
+
+        double fl = f.apply(a.lo), fh = f.apply(a.hi);
+        double lo = Math.max(-1, down(Math.min(fl, fh))), hi = Math.min(1, up(Math.max(fl, fh)));
+        if (containsCriticalPoint(a, maxAt, TWO_PI))
+            hi = 1;
+        if (containsCriticalPoint(a, minAt, TWO_PI))
+            lo = -1;
+        return new Interval(lo, hi, a.maybeNaN);
+    }
+
+    // whether offset + k * period lies in a for some integer k; errs towards yes, since reporting a critical point
+    // that isn't there only makes the bounds looser
+    private static boolean containsCriticalPoint(Interval a, double offset, double period) {
+        double slack = 1e-9 * Math.max(1, Math.max(Math.abs(a.lo), Math.abs(a.hi)));
+        double k = Math.ceil((a.lo - slack - offset) / period);
+        return offset + k * period <= a.hi + slack;
+    }
+}
@@ -1,26 +1,117 @@
 package klenth.googol.math;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
 
+// Constants, parameters and functions that equations can refer to. Constants are folded into compiled code; parameters
+// are read from their table each time (see Parameters), so they can change without a recompile. The built-in functions
+// are fixed when the context is made; user-defined functions can be added, redefined and removed at any time, from any
+// thread. Each change replaces the function map as a whole, so a compile that has fetched getEnvFunctions() works
+// against one consistent version.
 public class MathContext {
 
+    public interface Listener {
+        // names are the functions that were defined, redefined or removed
+        void functionsChanged(MathContext source, Set<String> names);
+    }
+
+    // pi (or π) and e
+    public static final Map<String, Double> STANDARD_CONSTANTS = Map.of("pi", Math.PI, "π", Math.PI, "e", Math.E);
+    // every EnvFunction.Builtin, by name
+    public static final Map<String, EnvFunction> BUILTIN_FUNCTIONS = Arrays.stream(EnvFunction.Builtin.values())
+            .collect(Collectors.toUnmodifiableMap(EnvFunction.Builtin::getName, f -> f));
+
     private final Map<String, Double> constantValues;
-    private final Map<String, EnvFunction> envFunctions;
+    private final Parameters parameters;
+    private final Map<String, EnvFunction> builtinFunctions;
+    private volatile Map<String, EnvFunction> envFunctions;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
 
     public MathContext() {
         this(Map.of(), Map.of());
     }
 
     public MathContext(Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions) {
+        this(constantValues, envFunctions, Parameters.NONE);
+    }
+
+    public MathContext(Map<String, Double> constantValues, Map<String, EnvFunction> envFunctions, Parameters parameters) {
+        for (var name : parameters.getNames()) {
+            if (constantValues.containsKey(name) || envFunctions.containsKey(name))
+                throw new IllegalArgumentException(String.format("Parameter %s is already a constant or function", name));
+        }
         this.constantValues = constantValues;
-        this.envFunctions = envFunctions;
+        this.parameters = parameters;
+        this.builtinFunctions = Map.copyOf(envFunctions);
+        this.envFunctions = builtinFunctions;
+    }
+
+    // The standard constants and all the built-in functions
+    public static MathContext standard() {
+        return standard(Parameters.NONE);
+    }
+
+    public static MathContext standard(Parameters parameters) {
+        return new MathContext(STANDARD_CONSTANTS, BUILTIN_FUNCTIONS, parameters);
     }
 
     public Map<String, Double> getConstantValues() {
         return constantValues;
     }
 
+    public Parameters getParameters() {
+        return parameters;
+    }
+
     public Map<String, EnvFunction> getEnvFunctions() {
         return envFunctions;
     }
+
+    public void defineFunction(EnvFunction.UserDefined function) {
+        var name = function.name();
+        if (builtinFunctions.containsKey(name))
+            throw new IllegalArgumentException(String.format("Cannot redefine built-in function %s()", name));
+        if (constantValues.containsKey(name) || parameters.contains(name))
+            throw new IllegalArgumentException(String.format("%s is already a constant or parameter", name));
+
+        synchronized (this) {
+            var functions = new HashMap<>(envFunctions);
+            if (function.equals(functions.put(name, function)))
+                return;
+            envFunctions = Map.copyOf(functions);
+        }
+        fireFunctionsChanged(Set.of(name));
+    }
+
+    public void removeFunction(String name) {
+        if (builtinFunctions.containsKey(name))
+            throw new IllegalArgumentException(String.format("Cannot remove built-in function %s()", name));
+
+        synchronized (this) {
+            if (!envFunctions.containsKey(name))
+                return;
+            var functions = new HashMap<>(envFunctions);
+            functions.remove(name);
+            envFunctions = Map.copyOf(functions);
+        }
+        fireFunctionsChanged(Set.of(name));
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireFunctionsChanged(Set<String> names) {
+        for (var listener : listeners)
+            listener.functionsChanged(this, names);
+    }
 }
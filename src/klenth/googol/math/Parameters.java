@@ -0,0 +1,91 @@
+package klenth.googol.math;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Named values that compiled functions read when they are evaluated, rather than having them folded in as constants,
+// so that changing one means re-rendering but not recompiling. The names are fixed when the table is made; the values
+// change in place. Compiled code keeps a reference to the array behind the table, so a function compiled against one
+// table never sees another's values (CompileKey tells tables apart by identity).
+//
+// Values are plain array elements: a change is seen by evaluations that start after it on the same thread, or on any
+// thread that has synchronized with it since (as a render handed to another thread does).
+public final class Parameters {
+
+    public interface Listener {
+        void parameterChanged(Parameters source, String name, double value);
+    }
+
+    public static final Parameters NONE = new Parameters(Map.of());
+
+    private final List<String> names;
+    private final double[] values;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // the iteration order of initialValues is the order of the array
+    public Parameters(Map<String, Double> initialValues) {
+        names = List.copyOf(initialValues.keySet());
+        values = new double[names.size()];
+        for (int i = 0; i < values.length; ++i)
+            values[i] = initialValues.get(names.get(i));
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    // -1 if there is no parameter by that name
+    public int indexOf(String name) {
+        return names.indexOf(name);
+    }
+
+    public boolean contains(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    public double get(String name) {
+        return values[checkedIndexOf(name)];
+    }
+
+    public void set(String name, double value) {
+        int index = checkedIndexOf(name);
+        if (Double.doubleToRawLongBits(values[index]) == Double.doubleToRawLongBits(value))
+            return;
+        values[index] = value;
+        for (var listener : listeners)
+            listener.parameterChanged(this, name, value);
+    }
+
+    // The live array that compiled code reads; for code generation and the interpreter only
+    public double[] array() {
+        return values;
+    }
+
+    public Map<String, Double> toMap() {
+        var map = new HashMap<String, Double>();
+        for (int i = 0; i < values.length; ++i)
+            map.put(names.get(i), values[i]);
+        return Map.copyOf(map);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private int checkedIndexOf(String name) {
+        int index = indexOf(name);
+        if (index < 0)
+            throw new IllegalArgumentException("No parameter named " + name);
+        return index;
+    }
+}
@@ -4,4 +4,8 @@ public interface UnaryFunction {
 
     double evaluate(double x);
 
+    default void evaluate(double[] xs, double[] out, int from, int to) {
+        for (int i = from; i < to; ++i)
+            out[i] = evaluate(xs[i]);
+    }
 }
@@ -0,0 +1,15 @@
+package klenth.googol.math;
+
+import jdk.incubator.vector.DoubleVector;
+
+// Helpers called from generated vector kernels
+public final class VectorMath {
+
+    private VectorMath() {
+        throw new IllegalStateException();
+    }
+
+    public static DoubleVector square(DoubleVector v) {
+        return v.mul(v);
+    }
+}
@@ -0,0 +1,96 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.graph.CompiledGraph;
+import klenth.googol.graph.ExplicitPlot;
+import klenth.googol.math.MathContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Compiles equations that call user-defined functions and compares them, bit for bit, against the same equations with
+// the bodies written out by hand, both compiled and interpreted. Then redefines one function and checks which graphs
+// would be recompiled, and that recompiling picks up the new definition.
+public class InliningEquivalenceTest {
+
+    private static final List<String> DEFINITIONS = List.of(
+            "f(a, b) = a^2 + b",
+            "g(t) = f(t, sin(t)) * f(-t, 1)",
+            "h(u) = |u| - pi",
+            "k() = 2 e"
+    );
+
+    // each expression with calls, then written out
+    private static final List<List<String>> CORPUS = List.of(
+            List.of("f(x, y)", "x^2 + y"),
+            List.of("f(y, x) - f(x, y)", "(y^2 + x) - (x^2 + y)"),
+            List.of("g(x + y)", "((x + y)^2 + sin(x + y)) * ((-(x + y))^2 + 1)"),
+            List.of("f(f(x, 1), h(y))", "(x^2 + 1)^2 + (|y| - pi)"),
+            List.of("h(g(x)) / k()", "(|(x^2 + sin(x)) * ((-x)^2 + 1)| - pi) / (2 e)"),
+            List.of("min(f(x, y), h(x), 3)", "min(x^2 + y, |x| - pi, 3)")
+    );
+
+    private static final Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+
+    private final MathContext mathContext = new MathContext(constantValues, MathContext.BUILTIN_FUNCTIONS);
+
+    @BeforeEach
+    void defineFunctions() throws Exception {
+        for (var definition : DEFINITIONS)
+            mathContext.defineFunction(Equations.parseFunctionDefinition(definition, constantValues, mathContext.getEnvFunctions()));
+    }
+
+    @Test
+    void inlinedCallsMatchWrittenOutBodies() throws Exception {
+        var envFunctions = mathContext.getEnvFunctions();
+        var random = new Random(0);
+        double[] xs = new double[20000], ys = new double[xs.length];
+        for (int i = 0; i < xs.length; ++i) {
+            xs[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(5) - 2);
+            ys[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(5) - 2);
+        }
+
+        for (var pair : CORPUS) {
+            var withCalls = Expressions.compileBinaryFunction(pair.get(0), "x", "y", constantValues, envFunctions);
+            var written = Expressions.compileBinaryFunction(pair.get(1), "x", "y", constantValues, envFunctions);
+            var tree = Expressions.parse(pair.get(0), List.of("x", "y", "pi", "π", "e"), envFunctions.keySet(), Node.Expr.class);
+            var interpreted = Interpreter.interpretBinaryFunction(
+                    Optimizer.optimize(tree, constantValues, envFunctions), "x", "y", constantValues, envFunctions);
+
+            int differentCount = 0;
+            for (int i = 0; i < xs.length; ++i) {
+                long expected = Double.doubleToLongBits(written.evaluate(xs[i], ys[i]));
+                if (expected != Double.doubleToLongBits(withCalls.evaluate(xs[i], ys[i]))
+                        || expected != Double.doubleToLongBits(interpreted.evaluate(xs[i], ys[i])))
+                    ++differentCount;
+            }
+            assertEquals(0, differentCount, "results differ for " + pair.get(0));
+        }
+    }
+
+    @Test
+    void redefinitionRecompilesOnlyDependentGraphs() throws Exception {
+        var equations = List.of("y = f(x, 1)", "y = g(x)", "y = h(x)", "y = sin(x)", "x^2 + y^2 = k()");
+        var graphs = new ArrayList<CompiledGraph>();
+        for (var equation : equations)
+            graphs.add(CompiledGraph.compile(equation, mathContext));
+
+        mathContext.defineFunction(Equations.parseFunctionDefinition("f(a, b) = a^3 - b", constantValues, mathContext.getEnvFunctions()));
+        var dependent = graphs.stream()
+                .filter(graph -> graph.dependsOn(Set.of("f")))
+                .map(CompiledGraph::equation)
+                .toList();
+        // g() calls f()
+        assertEquals(List.of("y = f(x, 1)", "y = g(x)"), dependent);
+
+        var recompiled = CompiledGraph.compile("y = f(x, 1)", mathContext);
+        assertEquals(7.0, ((ExplicitPlot)recompiled.graph()).evaluate(2));
+    }
+}
@@ -0,0 +1,86 @@
+package klenth.googol;
+
+import klenth.googol.math.EnvFunction;
+import klenth.googol.math.MathContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Compiles each expression with the optimizer in exact mode and compares it, bit for bit, against Expressions.evaluate
+// on the unoptimized tree, at special values (signed zeros, infinities, NaN, extremes) and at random points.
+public class OptimizerEquivalenceTest {
+
+    private static final List<String> CORPUS = List.of(
+            "x^0 + y^1",
+            "x^2 + y^2 - 9",
+            "x^3 - 2 x^4 + y^5 / 7",
+            "(x + y)^8 - (x - y)^-3",
+            "x^0.5 + y^-1",
+            "x^-2 y^16",
+            "--x * 1 + 0 - y / 1",
+            "1 * x + y * -1 - 0",
+            "-0 + x - -0 + y",
+            "||-x|| - |y|",
+            "sin(x)^2 + cos(y)^2",
+            "sqrt(x^2 + y^2)^3 - min(x, y)^2",
+            "exp(-(x^2 + y^2))^0.5 - atan(y / x)^-1"
+    );
+
+    private static final double[] SPECIAL_VALUES = {
+            0.0, -0.0, 1, -1, 0.5, -0.5, 2, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN
+    };
+
+    private final Optimizer.Mode previousMode = Optimizer.getDefaultMode();
+
+    @AfterEach
+    void restoreMode() {
+        Optimizer.setDefaultMode(previousMode);
+        Expressions.getCompileCache().clear();
+    }
+
+    @Test
+    void exactModeMatchesEvaluate() {
+        Map<String, Double> constantValues = MathContext.STANDARD_CONSTANTS;
+        Map<String, EnvFunction> envFunctions = MathContext.BUILTIN_FUNCTIONS;
+        var variableNames = List.of("x", "y", "pi", "π", "e");
+
+        var random = new Random(0);
+        final int randomCount = 20000;
+        double[] xs = new double[SPECIAL_VALUES.length * SPECIAL_VALUES.length + randomCount];
+        double[] ys = new double[xs.length];
+        int n = 0;
+        for (double x : SPECIAL_VALUES) {
+            for (double y : SPECIAL_VALUES) {
+                xs[n] = x;
+                ys[n++] = y;
+            }
+        }
+        for (int i = 0; i < randomCount; ++i) {
+            xs[n] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(7) - 3);
+            ys[n++] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(7) - 3);
+        }
+
+        Optimizer.setDefaultMode(Optimizer.Mode.Exact);
+        for (var expr : CORPUS) {
+            var tree = Expressions.parser(expr, variableNames, envFunctions.keySet()).totalExpr().n;
+            Expressions.getCompileCache().clear();
+            var function = Expressions.compileBinaryFunction(tree, "x", "y", constantValues, envFunctions);
+
+            int differentCount = 0;
+            for (int i = 0; i < xs.length; ++i) {
+                double expected = Expressions.evaluate(tree, Map.of("x", xs[i], "y", ys[i], "pi", Math.PI, "π", Math.PI, "e", Math.E));
+                double actual = function.evaluate(xs[i], ys[i]);
+                if (Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual))
+                    ++differentCount;
+            }
+            assertEquals(0, differentCount, () -> String.format("results differ for %s, optimized to %s",
+                    expr, Optimizer.optimize(tree, Optimizer.Mode.Exact, constantValues, envFunctions)));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package klenth.googol;
+
+import klenth.googol.ast.Node;
+import klenth.googol.math.EnvFunction;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Differential test of PrattParser against the ANTLR parser: a fixed corpus of tricky inputs, random sentences of the
+// grammar, and random mutations of those (mostly syntax errors). PrattParser must either give ANTLR's tree or turn the
+// input down; for input ANTLR reports errors on it must always turn it down.
+public class ParserDifferentialTest {
+
+    private static final int RANDOM_COUNT = 5_000;
+    private static final List<String> VARIABLE_NAMES = List.of("x", "y", "t", "pi", "π", "θ", "e", "ab", "x2");
+    private static final List<String> FUNCTION_NAMES = Arrays.stream(EnvFunction.Builtin.values())
+            .map(EnvFunction.Builtin::getName)
+            .toList();
+
+    private static final List<String> CORPUS = List.of(
+            "y = x^2", "y = 2x + 1", "y = x³ - 3x", "y = x⁻²", "y = 2^-x^2", "y = x**2", "y = -x^2", "y = --x",
+            "y = +x", "y = x^2^3", "y = x²y", "y = 2 pi r", "y = 2πr", "y = sin(x)cos(x)", "y = sin(x) / 2x",
+            "y = x / y z", "y = (x + 1)(x - 1)", "y = 3(x)", "y = |x|", "y = |x| |y|", "y = |x|y|z|", "y = |a|-b|",
+            "y = ||x| - 1|", "y = |x - |y||", "y = |(x |y|)|", "y = min(x, y, 1)", "y = max()", "y = 1.5.5",
+            "y = .5x", "y = 3.", "y = x2", "y = θ", "y = αβ", "y = e^x", "x^2 + y^2 = 9", "x y = 1", "x² - y² ≠ 4",
+            "x < y", "x <= y", "x ≤ y", "x > y", "x >= y", "x ≥ y", "x != y", "xy = 1", "y = sinx", "y = 1e3",
+            "y = x2y", "y = abx",
+            // errors
+            "y = ", "y = x +", "y = (x", "y = x)", "y = |x", "y = sin x", "y = x ^", "y = x²^2", "y = 1 # 2",
+            "y = .", "y = ⁻", "x = y = z", "x < y < z", "x ! y"
+    );
+
+    private static final String[] NAMES = {"x", "y", "t", "π", "θ", "ab", "x2", "e"};
+    private static final String[] FUNCTIONS = {"sin", "cos", "sqrt", "min", "max", "abs"};
+    private static final String[] NUMBERS = {"2", "0.5", "3.", ".25", "10", "1"};
+    private static final String[] SUPERSCRIPTS = {"²", "³", "⁻¹", "¹⁰"};
+    private static final String[] RELATIONS = {"=", "<", "<=", "≤", ">", ">=", "≥", "!=", "≠"};
+    private static final String[] TOKENS = {"x", "2", "(", ")", "|", "+", "-", "*", "/", "^", "²", ",", "sin", "="};
+
+    private final Random random = new Random(1);
+
+    @Test
+    void corpusParsesAsAntlrDoes() {
+        assertAgrees(CORPUS);
+    }
+
+    // A run of letters and digits that isn't a registered name is split by the ANTLR lexer, from its tables
+    @Test
+    void unregisteredNamesAreLeftToAntlr() {
+        for (var input : List.of("xy = 1", "y = sinx", "y = 1e3", "y = 2πr", "y = x2y"))
+            assertNull(PrattParser.parse(input, VARIABLE_NAMES, FUNCTION_NAMES, Node.Relation.class), input);
+        assertNotNull(PrattParser.parse("y = 2 pi x2 + sin(e t)", VARIABLE_NAMES, FUNCTION_NAMES, Node.Relation.class));
+    }
+
+    @Test
+    void randomSentencesParseAsAntlrDoes() {
+        var inputs = new ArrayList<String>();
+        for (int i = 0; i < RANDOM_COUNT; ++i) {
+            var sb = new StringBuilder();
+            expr(sb, 0);
+            sb.append(space()).append(pick(RELATIONS)).append(space());
+            expr(sb, 0);
+            var sentence = sb.toString();
+            inputs.add(sentence);
+            if (i % 4 == 0)
+                inputs.add(mutate(sentence));
+        }
+        assertAgrees(inputs);
+    }
+
+    private static void assertAgrees(List<String> inputs) {
+        var differences = new ArrayList<String>();
+        for (var input : inputs) {
+            var expected = antlr(input, VARIABLE_NAMES, FUNCTION_NAMES);
+            var actual = PrattParser.parse(input, VARIABLE_NAMES, FUNCTION_NAMES, Node.Relation.class);
+            // turning down what ANTLR accepts is fine, since the ANTLR parser gets it next
+            if (actual != null && !actual.equals(expected))
+                differences.add(String.format("%s\n    reference:    %s\n    hand-written: %s", input, expected, actual));
+        }
+        assertEquals(0, differences.size(), () -> String.format("%d of %d parses differ, starting with\n  %s",
+                differences.size(), inputs.size(), String.join("\n  ", differences.subList(0, Math.min(10, differences.size())))));
+    }
+
+    // ANTLR's tree, or null if it reported any error
+    private static Node.Relation antlr(String input, List<String> variableNames, List<String> functionNames) {
+        var parser = Expressions.parser(input, variableNames, functionNames);
+        var lexer = (Lexer)parser.getTokenStream().getTokenSource();
+        int[] errors = {0};
+        var listener = new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                ++errors[0];
+            }
+        };
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(listener);
+        parser.removeErrorListeners();
+        parser.addErrorListener(listener);
+        try {
+            var relation = parser.totalRelation().n;
+            return (errors[0] == 0) ? relation : null;
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private void expr(StringBuilder sb, int depth) {
+        term(sb, depth);
+        while (random.nextInt(3) == 0) {
+            sb.append(space()).append(random.nextBoolean() ? "+" : "-").append(space());
+            term(sb, depth);
+        }
+    }
+
+    private void term(StringBuilder sb, int depth) {
+        unary(sb, depth);
+        while (random.nextInt(3) == 0) {
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    sb.append(space()).append(random.nextBoolean() ? "*" : "/").append(space());
+                    unary(sb, depth);
+                }
+                default -> {
+                    sb.append(space());
+                    power(sb, depth);
+                }
+            }
+        }
+    }
+
+    private void unary(StringBuilder sb, int depth) {
+        switch (random.nextInt(8)) {
+            case 0 -> {
+                sb.append('-').append(space());
+                unary(sb, depth);
+            }
+            case 1 -> {
+                sb.append('+').append(space());
+                unary(sb, depth);
+            }
+            default -> power(sb, depth);
+        }
+    }
+
+    private void power(StringBuilder sb, int depth) {
+        atom(sb, depth);
+        switch (random.nextInt(6)) {
+            case 0 -> {
+                sb.append(space()).append(random.nextBoolean() ? "^" : "**").append(space());
+                unary(sb, depth + 1);
+            }
+            case 1 -> sb.append(pick(SUPERSCRIPTS));
+            default -> { }
+        }
+    }
+
+    private void atom(StringBuilder sb, int depth) {
+        // kept shallow: full LL prediction over nested bars is exponential in ANTLR
+        int choice = (depth > 1) ? random.nextInt(2) : random.nextInt(6);
+        switch (choice) {
+            case 0 -> sb.append(pick(NAMES));
+            case 1 -> sb.append(pick(NUMBERS));
+            case 2 -> {
+                sb.append('(').append(space());
+                expr(sb, depth + 1);
+                sb.append(space()).append(')');
+            }
+            case 3 -> {
+                sb.append('|').append(space());
+                expr(sb, depth + 1);
+                sb.append(space()).append('|');
+            }
+            default -> {
+                sb.append(pick(FUNCTIONS)).append('(');
+                int n = random.nextInt(3);
+                for (int i = 0; i < n; ++i) {
+                    if (i > 0)
+                        sb.append(',').append(space());
+                    expr(sb, depth + 1);
+                }
+                sb.append(')');
+            }
+        }
+    }
+
+    private String mutate(String s) {
+        int at = random.nextInt(s.length() + 1);
+        return switch (random.nextInt(3)) {
+            case 0 -> s.substring(0, at) + pick(TOKENS) + s.substring(at);
+            case 1 -> (at < s.length()) ? s.substring(0, at) + s.substring(at + 1) : s + pick(TOKENS);
+            default -> s.substring(0, at) + pick(TOKENS) + " " + pick(TOKENS) + s.substring(at);
+        };
+    }
+
+    private String space() {
+        return random.nextBoolean() ? " " : "";
+    }
+
+    private String pick(String[] options) {
+        return options[random.nextInt(options.length)];
+    }
+}